@@ -0,0 +1,209 @@
+package manager;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Supplier;
+import tasks.Task;
+
+// Фоновый писатель снимков для режима ASYNC. Изменения менеджера только увеличивают версию
+// состояния; поток-писатель снимает последнее состояние и пишет его целиком, когда с первого
+// незаписанного изменения прошел flushInterval, накопилось flushThreshold изменений или
+// кто-то ждет во flush(). Всплеск правок сливается в несколько записей файла.
+// Порядок блокировок: менеджер, затем писатель. Ожидание во flush() идет без блокировки
+// менеджера, иначе писатель не смог бы снять состояние.
+class AsyncSnapshotWriter implements AutoCloseable {
+
+    // Запись снимка целиком; вызывается не более чем одним потоком одновременно
+    interface SnapshotSink {
+        void write(List<Task> state) throws IOException;
+    }
+
+    private final Object managerLock;
+    private final Supplier<List<Task>> capture;
+    private final SnapshotSink sink;
+    private final long intervalNanos;
+    private final int threshold;
+    private final Object fileLock;
+    private final Thread writer;
+    private long version;
+    private long capturedVersion;
+    private long writtenVersion;
+    private long requestedVersion;
+    private long dirtySince;
+    private long fileVersion;
+    private long writeCount;
+    private long failedVersion;
+    private Throwable failure;
+    private boolean closed;
+
+    // capture вызывается под блокировкой managerLock
+    AsyncSnapshotWriter(String name, Object managerLock, Supplier<List<Task>> capture, SnapshotSink sink,
+                        PersistenceSettings settings) {
+        this.managerLock = managerLock;
+        this.capture = capture;
+        this.sink = sink;
+        this.intervalNanos = settings.getFlushInterval().toNanos();
+        this.threshold = settings.getFlushThreshold();
+        this.fileLock = new Object();
+        this.fileVersion = -1;
+        writer = new Thread(this::writeLoop, "snapshot-writer-" + name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Вызывается под блокировкой менеджера после каждого изменения
+    synchronized void markDirty() {
+        if (closed) {
+            throw new ManagerSaveException("Писатель снимков закрыт.");
+        }
+        if (version == capturedVersion) {
+            dirtySince = System.nanoTime();
+        }
+        version++;
+        if (version - capturedVersion >= threshold) {
+            notifyAll();
+        }
+    }
+
+    // Синхронная запись уже снятого состояния (save() под блокировкой менеджера).
+    // Фоновая запись более старой версии после неё будет пропущена.
+    void writeNow(List<Task> state) throws IOException {
+        long target;
+        synchronized (this) {
+            target = version;
+            capturedVersion = version;
+        }
+        write(target, state);
+    }
+
+    // Ждет, пока на диске окажутся все изменения, сделанные до вызова.
+    // Нельзя вызывать под блокировкой менеджера.
+    void flush() {
+        boolean interrupted = false;
+        synchronized (this) {
+            long target = version;
+            requestedVersion = Math.max(requestedVersion, target);
+            notifyAll();
+            while (writtenVersion < target && failedVersion < target) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (writtenVersion < target) {
+                throw new ManagerSaveException("Снимок не записан. Ошибка: " + failure.getMessage());
+            }
+        }
+    }
+
+    synchronized long getWriteCount() {
+        return writeCount;
+    }
+
+    // Дописывает незаписанные изменения и останавливает писатель. Если последняя запись не
+    // удалась, сообщает об этом, как flush(): писатель уже остановлен, и изменения потеряны.
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (writtenVersion < version) {
+                throw new ManagerSaveException("Снимок не записан при закрытии. Ошибка: "
+                        + (failure == null ? "писатель остановлен" : failure.getMessage()));
+            }
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            synchronized (this) {
+                while (!closed && !isDue()) {
+                    try {
+                        if (version == capturedVersion) {
+                            wait();
+                        } else {
+                            long remaining = intervalNanos - (System.nanoTime() - dirtySince);
+                            wait(Math.max(1, remaining / 1_000_000), 0);
+                        }
+                    } catch (InterruptedException e) {
+                        // Писатель останавливается только через close(), дописав изменения
+                    }
+                }
+                if (closed && version == capturedVersion) {
+                    return;
+                }
+            }
+
+            List<Task> state;
+            long target;
+            synchronized (managerLock) {
+                state = capture.get();
+                synchronized (this) {
+                    target = version;
+                    capturedVersion = version;
+                }
+            }
+            try {
+                write(target, state);
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    // Версия снова считается незаписанной: следующая попытка - через интервал
+                    failure = e;
+                    failedVersion = Math.max(failedVersion, target);
+                    capturedVersion = writtenVersion;
+                    dirtySince = System.nanoTime();
+                    notifyAll();
+                    if (closed) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isDue() {
+        if (version == capturedVersion) {
+            return false;
+        }
+        return requestedVersion > capturedVersion
+                || version - capturedVersion >= threshold
+                || System.nanoTime() - dirtySince >= intervalNanos;
+    }
+
+    // Файл пишут по очереди, и версия на диске не откатывается назад
+    private void write(long target, List<Task> state) throws IOException {
+        synchronized (fileLock) {
+            if (target <= fileVersion) {
+                return;
+            }
+            sink.write(state);
+            fileVersion = target;
+        }
+        synchronized (this) {
+            writtenVersion = Math.max(writtenVersion, target);
+            writeCount++;
+            failure = null;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package manager;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// B+-дерево в страницах PagedFile с ключами и значениями фиксированной длины. Ключи
+// сравниваются как беззнаковые байтовые строки. Корень хранится в поле заголовка файла
+// rootField, поэтому в одном файле живут несколько деревьев.
+// Страница листа: тип, число записей, следующий лист, затем пары (ключ, значение) по
+// возрастанию ключа. Внутренняя страница: тип, число ключей, самый левый потомок, затем
+// пары (ключ, потомок); в потомке справа от ключа лежат ключи не меньше его.
+// Переполненная страница делится пополам. Удаление страницы не сливает: опустевший лист
+// остается в цепочке и заполняется следующими вставками, обход его просто пропускает.
+class BTree {
+
+    private static final byte LEAF = 1;
+    private static final byte INNER = 2;
+    private static final int TYPE = 0;
+    private static final int COUNT = 2;
+    // Следующий лист у листа, самый левый потомок у внутренней страницы
+    private static final int LINK = 4;
+    private static final int ENTRIES = 8;
+    // Сколько записей обход копирует из листа за раз
+    private static final int SCAN_BATCH = 64;
+
+    private final PagedFile file;
+    private final int rootField;
+    private final int keySize;
+    private final int valueSize;
+    private final int leafCapacity;
+    private final int innerCapacity;
+
+    // Посетитель обхода; key и value переиспользуются между вызовами
+    interface Visitor {
+        boolean visit(byte[] key, byte[] value);
+    }
+
+    BTree(PagedFile file, int rootField, int keySize, int valueSize) {
+        this.file = file;
+        this.rootField = rootField;
+        this.keySize = keySize;
+        this.valueSize = valueSize;
+        this.leafCapacity = (PagedFile.PAGE_SIZE - ENTRIES) / (keySize + valueSize);
+        this.innerCapacity = (PagedFile.PAGE_SIZE - ENTRIES) / (keySize + Integer.BYTES);
+        if (file.metaInt(rootField) == 0) {
+            int root = file.allocate();
+            file.page(root).put(TYPE, LEAF);
+            file.setMetaInt(rootField, root);
+        }
+    }
+
+    // Копирует значение ключа в value; false, если ключа нет
+    boolean get(byte[] key, byte[] value) {
+        try {
+            int leaf = findLeaf(key);
+            ByteBuffer page = file.page(leaf);
+            int index = search(page, key, leafEntrySize());
+            if (index < 0) {
+                return false;
+            }
+            page.get(ENTRIES + index * leafEntrySize() + keySize, value, 0, valueSize);
+            return true;
+        } finally {
+            file.trim();
+        }
+    }
+
+    // Вставляет ключ или заменяет значение существующего
+    void put(byte[] key, byte[] value) {
+        try {
+            int root = file.metaInt(rootField);
+            byte[] separator = new byte[keySize];
+            int sibling = insert(root, key, value, separator);
+            if (sibling != 0) {
+                int newRoot = file.allocate();
+                ByteBuffer page = file.page(newRoot);
+                page.put(TYPE, INNER);
+                page.putShort(COUNT, (short) 1);
+                page.putInt(LINK, root);
+                page.put(ENTRIES, separator);
+                page.putInt(ENTRIES + keySize, sibling);
+                file.setMetaInt(rootField, newRoot);
+            }
+        } finally {
+            file.trim();
+        }
+    }
+
+    // false, если ключа не было
+    boolean remove(byte[] key) {
+        try {
+            int leaf = findLeaf(key);
+            ByteBuffer page = file.page(leaf);
+            int index = search(page, key, leafEntrySize());
+            if (index < 0) {
+                return false;
+            }
+            int count = count(page);
+            shift(page, index + 1, count, -1, leafEntrySize());
+            page.putShort(COUNT, (short) (count - 1));
+            file.markDirty(leaf);
+            return true;
+        } finally {
+            file.trim();
+        }
+    }
+
+    // Наибольший ключ строго меньше key вместе со значением; false, если такого нет
+    boolean lower(byte[] key, byte[] foundKey, byte[] foundValue) {
+        try {
+            return lowerIn(file.metaInt(rootField), key, foundKey, foundValue);
+        } finally {
+            file.trim();
+        }
+    }
+
+    // Записи с ключом не меньше from по возрастанию, пока visitor возвращает true.
+    // Записи листа копируются до вызова visitor, а следующая порция ищется от последнего
+    // выданного ключа заново: visitor может менять дерево, в том числе удалять записи.
+    void scan(byte[] from, Visitor visitor) {
+        int entrySize = leafEntrySize();
+        byte[] batch = new byte[SCAN_BATCH * entrySize];
+        byte[] key = new byte[keySize];
+        byte[] value = new byte[valueSize];
+        byte[] cursor = from.clone();
+        boolean inclusive = true;
+        while (true) {
+            int copied = 0;
+            try {
+                int leaf = findLeaf(cursor);
+                ByteBuffer page = file.page(leaf);
+                int index = position(page, cursor, entrySize, inclusive);
+                while (copied < SCAN_BATCH) {
+                    if (index == count(page)) {
+                        int next = page.getInt(LINK);
+                        if (next == 0) {
+                            break;
+                        }
+                        page = file.page(next);
+                        index = 0;
+                        continue;
+                    }
+                    page.get(ENTRIES + index * entrySize, batch, copied * entrySize, entrySize);
+                    copied++;
+                    index++;
+                }
+            } finally {
+                file.trim();
+            }
+            for (int i = 0; i < copied; i++) {
+                System.arraycopy(batch, i * entrySize, key, 0, keySize);
+                System.arraycopy(batch, i * entrySize + keySize, value, 0, valueSize);
+                if (!visitor.visit(key, value)) {
+                    return;
+                }
+            }
+            if (copied < SCAN_BATCH) {
+                return;
+            }
+            System.arraycopy(batch, (copied - 1) * entrySize, cursor, 0, keySize);
+            inclusive = false;
+        }
+    }
+
+    // Наименьший ключ строго больше key; false, если такого нет
+    boolean higher(byte[] key, byte[] foundKey, byte[] foundValue) {
+        boolean[] found = {false};
+        scan(key, (candidate, value) -> {
+            if (Arrays.equals(candidate, key)) {
+                return true;
+            }
+            System.arraycopy(candidate, 0, foundKey, 0, keySize);
+            System.arraycopy(value, 0, foundValue, 0, valueSize);
+            found[0] = true;
+            return false;
+        });
+        return found[0];
+    }
+
+    // Вставка в поддерево; при делении страницы возвращает номер новой правой страницы,
+    // а её первый ключ кладет в separator
+    private int insert(int pageNumber, byte[] key, byte[] value, byte[] separator) {
+        ByteBuffer page = file.page(pageNumber);
+        if (page.get(TYPE) == LEAF) {
+            int entrySize = leafEntrySize();
+            int index = search(page, key, entrySize);
+            if (index >= 0) {
+                page.put(ENTRIES + index * entrySize + keySize, value);
+                file.markDirty(pageNumber);
+                return 0;
+            }
+            return insertEntry(pageNumber, page, -index - 1, key, value, entrySize, leafCapacity, separator);
+        }
+        int childIndex = childIndex(page, key);
+        int child = childAt(page, childIndex);
+        int sibling = insert(child, key, value, separator);
+        if (sibling == 0) {
+            return 0;
+        }
+        byte[] childReference = ByteBuffer.allocate(Integer.BYTES).putInt(0, sibling).array();
+        return insertEntry(pageNumber, file.page(pageNumber), childIndex, separator.clone(), childReference,
+                keySize + Integer.BYTES, innerCapacity, separator);
+    }
+
+    // Вставляет запись на место index, при переполнении делит страницу
+    private int insertEntry(int pageNumber, ByteBuffer page, int index, byte[] key, byte[] payload,
+                            int entrySize, int capacity, byte[] separator) {
+        int count = count(page);
+        shift(page, index, count, 1, entrySize);
+        page.put(ENTRIES + index * entrySize, key);
+        page.put(ENTRIES + index * entrySize + keySize, payload);
+        count++;
+        page.putShort(COUNT, (short) count);
+        file.markDirty(pageNumber);
+        if (count < capacity) {
+            return 0;
+        }
+
+        int siblingNumber = file.allocate();
+        ByteBuffer sibling = file.page(siblingNumber);
+        boolean leaf = page.get(TYPE) == LEAF;
+        // id растут, поэтому вставка в конец самого правого листа - обычный случай: деление
+        // пополам оставляло бы за собой полупустые страницы, а так левая остается полной
+        boolean appended = index == count - 1 && (!leaf || page.getInt(LINK) == 0);
+        int keep = appended ? count - 1 : count / 2;
+        sibling.put(TYPE, page.get(TYPE));
+        if (leaf) {
+            // Правая половина уходит в новый лист, он встает в цепочку следом
+            page.get(ENTRIES + keep * entrySize, separator);
+            sibling.put(ENTRIES, page, ENTRIES + keep * entrySize, (count - keep) * entrySize);
+            sibling.putShort(COUNT, (short) (count - keep));
+            sibling.putInt(LINK, page.getInt(LINK));
+            page.putInt(LINK, siblingNumber);
+        } else {
+            // Средний ключ поднимается к родителю, его потомок становится самым левым справа
+            page.get(ENTRIES + keep * entrySize, separator);
+            sibling.putInt(LINK, page.getInt(ENTRIES + keep * entrySize + keySize));
+            sibling.put(ENTRIES, page, ENTRIES + (keep + 1) * entrySize, (count - keep - 1) * entrySize);
+            sibling.putShort(COUNT, (short) (count - keep - 1));
+        }
+        page.putShort(COUNT, (short) keep);
+        return siblingNumber;
+    }
+
+    private boolean lowerIn(int pageNumber, byte[] key, byte[] foundKey, byte[] foundValue) {
+        ByteBuffer page = file.page(pageNumber);
+        if (page.get(TYPE) == LEAF) {
+            int entrySize = leafEntrySize();
+            int index = position(page, key, entrySize, true) - 1;
+            if (index < 0) {
+                return false;
+            }
+            page.get(ENTRIES + index * entrySize, foundKey, 0, keySize);
+            page.get(ENTRIES + index * entrySize + keySize, foundValue, 0, valueSize);
+            return true;
+        }
+        // Левые соседи проверяются, только если в нужном потомке все листья опустели
+        for (int childIndex = childIndex(page, key); childIndex >= 0; childIndex--) {
+            if (lowerIn(childAt(file.page(pageNumber), childIndex), key, foundKey, foundValue)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int findLeaf(byte[] key) {
+        int pageNumber = file.metaInt(rootField);
+        ByteBuffer page = file.page(pageNumber);
+        while (page.get(TYPE) != LEAF) {
+            pageNumber = childAt(page, childIndex(page, key));
+            page = file.page(pageNumber);
+        }
+        return pageNumber;
+    }
+
+    // Номер потомка внутренней страницы, в поддереве которого лежит key: 0 - самый левый
+    private int childIndex(ByteBuffer page, byte[] key) {
+        return position(page, key, keySize + Integer.BYTES, false);
+    }
+
+    private int childAt(ByteBuffer page, int childIndex) {
+        return childIndex == 0
+                ? page.getInt(LINK)
+                : page.getInt(ENTRIES + (childIndex - 1) * (keySize + Integer.BYTES) + keySize);
+    }
+
+    // Индекс ключа в странице или -(место вставки) - 1
+    private int search(ByteBuffer page, byte[] key, int entrySize) {
+        int index = position(page, key, entrySize, true);
+        if (index < count(page) && compareAt(page, index, key, entrySize) == 0) {
+            return index;
+        }
+        return -index - 1;
+    }
+
+    // Число записей страницы с ключом меньше key (inclusive) или не больше key
+    private int position(ByteBuffer page, byte[] key, int entrySize, boolean inclusive) {
+        int low = 0;
+        int high = count(page);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareAt(page, middle, key, entrySize);
+            if (comparison < 0 || !inclusive && comparison == 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compareAt(ByteBuffer page, int index, byte[] key, int entrySize) {
+        int offset = ENTRIES + index * entrySize;
+        return Arrays.compareUnsigned(page.array(), offset, offset + keySize, key, 0, keySize);
+    }
+
+    // Сдвигает записи [from, to) на delta позиций
+    private static void shift(ByteBuffer page, int from, int to, int delta, int entrySize) {
+        byte[] bytes = page.array();
+        System.arraycopy(bytes, ENTRIES + from * entrySize, bytes, ENTRIES + (from + delta) * entrySize,
+                (to - from) * entrySize);
+    }
+
+    private static int count(ByteBuffer page) {
+        return page.getShort(COUNT);
+    }
+
+    private int leafEntrySize() {
+        return keySize + valueSize;
+    }
+}
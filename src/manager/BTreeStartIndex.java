@@ -0,0 +1,70 @@
+package manager;
+
+import java.nio.ByteBuffer;
+import java.util.function.Predicate;
+
+// Шкала BTreeTaskManager: вторичный индекс по старту во втором дереве того же файла.
+// Ключ - 16 байт (секунда, наносекунда, id) в порядке big-endian; у секунды и id инвертирован
+// знаковый бит, поэтому беззнаковое сравнение байтов совпадает с StartTimeIndex.compare.
+// Значений у ключей нет. Вставка в дерево и так стоит O(log n), поэтому stage вставляет
+// сразу, а commitStaged ничего не делает.
+class BTreeStartIndex implements StartTimeIndex {
+
+    private static final int KEY_SIZE = Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final byte[] NO_VALUE = new byte[0];
+
+    private final BTree tree;
+
+    BTreeStartIndex(PagedFile file, int rootField) {
+        this.tree = new BTree(file, rootField, KEY_SIZE, 0);
+    }
+
+    @Override
+    public void insert(long second, int nano, int id) {
+        tree.put(key(second, nano, id), NO_VALUE);
+    }
+
+    @Override
+    public void remove(long second, int nano, int id) {
+        tree.remove(key(second, nano, id));
+    }
+
+    @Override
+    public void stage(long second, int nano, int id) {
+        insert(second, nano, id);
+    }
+
+    @Override
+    public void commitStaged() {
+    }
+
+    @Override
+    public Entry lower(long second, int nano, int id) {
+        byte[] found = new byte[KEY_SIZE];
+        return tree.lower(key(second, nano, id), found, NO_VALUE) ? entry(found) : null;
+    }
+
+    @Override
+    public Entry higher(long second, int nano, int id) {
+        byte[] found = new byte[KEY_SIZE];
+        return tree.higher(key(second, nano, id), found, NO_VALUE) ? entry(found) : null;
+    }
+
+    @Override
+    public void scanFrom(long second, int nano, int id, Predicate<Entry> visitor) {
+        tree.scan(key(second, nano, id), (key, value) -> visitor.test(entry(key)));
+    }
+
+    private static byte[] key(long second, int nano, int id) {
+        return ByteBuffer.allocate(KEY_SIZE)
+                .putLong(second ^ Long.MIN_VALUE)
+                .putInt(nano)
+                .putInt(id ^ Integer.MIN_VALUE)
+                .array();
+    }
+
+    private static Entry entry(byte[] key) {
+        ByteBuffer buffer = ByteBuffer.wrap(key);
+        return new Entry(buffer.getLong() ^ Long.MIN_VALUE, buffer.getInt(), buffer.getInt() ^ Integer.MIN_VALUE);
+    }
+}
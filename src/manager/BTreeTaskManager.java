@@ -0,0 +1,53 @@
+package manager;
+
+import java.io.File;
+
+// Менеджер на встроенном дисковом движке: записи задач в B+-дереве по id, шкала по старту -
+// во втором дереве того же файла (BTreeTaskStore, BTreeStartIndex). В куче только LRU-кэш
+// разобранных записей и кэш страниц, поэтому память определяет рабочий набор, а не размер
+// доски; в отличие от MappedTaskManager, в памяти не держится и шкала.
+// Логика менеджера общая с MappedTaskManager и описана в RecordTaskManager.
+public class BTreeTaskManager extends RecordTaskManager {
+
+    public static final int DEFAULT_CACHED_RECORDS = 10_000;
+    public static final int DEFAULT_CACHED_PAGES = 1_024;
+
+    private final BTreeTaskStore store;
+
+    private BTreeTaskManager(BTreeTaskStore store) {
+        super(store, store.startIndex());
+        this.store = store;
+    }
+
+    // Новая пустая доска с кэшами по умолчанию; прежние файлы по этому пути обнуляются
+    public BTreeTaskManager(File file) {
+        this(file, DEFAULT_CACHED_RECORDS, DEFAULT_CACHED_PAGES);
+    }
+
+    // cachedRecords - сколько разобранных записей держать в куче, cachedPages - сколько страниц
+    // по PagedFile.PAGE_SIZE байт
+    public BTreeTaskManager(File file, int cachedRecords, int cachedPages) {
+        this(file, cachedRecords, cachedPages, DescriptionStorage.INLINE);
+    }
+
+    public BTreeTaskManager(File file, int cachedRecords, int cachedPages, DescriptionStorage descriptions) {
+        this(BTreeTaskStore.create(file.toPath(), cachedRecords, cachedPages, descriptions));
+    }
+
+    public static BTreeTaskManager open(File file) {
+        return open(file, DEFAULT_CACHED_RECORDS, DEFAULT_CACHED_PAGES);
+    }
+
+    // Открывает доску, записанную ранее; в память ничего не читается заранее
+    public static BTreeTaskManager open(File file, int cachedRecords, int cachedPages) {
+        return new BTreeTaskManager(BTreeTaskStore.open(file.toPath(), cachedRecords, cachedPages));
+    }
+
+    synchronized int cachedRecordCount() {
+        return store.cachedRecordCount();
+    }
+
+    synchronized int cachedPageCount() {
+        return store.cachedPageCount();
+    }
+}
@@ -0,0 +1,543 @@
+package manager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import tasks.TaskStatus;
+
+// Файлы BTreeTaskManager. Записи лежат в B+-дереве по id (BTree) в страничном файле доски,
+// там же второе дерево - шкала по старту (BTreeStartIndex). Названия и описания - в куче
+// строк <файл>.heap, как у MappedTaskStore: строка при замене на не более длинную
+// переписывается на месте, иначе дописывается в конец.
+// Перед деревом - LRU-кэш разобранных записей вместе со строками. Поля меняются в кэше,
+// в дерево запись попадает при вытеснении или force(); новые и удаленные записи
+// отражаются в дереве сразу, чтобы обход по id видел их без кэша.
+// В режиме DescriptionStorage.COLD описания лежат сжатыми в DescriptionBlobs со своим
+// кэшем, а запись хранит адрес блока: кэш записей описаний не держит.
+// Память определяют размеры кэшей записей и страниц, а не размер доски. На диске доска
+// согласована после force() или close(): изменения между ними при падении процесса теряются.
+class BTreeTaskStore implements TaskRecordStore {
+
+    private static final int MAGIC = 0x4B425442; // "KBTB"
+    private static final int VERSION = 1;
+    private static final int NULL_STRING = -1;
+    private static final int KEY_SIZE = Integer.BYTES;
+    private static final long UNSCHEDULED_SECOND = LocalDateTime.MIN.toEpochSecond(ZoneOffset.UTC);
+
+    // Поля заголовка страничного файла
+    private static final int META_PRIMARY_ROOT = 0;
+    private static final int META_START_ROOT = 4;
+    private static final int META_NEXT_ID = 8;
+    private static final int META_HEAP_END = 16;
+    private static final int META_DESCRIPTIONS = 24;
+
+    // Поля записи в дереве; LINK и PREVIOUS значат то же, что в MappedTaskStore
+    private static final int TYPE = 0;
+    private static final int STATUS = 1;
+    private static final int LINK = 4;
+    private static final int PREVIOUS = 8;
+    private static final int NEXT = 12;
+    private static final int START_SECOND = 16;
+    private static final int START_NANO = 24;
+    private static final int DURATION_NANO = 28;
+    private static final int DURATION_SECOND = 32;
+    private static final int END_SECOND = 40;
+    private static final int END_NANO = 48;
+    private static final int TITLE_LENGTH = 52;
+    private static final int TITLE = 56;
+    private static final int DESCRIPTION = 64;
+    private static final int DESCRIPTION_LENGTH = 72;
+    static final int RECORD_SIZE = 76;
+
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+    private static final DescriptionStorage[] DESCRIPTION_STORAGES = DescriptionStorage.values();
+
+    private final Path path;
+    private final PagedFile file;
+    private final FileChannel heap;
+    private final BTree records;
+    private final LinkedHashMap<Integer, Row> cache;
+    // null в режиме INLINE
+    private final DescriptionBlobs blobs;
+
+    // Разобранная запись; dirty - поля расходятся с деревом
+    private static final class Row {
+        byte type;
+        byte status;
+        int link;
+        int previous;
+        int next;
+        long startSecond;
+        int startNano;
+        long durationSecond;
+        int durationNano;
+        long endSecond;
+        int endNano;
+        long titleReference;
+        int titleLength;
+        long descriptionReference;
+        int descriptionLength;
+        String title;
+        String description;
+        boolean titleChanged;
+        boolean descriptionChanged;
+        boolean dirty;
+    }
+
+    private BTreeTaskStore(Path path, PagedFile file, FileChannel heap, DescriptionBlobs blobs, int cachedRecords) {
+        if (cachedRecords <= 0) {
+            throw new IllegalArgumentException("Размер кэша записей должен быть положительным: " + cachedRecords);
+        }
+        this.path = path;
+        this.file = file;
+        this.heap = heap;
+        this.blobs = blobs;
+        this.records = new BTree(file, META_PRIMARY_ROOT, KEY_SIZE, RECORD_SIZE);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Row> eldest) {
+                if (size() <= cachedRecords) {
+                    return false;
+                }
+                writeBack(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    static Path heapPathFor(Path path) {
+        return path.resolveSibling(path.getFileName() + ".heap");
+    }
+
+    // Пустое хранилище; прежние файлы по этому пути обнуляются
+    static BTreeTaskStore create(Path path, int cachedRecords, int cachedPages, DescriptionStorage descriptions) {
+        PagedFile file = PagedFile.create(path, MAGIC, VERSION, cachedPages);
+        file.setMetaInt(META_NEXT_ID, 1);
+        file.setMetaLong(META_HEAP_END, 0);
+        file.setMetaInt(META_DESCRIPTIONS, descriptions.ordinal());
+        FileChannel heap = openHeap(path, file, StandardOpenOption.TRUNCATE_EXISTING);
+        return new BTreeTaskStore(path, file, heap,
+                descriptions == DescriptionStorage.COLD ? DescriptionBlobs.create(path) : null, cachedRecords);
+    }
+
+    static BTreeTaskStore open(Path path, int cachedRecords, int cachedPages) {
+        PagedFile file = PagedFile.open(path, MAGIC, VERSION, cachedPages);
+        int descriptions = file.metaInt(META_DESCRIPTIONS);
+        if (descriptions < 0 || descriptions >= DESCRIPTION_STORAGES.length) {
+            file.close();
+            throw new ManagerSaveException("Неизвестный способ хранения описаний в " + path + ": " + descriptions);
+        }
+        FileChannel heap = openHeap(path, file);
+        return new BTreeTaskStore(path, file, heap,
+                DESCRIPTION_STORAGES[descriptions] == DescriptionStorage.COLD ? DescriptionBlobs.open(path) : null,
+                cachedRecords);
+    }
+
+    private static FileChannel openHeap(Path path, PagedFile file, StandardOpenOption... extra) {
+        List<StandardOpenOption> options = new ArrayList<>(List.of(StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE));
+        options.addAll(List.of(extra));
+        try {
+            return FileChannel.open(heapPathFor(path), options.toArray(StandardOpenOption[]::new));
+        } catch (IOException e) {
+            file.close();
+            throw new ManagerSaveException("Не могу открыть кучу строк " + path + ". Ошибка: " + e.getMessage());
+        }
+    }
+
+    // Шкала по старту в том же страничном файле
+    StartTimeIndex startIndex() {
+        return new BTreeStartIndex(file, META_START_ROOT);
+    }
+
+    int cachedRecordCount() {
+        return cache.size();
+    }
+
+    int cachedPageCount() {
+        return file.cachedPageCount();
+    }
+
+    @Override
+    public DescriptionStorage descriptionStorage() {
+        return blobs == null ? DescriptionStorage.INLINE : DescriptionStorage.COLD;
+    }
+
+    @Override
+    public int nextId() {
+        return file.metaInt(META_NEXT_ID);
+    }
+
+    @Override
+    public void setNextId(int id) {
+        file.setMetaInt(META_NEXT_ID, id);
+    }
+
+    @Override
+    public void forEachId(IntConsumer action) {
+        records.scan(new byte[KEY_SIZE], (key, value) -> {
+            action.accept(ByteBuffer.wrap(key).getInt());
+            return true;
+        });
+    }
+
+    @Override
+    public byte type(int id) {
+        if (id <= 0) {
+            return FREE;
+        }
+        Row row = find(id);
+        return row == null ? FREE : row.type;
+    }
+
+    @Override
+    public void allocate(int id, byte type) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("id записи должен быть положительным: " + id);
+        }
+        Row row = new Row();
+        row.type = type;
+        row.titleLength = NULL_STRING;
+        row.descriptionLength = NULL_STRING;
+        records.put(key(id), encode(row));
+        cache.put(id, row);
+    }
+
+    @Override
+    public void free(int id) {
+        cache.remove(id);
+        records.remove(key(id));
+    }
+
+    @Override
+    public TaskStatus status(int id) {
+        return STATUSES[row(id).status];
+    }
+
+    @Override
+    public void setStatus(int id, TaskStatus status) {
+        changed(id).status = (byte) status.ordinal();
+    }
+
+    @Override
+    public int epicId(int subtaskId) {
+        return row(subtaskId).link;
+    }
+
+    @Override
+    public void setEpicId(int subtaskId, int epicId) {
+        changed(subtaskId).link = epicId;
+    }
+
+    @Override
+    public int firstSubtask(int epicId) {
+        return row(epicId).link;
+    }
+
+    @Override
+    public void setFirstSubtask(int epicId, int subtaskId) {
+        changed(epicId).link = subtaskId;
+    }
+
+    @Override
+    public int lastSubtask(int epicId) {
+        return row(epicId).previous;
+    }
+
+    @Override
+    public void setLastSubtask(int epicId, int subtaskId) {
+        changed(epicId).previous = subtaskId;
+    }
+
+    @Override
+    public int previous(int subtaskId) {
+        return row(subtaskId).previous;
+    }
+
+    @Override
+    public void setPrevious(int subtaskId, int previous) {
+        changed(subtaskId).previous = previous;
+    }
+
+    @Override
+    public int next(int subtaskId) {
+        return row(subtaskId).next;
+    }
+
+    @Override
+    public void setNext(int subtaskId, int next) {
+        changed(subtaskId).next = next;
+    }
+
+    @Override
+    public long startSecond(int id) {
+        return row(id).startSecond;
+    }
+
+    @Override
+    public int startNano(int id) {
+        return row(id).startNano;
+    }
+
+    @Override
+    public boolean isScheduled(int id) {
+        Row row = row(id);
+        return row.startSecond != UNSCHEDULED_SECOND || row.startNano != 0;
+    }
+
+    @Override
+    public LocalDateTime start(int id) {
+        Row row = row(id);
+        return LocalDateTime.ofEpochSecond(row.startSecond, row.startNano, ZoneOffset.UTC);
+    }
+
+    @Override
+    public void setStart(int id, LocalDateTime start) {
+        Row row = changed(id);
+        row.startSecond = start.toEpochSecond(ZoneOffset.UTC);
+        row.startNano = start.getNano();
+    }
+
+    @Override
+    public Duration duration(int id) {
+        Row row = row(id);
+        return Duration.ofSeconds(row.durationSecond, row.durationNano);
+    }
+
+    @Override
+    public void setDuration(int id, Duration duration) {
+        Row row = changed(id);
+        row.durationSecond = duration.getSeconds();
+        row.durationNano = duration.getNano();
+    }
+
+    @Override
+    public LocalDateTime end(int epicId) {
+        Row row = row(epicId);
+        return LocalDateTime.ofEpochSecond(row.endSecond, row.endNano, ZoneOffset.UTC);
+    }
+
+    @Override
+    public void setEnd(int epicId, LocalDateTime end) {
+        Row row = changed(epicId);
+        row.endSecond = end.toEpochSecond(ZoneOffset.UTC);
+        row.endNano = end.getNano();
+    }
+
+    @Override
+    public String title(int id) {
+        return row(id).title;
+    }
+
+    @Override
+    public void setTitle(int id, String title) {
+        Row row = changed(id);
+        row.title = title;
+        row.titleChanged = true;
+    }
+
+    @Override
+    public String description(int id) {
+        Row row = row(id);
+        if (blobs == null || row.descriptionLength == NULL_STRING) {
+            return row.description;
+        }
+        return blobs.read(row.descriptionReference);
+    }
+
+    @Override
+    public void setDescription(int id, String description) {
+        Row row = changed(id);
+        if (blobs == null) {
+            row.description = description;
+            row.descriptionChanged = true;
+        } else if (description == null) {
+            row.descriptionLength = NULL_STRING;
+        } else {
+            row.descriptionReference = blobs.append(description);
+            row.descriptionLength = description.length();
+        }
+    }
+
+    @Override
+    public void force() {
+        cache.forEach(this::writeBack);
+        file.flush();
+        try {
+            heap.force(false);
+            if (blobs != null) {
+                blobs.force();
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу сбросить кучу строк " + path + " на диск. Ошибка: "
+                    + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        force();
+        file.close();
+        try {
+            heap.close();
+            if (blobs != null) {
+                blobs.close();
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу закрыть " + path + ". Ошибка: " + e.getMessage());
+        }
+    }
+
+    // Запись из кэша или из дерева; null, если записи нет
+    private Row find(int id) {
+        Row row = cache.get(id);
+        if (row != null) {
+            return row;
+        }
+        byte[] value = new byte[RECORD_SIZE];
+        if (!records.get(key(id), value)) {
+            return null;
+        }
+        row = decode(value);
+        cache.put(id, row);
+        return row;
+    }
+
+    private Row row(int id) {
+        Row row = find(id);
+        if (row == null) {
+            throw new IllegalStateException("Нарушена целостность данных: записи с id: " + id + " нет в "
+                    + path + ".");
+        }
+        return row;
+    }
+
+    private Row changed(int id) {
+        Row row = row(id);
+        row.dirty = true;
+        return row;
+    }
+
+    // Переносит измененную запись в дерево, а измененные строки - в кучу
+    private void writeBack(int id, Row row) {
+        if (!row.dirty) {
+            return;
+        }
+        if (row.titleChanged) {
+            byte[] bytes = utf8(row.title);
+            row.titleReference = writeString(bytes, row.titleReference, row.titleLength);
+            row.titleLength = bytes == null ? NULL_STRING : bytes.length;
+            row.titleChanged = false;
+        }
+        if (row.descriptionChanged) {
+            byte[] bytes = utf8(row.description);
+            row.descriptionReference = writeString(bytes, row.descriptionReference, row.descriptionLength);
+            row.descriptionLength = bytes == null ? NULL_STRING : bytes.length;
+            row.descriptionChanged = false;
+        }
+        records.put(key(id), encode(row));
+        row.dirty = false;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Пишет строку на место прежней, если она не длиннее, иначе в конец кучи; возвращает адрес
+    private long writeString(byte[] bytes, long previousReference, int previousLength) {
+        if (bytes == null) {
+            return previousReference;
+        }
+        long reference = previousReference;
+        if (previousLength == NULL_STRING || bytes.length > previousLength) {
+            reference = file.metaLong(META_HEAP_END);
+            file.setMetaLong(META_HEAP_END, reference + bytes.length);
+        }
+        ByteBuffer source = ByteBuffer.wrap(bytes);
+        try {
+            while (source.hasRemaining()) {
+                heap.write(source, reference + source.position());
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу записать строку в кучу " + path + ". Ошибка: " + e.getMessage());
+        }
+        return reference;
+    }
+
+    private String readString(long reference, int length) {
+        if (length == NULL_STRING) {
+            return null;
+        }
+        ByteBuffer target = ByteBuffer.allocate(length);
+        try {
+            while (target.hasRemaining()) {
+                if (heap.read(target, reference + target.position()) < 0) {
+                    throw new IOException("куча обрезана");
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу прочесть строку из кучи " + path + ". Ошибка: " + e.getMessage());
+        }
+        return new String(target.array(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] key(int id) {
+        return ByteBuffer.allocate(KEY_SIZE).putInt(0, id).array();
+    }
+
+    private static byte[] encode(Row row) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.put(TYPE, row.type);
+        record.put(STATUS, row.status);
+        record.putInt(LINK, row.link);
+        record.putInt(PREVIOUS, row.previous);
+        record.putInt(NEXT, row.next);
+        record.putLong(START_SECOND, row.startSecond);
+        record.putInt(START_NANO, row.startNano);
+        record.putInt(DURATION_NANO, row.durationNano);
+        record.putLong(DURATION_SECOND, row.durationSecond);
+        record.putLong(END_SECOND, row.endSecond);
+        record.putInt(END_NANO, row.endNano);
+        record.putInt(TITLE_LENGTH, row.titleLength);
+        record.putLong(TITLE, row.titleReference);
+        record.putLong(DESCRIPTION, row.descriptionReference);
+        record.putInt(DESCRIPTION_LENGTH, row.descriptionLength);
+        return record.array();
+    }
+
+    private Row decode(byte[] value) {
+        ByteBuffer record = ByteBuffer.wrap(value);
+        Row row = new Row();
+        row.type = record.get(TYPE);
+        row.status = record.get(STATUS);
+        row.link = record.getInt(LINK);
+        row.previous = record.getInt(PREVIOUS);
+        row.next = record.getInt(NEXT);
+        row.startSecond = record.getLong(START_SECOND);
+        row.startNano = record.getInt(START_NANO);
+        row.durationNano = record.getInt(DURATION_NANO);
+        row.durationSecond = record.getLong(DURATION_SECOND);
+        row.endSecond = record.getLong(END_SECOND);
+        row.endNano = record.getInt(END_NANO);
+        row.titleLength = record.getInt(TITLE_LENGTH);
+        row.titleReference = record.getLong(TITLE);
+        row.descriptionReference = record.getLong(DESCRIPTION);
+        row.descriptionLength = record.getInt(DESCRIPTION_LENGTH);
+        row.title = readString(row.titleReference, row.titleLength);
+        if (blobs == null) {
+            row.description = readString(row.descriptionReference, row.descriptionLength);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,322 @@
+package manager;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+import tasks.TaskStatus;
+
+// Двоичный снимок доски.
+// Заголовок: "KBNS", версия (varint), число записей (varint). Запись: тип (байт), статус (байт),
+// id (varint), id эпика (varint, только у подзадачи), название и описание (строки),
+// старт (varlong: 0 - не задан, иначе zigzag(минуты от эпохи UTC) + 1), длительность (zigzag varlong, секунды).
+// Строка - ссылка varint: 0 - null, 1 - новая строка (длина varint + UTF-8) попадает в словарь,
+// k >= 2 - строка словаря с номером k - 2. Повторяющиеся названия хранятся один раз.
+// Время, как и в CSV, хранится с точностью до минуты.
+// С версии 2 за записями идет CRC32C всех предыдущих байт (4 байта, big-endian): снимок
+// пишется атомарно, поэтому одной суммы на файл хватает, чтобы отличить целый файл от
+// поврежденного. Версия 1 без суммы читается как раньше.
+public class BinarySnapshotCodec {
+
+    private static final byte[] MAGIC = {'K', 'B', 'N', 'S'};
+    public static final int VERSION = 2;
+    private static final int VERSION_WITHOUT_CRC = 1;
+
+    private static final int TASK = 0;
+    private static final int EPIC = 1;
+    private static final int SUBTASK = 2;
+
+    private static final int NULL_STRING = 0;
+    private static final int NEW_STRING = 1;
+
+    public static boolean isBinary(byte[] prefix) {
+        return prefix.length >= MAGIC.length && Arrays.equals(prefix, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    public static int magicLength() {
+        return MAGIC.length;
+    }
+
+    public static void write(List<? extends Task> state, OutputStream out) throws IOException {
+        Output output = new Output(out);
+        output.writeBytes(MAGIC);
+        output.writeVarLong(VERSION);
+        output.writeVarLong(state.size());
+        Map<String, Integer> dictionary = new HashMap<>();
+        for (Task task : state) {
+            output.writeByte(task instanceof Epic ? EPIC : task instanceof Subtask ? SUBTASK : TASK);
+            output.writeByte(task.getStatus().ordinal());
+            output.writeVarLong(task.getId());
+            if (task instanceof Subtask subtask) {
+                output.writeVarLong(subtask.getEpicTask());
+            }
+            writeString(output, dictionary, task.getTitle());
+            writeString(output, dictionary, task.getDescription());
+            output.writeVarLong(TimeIntervalIndex.isScheduled(task)
+                    ? zigzag(task.getStartTime().toEpochSecond(ZoneOffset.UTC) / 60) + 1 : 0);
+            output.writeVarLong(zigzag(task.getDuration().getSeconds()));
+        }
+        int crc = output.checksum();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            output.writeByte(crc >>> shift);
+        }
+        output.flush();
+    }
+
+    public static List<Task> read(InputStream in) throws IOException {
+        List<Task> state = new ArrayList<>();
+        read(in, state::add);
+        return state;
+    }
+
+    // Отдает задачи по одной по мере чтения. Сумма проверяется после последней записи, поэтому
+    // при ManagerSaveException получатель отбрасывает всё, что успел принять: так делает
+    // загрузка менеджера, которая прерывается на первой ошибке.
+    // Число записей и длины строк берутся из еще не проверенных байт и ничему не доверяются:
+    // список заранее не выделяется, а массив строки растет по мере чтения.
+    public static void read(InputStream in, Consumer<? super Task> sink) throws IOException {
+        Input input = new Input(in);
+        byte[] magic = input.readBytes(MAGIC.length);
+        if (!isBinary(magic)) {
+            throw new ManagerSaveException("Файл не является двоичным снимком.");
+        }
+        long version = input.readVarLong();
+        if (version != VERSION && version != VERSION_WITHOUT_CRC) {
+            throw new ManagerSaveException("Неподдерживаемая версия двоичного снимка: " + version);
+        }
+        long count = input.readVarLong();
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new ManagerSaveException("Двоичный снимок поврежден: число записей " + count + ".");
+        }
+        List<String> dictionary = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            sink.accept(readTask(input, dictionary));
+        }
+        if (version != VERSION_WITHOUT_CRC) {
+            int expected = input.checksum();
+            int stored = 0;
+            for (int i = 0; i < 4; i++) {
+                stored = (stored << 8) | input.readByte();
+            }
+            if (stored != expected) {
+                throw new ManagerSaveException("Двоичный снимок поврежден: контрольная сумма не сходится.");
+            }
+        }
+    }
+
+    private static Task readTask(Input input, List<String> dictionary) throws IOException {
+        try {
+            int type = input.readByte();
+            TaskStatus status = TaskStatus.values()[input.readByte()];
+            int id = (int) input.readVarLong();
+            int epicId = type == SUBTASK ? (int) input.readVarLong() : 0;
+            String title = readString(input, dictionary);
+            String description = readString(input, dictionary);
+            long start = input.readVarLong();
+            LocalDateTime startTime = start == 0 ? LocalDateTime.MIN
+                    : LocalDateTime.ofEpochSecond(unzigzag(start - 1) * 60, 0, ZoneOffset.UTC);
+            Duration duration = Duration.ofSeconds(unzigzag(input.readVarLong()));
+            return switch (type) {
+                case TASK -> new Task(id, title, description, status, startTime, duration);
+                case EPIC -> new Epic(id, title, description, status, startTime, duration);
+                case SUBTASK -> new Subtask(id, title, description, status, epicId, startTime, duration);
+                default -> throw new ManagerSaveException("Неизвестный тип записи в двоичном снимке: " + type);
+            };
+        } catch (IndexOutOfBoundsException | IllegalArgumentException | DateTimeException | ArithmeticException e) {
+            // Мусор вместо записи: сумма до конца файла уже не сойдется
+            throw new ManagerSaveException("Двоичный снимок поврежден: " + e.getMessage());
+        }
+    }
+
+    private static void writeString(Output output, Map<String, Integer> dictionary, String value)
+            throws IOException {
+        if (value == null) {
+            output.writeVarLong(NULL_STRING);
+            return;
+        }
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            output.writeVarLong(index + 2);
+            return;
+        }
+        dictionary.put(value, dictionary.size());
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeVarLong(NEW_STRING);
+        output.writeVarLong(bytes.length);
+        output.writeBytes(bytes);
+    }
+
+    private static String readString(Input input, List<String> dictionary) throws IOException {
+        long ref = input.readVarLong();
+        if (ref == NULL_STRING) {
+            return null;
+        }
+        if (ref == NEW_STRING) {
+            long length = input.readVarLong();
+            if (length < 0 || length > Integer.MAX_VALUE) {
+                throw new ManagerSaveException("Двоичный снимок поврежден: длина строки " + length + ".");
+            }
+            String value = new String(input.readBytes((int) length), StandardCharsets.UTF_8);
+            dictionary.add(value);
+            return value;
+        }
+        if (ref < 0 || ref - 2 >= dictionary.size()) {
+            throw new ManagerSaveException("Ссылка на отсутствующую строку словаря: " + (ref - 2));
+        }
+        return dictionary.get((int) (ref - 2));
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Буфер записи без синхронизации на каждый байт
+    private static final class Output {
+
+        private final OutputStream out;
+        private final byte[] buffer = new byte[1 << 16];
+        private final CRC32C crc = new CRC32C();
+        private int position;
+
+        private Output(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeByte(int value) throws IOException {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            if (bytes.length > buffer.length - position) {
+                flushBuffer();
+                if (bytes.length > buffer.length) {
+                    crc.update(bytes);
+                    out.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+
+        // Сумма всех записанных до сих пор байт
+        int checksum() throws IOException {
+            flushBuffer();
+            return (int) crc.getValue();
+        }
+
+        private void flushBuffer() throws IOException {
+            crc.update(buffer, 0, position);
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    // Буфер чтения: файл читается кусками, целиком в памяти не держится
+    private static final class Input {
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[1 << 16];
+        private final CRC32C crc = new CRC32C();
+        private int position;
+        private int limit;
+        // Байты буфера до этой позиции уже учтены в crc
+        private int checked;
+
+        private Input(InputStream in) {
+            this.in = in;
+        }
+
+        int readByte() throws IOException {
+            if (position == limit) {
+                refill();
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        // Сумма всех прочитанных до сих пор байт
+        int checksum() {
+            crc.update(buffer, checked, position - checked);
+            checked = position;
+            return (int) crc.getValue();
+        }
+
+        private void refill() throws IOException {
+            crc.update(buffer, checked, limit - checked);
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            checked = 0;
+            if (limit <= 0) {
+                limit = 0;
+                throw new EOFException("Двоичный снимок обрывается.");
+            }
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int next = readByte();
+                value |= (long) (next & 0x7F) << shift;
+                if ((next & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new ManagerSaveException("Слишком длинное число в двоичном снимке.");
+        }
+
+        // Массив растет вслед за прочитанными байтами: длина из поврежденного файла обрывается
+        // на EOFException, а не выделяет гигабайты заранее
+        byte[] readBytes(int length) throws IOException {
+            byte[] bytes = new byte[Math.min(length, buffer.length)];
+            int filled = 0;
+            while (filled < length) {
+                if (position == limit) {
+                    refill();
+                }
+                if (filled == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+                }
+                int chunk = Math.min(bytes.length - filled, limit - position);
+                System.arraycopy(buffer, position, bytes, filled, chunk);
+                position += chunk;
+                filled += chunk;
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package manager;
+
+import java.time.Duration;
+
+// Метрики фонового снимка: сколько снимков записано, сколько они шли и сколько байт записали
+public class CompactionStats {
+
+    private long compactions;
+    private long totalNanos;
+    private long lastNanos;
+    private long totalBytes;
+    private long lastBytes;
+
+    synchronized void record(long nanos, long bytes) {
+        compactions++;
+        totalNanos += nanos;
+        lastNanos = nanos;
+        totalBytes += bytes;
+        lastBytes = bytes;
+    }
+
+    public synchronized long getCompactions() {
+        return compactions;
+    }
+
+    public synchronized Duration getTotalDuration() {
+        return Duration.ofNanos(totalNanos);
+    }
+
+    public synchronized Duration getLastDuration() {
+        return Duration.ofNanos(lastNanos);
+    }
+
+    public synchronized long getTotalBytesWritten() {
+        return totalBytes;
+    }
+
+    public synchronized long getLastBytesWritten() {
+        return lastBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CompactionStats{" +
+                "compactions=" + compactions +
+                ", lastDuration=" + getLastDuration() +
+                ", totalDuration=" + getTotalDuration() +
+                ", lastBytes=" + lastBytes +
+                ", totalBytes=" + totalBytes +
+                '}';
+    }
+}
@@ -0,0 +1,191 @@
+package manager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Описания режима DescriptionStorage.COLD: файл <файл>.descriptions из сжатых блоков
+// [длина в файле][длина UTF-8][байты]. Блок сжимается Deflater, а если сжатие не выиграло
+// места, лежит как есть - тогда обе длины равны. Адрес блока - смещение в файле; его
+// хранит запись задачи вместо адреса строки в куче.
+// Файл только дописывается: замененное описание остается в файле мусором.
+// Прочитанные описания держит LRU-кэш, ограниченный суммарной длиной строк, а не их числом:
+// одно описание может весить десятки килобайт.
+class DescriptionBlobs implements AutoCloseable {
+
+    static final int DEFAULT_CACHED_CHARS = 1 << 20;
+
+    private static final int BLOB_HEADER = 2 * Integer.BYTES;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int cachedChars;
+    private final LinkedHashMap<Long, String> cache;
+    private long end;
+    private long cachedLength;
+
+    private DescriptionBlobs(Path path, FileChannel channel, int cachedChars) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.cachedChars = cachedChars;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.end = channel.size();
+    }
+
+    static Path pathFor(Path board) {
+        return board.resolveSibling(board.getFileName() + ".descriptions");
+    }
+
+    // Пустой файл описаний доски board; прежний обнуляется
+    static DescriptionBlobs create(Path board) {
+        return open(board, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    static DescriptionBlobs open(Path board, StandardOpenOption... extra) {
+        Path path = pathFor(board);
+        List<StandardOpenOption> options = new ArrayList<>(List.of(StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE));
+        options.addAll(List.of(extra));
+        try {
+            return new DescriptionBlobs(path, FileChannel.open(path, options.toArray(StandardOpenOption[]::new)),
+                    DEFAULT_CACHED_CHARS);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу открыть файл описаний " + path + ". Ошибка: " + e.getMessage());
+        }
+    }
+
+    // Дописывает описание и возвращает адрес его блока
+    long append(String description) {
+        byte[] raw = description.getBytes(StandardCharsets.UTF_8);
+        byte[] stored = deflate(raw);
+        ByteBuffer blob = ByteBuffer.allocate(BLOB_HEADER + stored.length)
+                .putInt(stored.length)
+                .putInt(raw.length)
+                .put(stored)
+                .flip();
+        long reference = end;
+        try {
+            while (blob.hasRemaining()) {
+                channel.write(blob, reference + blob.position());
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу записать описание в " + path + ". Ошибка: " + e.getMessage());
+        }
+        end += blob.limit();
+        remember(reference, description);
+        return reference;
+    }
+
+    String read(long reference) {
+        String description = cache.get(reference);
+        if (description != null) {
+            return description;
+        }
+        try {
+            ByteBuffer header = ByteBuffer.allocate(BLOB_HEADER);
+            readFully(header, reference);
+            byte[] stored = new byte[header.getInt(0)];
+            byte[] raw = new byte[header.getInt(Integer.BYTES)];
+            readFully(ByteBuffer.wrap(stored), reference + BLOB_HEADER);
+            description = new String(stored.length == raw.length ? stored : inflate(stored, raw),
+                    StandardCharsets.UTF_8);
+        } catch (IOException | DataFormatException e) {
+            throw new ManagerSaveException("Не могу прочесть описание по адресу " + reference + " из " + path
+                    + ". Ошибка: " + e.getMessage());
+        }
+        remember(reference, description);
+        return description;
+    }
+
+    int cachedCount() {
+        return cache.size();
+    }
+
+    void force() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу сбросить " + path + " на диск. Ошибка: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу закрыть " + path + ". Ошибка: " + e.getMessage());
+        }
+    }
+
+    // Кладет описание в кэш и вытесняет давно не читанные сверх лимита длины
+    private void remember(long reference, String description) {
+        if (description.length() > cachedChars) {
+            return;
+        }
+        String previous = cache.put(reference, description);
+        if (previous == null) {
+            cachedLength += description.length();
+        }
+        Iterator<Map.Entry<Long, String>> eldest = cache.entrySet().iterator();
+        while (cachedLength > cachedChars && eldest.hasNext()) {
+            cachedLength -= eldest.next().getValue().length();
+            eldest.remove();
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+            byte[] chunk = new byte[4_096];
+            while (!deflater.finished() && out.size() < raw.length) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return deflater.finished() && out.size() < raw.length ? out.toByteArray() : raw;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] stored, byte[] raw) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("блок описания обрезан");
+                }
+                length += inflated;
+            }
+            return raw;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new IOException("файл описаний обрезан");
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package manager;
+
+// Где RecordTaskManager хранит описания задач. Выбирается при создании доски и записан в её файле.
+public enum DescriptionStorage {
+    INLINE, // в куче строк рядом с названием; описание читается вместе с записью
+    COLD // сжатым в отдельном файле (DescriptionBlobs); выборки списков описание не читают
+}
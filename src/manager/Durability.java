@@ -0,0 +1,8 @@
+package manager;
+
+// Когда запись журнала считается сохраненной и вызывающий поток получает управление
+public enum Durability {
+    SYNC_EACH, // каждое изменение пишется и сбрасывается на диск (force) отдельно
+    SYNC_BATCH, // изменения, накопившиеся за окно группового коммита, - одна запись и один force
+    OS_BUFFERED // одна запись на группу без force: данные остаются в кеше ОС
+}
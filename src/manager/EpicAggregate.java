@@ -0,0 +1,82 @@
+package manager;
+
+import static tasks.TaskStatus.DONE;
+import static tasks.TaskStatus.IN_PROGRESS;
+import static tasks.TaskStatus.NEW;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.TaskStatus;
+
+// Накопленные показатели подзадач одного эпика. Добавление и удаление подзадачи стоят
+// O(log k), поэтому время и статус эпика не пересчитываются обходом всех его подзадач.
+public class EpicAggregate {
+
+    private int newCount;
+    private int inProgressCount;
+    private int doneCount;
+    private Duration duration;
+    // Мультимножества времен старта и окончания запланированных подзадач: время -> количество
+    private final NavigableMap<LocalDateTime, Integer> starts;
+    private final NavigableMap<LocalDateTime, Integer> ends;
+
+    public EpicAggregate() {
+        duration = Duration.ZERO;
+        starts = new TreeMap<>();
+        ends = new TreeMap<>();
+    }
+
+    public void add(Subtask subtask) {
+        count(subtask.getStatus(), 1);
+        if (TimeIntervalIndex.isScheduled(subtask)) {
+            duration = duration.plus(subtask.getDuration());
+            starts.merge(subtask.getStartTime(), 1, Integer::sum);
+            ends.merge(subtask.getEndTime(), 1, Integer::sum);
+        }
+    }
+
+    public void remove(Subtask subtask) {
+        count(subtask.getStatus(), -1);
+        if (TimeIntervalIndex.isScheduled(subtask)) {
+            duration = duration.minus(subtask.getDuration());
+            decrement(starts, subtask.getStartTime());
+            decrement(ends, subtask.getEndTime());
+        }
+    }
+
+    public TaskStatus getStatus() {
+        int total = newCount + inProgressCount + doneCount;
+        if (total > 0 && doneCount == total) {
+            return DONE;
+        } else if (inProgressCount > 0 || doneCount > 0) {
+            return IN_PROGRESS;
+        }
+        return NEW;
+    }
+
+    // Переносит статус и время в эпик; без запланированных подзадач время эпика не задано
+    public void applyTo(Epic epic) {
+        epic.setStatus(getStatus());
+        epic.setDuration(duration);
+        epic.setStartTime(starts.isEmpty() ? LocalDateTime.MIN : starts.firstKey());
+        epic.setEndTime(ends.isEmpty() ? LocalDateTime.MIN : ends.lastKey());
+    }
+
+    private void count(TaskStatus status, int delta) {
+        if (status == DONE) {
+            doneCount += delta;
+        } else if (status == IN_PROGRESS) {
+            inProgressCount += delta;
+        } else {
+            newCount += delta;
+        }
+    }
+
+    private static void decrement(NavigableMap<LocalDateTime, Integer> multiset, LocalDateTime key) {
+        multiset.computeIfPresent(key, (time, count) -> count == 1 ? null : count - 1);
+    }
+}
@@ -0,0 +1,7 @@
+package manager;
+
+// Когда пересчитываются статус и время эпика после изменения его подзадач
+public enum EpicRefreshMode {
+    EAGER, // сразу после каждого изменения подзадачи
+    LAZY // эпик помечается устаревшим и пересчитывается один раз при следующем чтении или сохранении
+}
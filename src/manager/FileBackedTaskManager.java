@@ -1,168 +1,829 @@
 package manager;
 
+import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import tasks.Epic;
 import tasks.Subtask;
 import tasks.Task;
 import tasks.TaskStatus;
 import tasks.TaskType;
+import util.CsvReader;
+import util.CsvWriter;
+import util.IntHashMap;
+import util.IntHashSet;
 
-public class FileBackedTaskManager  extends InMemoryTaskManager implements TaskManager {
+public class FileBackedTaskManager  extends InMemoryTaskManager implements TaskManager, AutoCloseable {
 
     File file;
+    private final PersistenceSettings settings;
+    private WriteAheadLog wal;
+    private final CompactionStats compactionStats;
+    private ExecutorService compactor;
+    private Future<?> compaction;
+    private AsyncSnapshotWriter asyncWriter;
+    private ShardedSnapshotStore shards;
+    // Режим SHARDED: id, задетые текущим изменением; их шарды переписываются в persist
+    private final IntHashSet touched = new IntHashSet();
+    private static final Logger logger = Logger.getLogger(FileBackedTaskManager.class.getName());
+    private static final String CSV_HEADER = "id,type,name,status,description,epic,start,duration";
+    // Снимок, в котором каждая строка запечатана контрольной суммой (RecordChecksum)
+    private static final String CHECKED_CSV_HEADER = "crc," + CSV_HEADER;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final int MIN_CHUNK_SIZE = 256 << 10;
+    private static final int MAX_CHUNK_SIZE = 4 << 20;
     private static final DateTimeFormatter dateFormatter =
             DateTimeFormatter.ofPattern("yyyyMMddHHmm");
+    private static final TaskType[] TASK_TYPES = TaskType.values();
+    private static final TaskStatus[] TASK_STATUSES = TaskStatus.values();
+    // Отметка изменения вместо записи журнала в режимах без WAL (см. putRecord)
+    private static final String UNLOGGED = "";
 
     FileBackedTaskManager(File file) {
+        this(file, PersistenceSettings.defaults());
+    }
+
+    // Новая пустая доска: в режиме WAL сразу пишется пустой снимок, старый журнал обнуляется
+    FileBackedTaskManager(File file, PersistenceSettings settings) {
+        this(file, settings, true);
+    }
+
+    private FileBackedTaskManager(File file, PersistenceSettings settings, boolean fresh) {
         this.file = file;
+        this.settings = settings;
+        this.compactionStats = new CompactionStats();
+        if (settings.getMode() == PersistenceMode.ASYNC) {
+            asyncWriter = new AsyncSnapshotWriter(file.getName(), this, this::captureState,
+                    state -> writeAtomically(file.toPath(), state), settings);
+        }
+        if (settings.getMode() == PersistenceMode.SHARDED && fresh) {
+            shards = ShardedSnapshotStore.create(file.toPath(), settings.getShardSize());
+        }
+        if (settings.getMode() == PersistenceMode.WAL && fresh) {
+            wal = WriteAheadLog.open(WriteAheadLog.pathFor(file.toPath()), 0, settings);
+            save();
+        }
     }
 
     public static FileBackedTaskManager loadFromFile(File file)  {
+        return loadFromFile(file, PersistenceSettings.defaults());
+    }
 
-        String csvStringHeader = "id,type,name,status,description,epic,start,duration";
-        FileBackedTaskManager taskManager = new FileBackedTaskManager(file);
-
+    public static FileBackedTaskManager loadFromFile(File file, PersistenceSettings settings) {
+        // Проверка до создания менеджера: в режиме ASYNC конструктор запускает поток записи
         if (!file.exists() || !file.isFile()) {
             throw new ManagerSaveException("Файл не найден.");
         }
 
-        // Загружаем текстовый файл
-        String loadedRawData;
+        FileBackedTaskManager taskManager = new FileBackedTaskManager(file, settings, false);
+        try {
+            taskManager.restore();
+        } catch (RuntimeException e) {
+            // Менеджер с недочитанной доской не отдается, его поток записи и журнал закрываются
+            taskManager.close();
+            throw e;
+        }
+        return taskManager;
+    }
+
+    private void restore() {
+        // Файл и журнал читаются потоком: в памяти держатся только разобранные задачи,
+        // а не весь текст файла. Записи идут в порядке файла, а loaded хранит последнюю
+        // версию каждой задачи; порядок файла сохраняется, чтобы снимок, записанный по
+        // времени старта, при загрузке сортировался за линейное время.
+        List<Task> arrived = new ArrayList<>();
+        IntHashMap<Task> loaded = new IntHashMap<>();
+        int[] loadedLastId = new int[1];
+        Consumer<Task> put = task -> {
+            loadedLastId[0] = Integer.max(task.getId(), loadedLastId[0]);
+            loaded.put(task.getId(), task);
+            arrived.add(task);
+        };
+        if (settings.getMode() == PersistenceMode.SHARDED) {
+            shards = ShardedSnapshotStore.open(file.toPath());
+            readShards(shards, settings.getLoadParallelism(), put);
+        } else {
+            readSnapshot(file.toPath(), settings.getLoadParallelism(), put);
+        }
+
+        // Журнал накатывается поверх снимка: последняя запись о задаче побеждает. Отложенная
+        // часть журнала остается, если фоновый снимок не успел записаться; её записи не новее
+        // снимка, поэтому повторное применение ничего не портит.
+        int walRecords = 0;
+        if (settings.getMode() == PersistenceMode.WAL) {
+            // Оборванный хвост журнал отсекает сам при чтении, так что сюда доходят только целые
+            // записи: запись, которая не разбирается, - повреждение журнала, а не пропуск
+            Consumer<String> replay = record -> {
+                if (record.startsWith(WriteAheadLog.PUT + ",")) {
+                    put.accept(fromString(record.substring(2)).orElseThrow(() -> damagedLog(record)));
+                } else if (record.startsWith(WriteAheadLog.DELETE + ",")) {
+                    int id;
+                    try {
+                        id = Integer.parseInt(record.substring(2));
+                    } catch (NumberFormatException e) {
+                        throw damagedLog(record);
+                    }
+                    loadedLastId[0] = Integer.max(id, loadedLastId[0]);
+                    loaded.remove(id);
+                } else {
+                    throw damagedLog(record);
+                }
+            };
+            WriteAheadLog.readRecords(WriteAheadLog.rotatedPathFor(file.toPath()), replay);
+            walRecords = WriteAheadLog.readRecords(WriteAheadLog.pathFor(file.toPath()), replay);
+        }
+        List<Task> loadedTasks = new ArrayList<>(loaded.size());
+        for (Task task : arrived) {
+            if (loaded.get(task.getId()) == task) {
+                loadedTasks.add(task);
+            }
+        }
+        arrived.clear();
+        loaded.clear();
+        if (settings.getMode() == PersistenceMode.SHARDED) {
+            dropOrphanSubtasks(loadedTasks, file);
+        }
+
+        // Пересечения по времени проверяются одним проходом по всему файлу
+        List<TimeConflict> conflicts = validateBatch(loadedTasks);
+        if (!conflicts.isEmpty()) {
+            throw new TimeOverlapException("Файл содержит " + conflicts.size()
+                    + " пересечений по времени выполнения: "
+                    + conflicts.stream().map(TimeConflict::toString).collect(Collectors.joining("; ")) + ".");
+        }
+        // Проверенные записи принадлежат только загрузчику и кладутся в менеджер как есть
+        bulkLoad(loadedTasks);
+
+        // Состав, время и статус эпиков bulkLoad восстанавливает по подзадачам, поэтому
+        // эпики не перечитываются и не пересохраняются.
+        // Следующий id - за наибольшим из встреченных, в том числе удаленных
+        setGlobalTaskId(loadedLastId[0] + 1);
+        if (settings.getMode() == PersistenceMode.WAL) {
+            wal = WriteAheadLog.open(WriteAheadLog.pathFor(file.toPath()), walRecords, settings);
+        }
+    }
+
+
+    private static ManagerSaveException damagedLog(String record) {
+        return new ManagerSaveException("Журнал поврежден, запись не разбирается: "
+                + (record.length() > 80 ? record.substring(0, 80) + "..." : record));
+    }
+
+    // Шарды читаются параллельно, каждый целиком, а отдаются в порядке номеров. Внутри шарда
+    // задачи идут по приоритету, так что сортировка при загрузке сливает готовые отрезки.
+    private static void readShards(ShardedSnapshotStore store, int parallelism, Consumer<Task> sink) {
+        List<Path> files;
         try {
-            loadedRawData = Files.readString(file.toPath());
+            files = store.shardFiles();
         } catch (IOException e) {
-            throw new ManagerSaveException("Не могу прочесть taskFile. Ошибка: " + e.getMessage());
+            throw new ManagerSaveException("Не могу прочесть шарды " + store.getDirectory()
+                    + ". Ошибка: " + e.getMessage());
         }
+        if (parallelism == 1 || files.size() < 2) {
+            files.forEach(shard -> readSnapshot(shard, sink));
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<List<Task>>> parts = new ArrayList<>(files.size());
+            for (Path shard : files) {
+                parts.add(pool.submit(() -> {
+                    List<Task> part = new ArrayList<>();
+                    readSnapshot(shard, part::add);
+                    return part;
+                }));
+            }
+            for (ForkJoinTask<List<Task>> part : parts) {
+                part.join().forEach(sink);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
 
-        if (loadedRawData.isBlank()) {
-            return taskManager;
+    // Изменение, задевшее несколько шардов, переписывает их по очереди; сбой между записями
+    // может оставить подзадачи удаленного эпика в соседнем шарде. Такие подзадачи отбрасываются.
+    private static void dropOrphanSubtasks(List<Task> loadedTasks, File file) {
+        IntHashSet epicIds = new IntHashSet();
+        for (Task task : loadedTasks) {
+            if (task instanceof Epic) {
+                epicIds.add(task.getId());
+            }
+        }
+        int before = loadedTasks.size();
+        loadedTasks.removeIf(task -> task instanceof Subtask subtask && !epicIds.contains(subtask.getEpicTask()));
+        if (loadedTasks.size() < before) {
+            logger.warning("Доска " + file + ": отброшено " + (before - loadedTasks.size())
+                    + " подзадач без эпика, оставшихся от прерванной записи шардов.");
         }
+    }
 
-        // Обрабатываем текстовый файл
-        boolean isParse = false;
-        int loadedLastId = 0;
-        for (String processString : loadedRawData.split("\n")) {
-            if (processString.equals(csvStringHeader)) {
-                isParse = true;
+    // Большой CSV-снимок, начинающийся с заголовка, разбирается параллельно кусками по записям;
+    // задачи отдаются в порядке файла. Остальные снимки читаются последовательно.
+    static void readSnapshot(Path path, int parallelism, Consumer<Task> sink) {
+        if (parallelism > 1) {
+            try (FileChannel channel = FileChannel.open(path)) {
+                if (channel.size() >= 4L * MIN_CHUNK_SIZE) {
+                    for (String header : List.of(CHECKED_CSV_HEADER, CSV_HEADER)) {
+                        byte[] headerLine = (header + "\n").getBytes(StandardCharsets.UTF_8);
+                        if (startsWith(channel, headerLine)) {
+                            readCsvParallel(channel, headerLine.length, header.equals(CHECKED_CSV_HEADER),
+                                    parallelism, sink);
+                            return;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new ManagerSaveException("Не могу прочесть taskFile. Ошибка: " + e.getMessage());
+            }
+        }
+        readSnapshot(path, sink);
+    }
+
+    // Снимок в любом из форматов; формат определяется по первым байтам файла.
+    // Задачи отдаются по одной по мере чтения, файл целиком в память не загружается.
+    static void readSnapshot(Path path, Consumer<Task> sink) {
+        try (InputStream in = new BufferedInputStream(Channels.newInputStream(FileChannel.open(path)),
+                READ_BUFFER_SIZE)) {
+            in.mark(BinarySnapshotCodec.magicLength());
+            byte[] prefix = in.readNBytes(BinarySnapshotCodec.magicLength());
+            in.reset();
+            if (BinarySnapshotCodec.isBinary(prefix)) {
+                BinarySnapshotCodec.read(in, sink);
+                return;
+            }
+
+            // Декодер по умолчанию сообщает о некорректном UTF-8, а не подменяет символы
+            CsvReader csv = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8.newDecoder()));
+            boolean isParse = false;
+            boolean checked = false;
+            while (csv.next()) {
+                if (csv.recordEquals(CSV_HEADER) || csv.recordEquals(CHECKED_CSV_HEADER)) {
+                    isParse = true;
+                    checked = csv.recordEquals(CHECKED_CSV_HEADER);
+
+                } else if (isParse && !csv.isBlankRecord()) {
+                    parseSnapshotRecord(csv, checked).ifPresent(sink);
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу прочесть taskFile. Ошибка: " + e.getMessage());
+        }
+    }
 
-            } else if (isParse && !processString.isBlank()) {
-                Optional<Task> genericTask = taskManager.fromString(processString);
+    // Куски разбираются в пуле, а отдаются строго по порядку в вызывающем потоке.
+    // На поток приходится несколько кусков, чтобы неровные куски не оставляли ядра без дела.
+    // Граница куска - '\n' вне кавычек: поле в кавычках может содержать перевод строки, поэтому
+    // файл один раз просматривается подряд с подсчетом кавычек, и кусок уходит в пул, как только
+    // найден его конец.
+    private static void readCsvParallel(FileChannel channel, long bodyStart, boolean checked, int parallelism,
+                                        Consumer<Task> sink) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size / (4L * parallelism)));
 
-                if (genericTask.isPresent()) {
-                    Task task = genericTask.get();
-                    if (task instanceof Epic epic) {
-                        loadedLastId = Integer.max(epic.getId(), loadedLastId);
-                        taskManager.addEpic(epic);
-                    } else if (task instanceof Subtask sub) {
-                        loadedLastId = Integer.max(sub.getId(), loadedLastId);
-                        taskManager.addSubtask(sub);
-                    } else {
-                        loadedLastId = Integer.max(task.getId(), loadedLastId);
-                        taskManager.addTask(task);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<List<Task>>> parts = new ArrayList<>();
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            boolean inQuotes = false;
+            long start = bodyStart;
+            for (long position = bodyStart; position < size; ) {
+                int read = channel.read(buffer.clear(), position);
+                if (read < 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer.get(i);
+                    if (b == '"') {
+                        inQuotes = !inQuotes;
+                    } else if (b == '\n' && !inQuotes && position + i + 1 - start >= chunkSize) {
+                        long from = start;
+                        long to = position + i + 1;
+                        parts.add(pool.submit(() -> parseCsvChunk(channel, from, to, checked)));
+                        start = to;
                     }
                 }
+                position += read;
+            }
+            if (start < size) {
+                long from = start;
+                parts.add(pool.submit(() -> parseCsvChunk(channel, from, size, checked)));
             }
+            for (ForkJoinTask<List<Task>> part : parts) {
+                part.join().forEach(sink);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdownNow();
         }
+    }
 
-        if (isParse) {
-            taskManager.setGlobalTaskId(loadedLastId);
+    private static List<Task> parseCsvChunk(FileChannel channel, long start, long end, boolean checked) {
+        ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+        CharBuffer text;
+        try {
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, start + bytes.position()) < 0) {
+                    throw new EOFException("Файл изменился во время чтения.");
+                }
+            }
+            // Куски режутся после '\n', поэтому многобайтные символы не разрываются
+            text = StandardCharsets.UTF_8.newDecoder().decode(bytes.flip());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
 
-            for (Subtask subTask : taskManager.getAllSubtask()) {
-                if (subTask.getEpicTask() == 0) {
-                    continue;
+        List<Task> parsed = new ArrayList<>();
+        CsvReader csv = new CsvReader(text);
+        try {
+            while (csv.next()) {
+                if (!csv.isBlankRecord()) {
+                    parseSnapshotRecord(csv, checked).ifPresent(parsed::add);
                 }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return parsed;
+    }
 
-                Integer epicId = subTask.getEpicTask();
-                Integer subTaskId = subTask.getId();
-                taskManager.getEpicById(epicId).addSubtask(subTaskId);
+    // В снимке с суммами битая запись - повреждение файла, а не пропускаемая запись:
+    // снимок пишется атомарно, оборванного хвоста у него не бывает.
+    // Сумма считается по исходному тексту записи после поля crc.
+    private static Optional<Task> parseSnapshotRecord(CsvReader csv, boolean checked) {
+        if (!checked) {
+            return fromRecord(csv, 0);
+        }
+        Optional<Task> task = RecordChecksum.isIntact(csv.record()) ? fromRecord(csv, 1) : Optional.empty();
+        if (task.isEmpty()) {
+            String record = csv.record().toString();
+            throw new ManagerSaveException("Снимок поврежден, запись не прошла проверку: "
+                    + (record.length() > 80 ? record.substring(0, 80) + "..." : record));
+        }
+        return task;
+    }
+
+    private static boolean startsWith(FileChannel channel, byte[] prefix) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(prefix.length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                return false;
             }
+        }
+        return Arrays.equals(buffer.array(), prefix);
+    }
+
+    public synchronized void save() { //сохранение задачи в файл
+
+        // Незаконченный фоновый снимок старее этого и не должен лечь поверх него. Если он не
+        // записался, этот снимок его заменяет, а об ошибке остается запись в логе.
+        logCompactionFailure(finishCompaction(), "снимок записывается заново");
 
-            for (Epic epic : taskManager.getAllEpic()) {
-                taskManager.updateEpic(epic);
+        try {
+            if (shards != null) {
+                writeAllShards();
+                return;
+            }
+            if (asyncWriter != null) {
+                // Через писатель: фоновая запись не положит поверх более старое состояние
+                asyncWriter.writeNow(captureState());
+                return;
+            }
+            // Журнал очищается только после того, как снимок с его изменениями на диске
+            writeAtomically(file.toPath(), captureState());
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу записать taskFile. Ошибка: " + e.getMessage());
+        }
+        // Снимок содержит всё состояние, журнал до него больше не нужен
+        if (wal != null) {
+            wal.truncate();
+            try {
+                Files.deleteIfExists(WriteAheadLog.rotatedPathFor(file.toPath()));
+            } catch (IOException e) {
+                throw new ManagerSaveException("Не могу удалить старый журнал. Ошибка: " + e.getMessage());
             }
         }
-        return taskManager;
     }
 
+    // Состояние на момент вызова. Задачи и подзадачи менеджер не меняет на месте, а заменяет
+    // копиями, поэтому достаточно ссылок; эпики пересчитываются на месте и копируются.
+    // Эпики идут первыми, задачи и подзадачи - в порядке приоритета, как их и сортирует загрузка.
+    private List<Task> captureState() {
+        List<Task> state = new ArrayList<>(tasks.size() + epics.size() + subtasks.size());
+        for (Epic epic : getAllEpic()) {
+            state.add(new Epic(epic));
+        }
+        state.addAll(taskPriorityIndex.toList());
+        return state;
+    }
 
-    public void save() { //сохранение задачи в файл
+    // Пишет снимок в заданном формате; возвращает размер файла
+    private long writeSnapshot(Path target, List<Task> state, SnapshotFormat format, boolean force)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            if (format == SnapshotFormat.BINARY) {
+                BinarySnapshotCodec.write(state, out);
+            } else {
+                out.write(renderSnapshot(state).getBytes(StandardCharsets.UTF_8));
+            }
+            if (force) {
+                channel.force(true);
+            }
+            return channel.size();
+        }
+    }
 
-        StringBuilder stringToFile = new StringBuilder("id,type,name,status,description,epic,start,duration\n");
+    // Текущее состояние в другом файле и формате; основной файл и журнал не трогаются
+    synchronized void writeSnapshot(Path target, SnapshotFormat format) {
+        try {
+            writeSnapshot(target, captureState(), format, false);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу записать снимок " + target + ". Ошибка: " + e.getMessage());
+        }
+    }
 
-        for (Task task : getAllTask()) {
-            stringToFile.append(toString(task)).append("\n");
+    private String renderSnapshot(List<Task> state) {
+        StringBuilder stringToFile = new StringBuilder(CHECKED_CSV_HEADER + "\n");
+        StringBuilder record = new StringBuilder(128);
+        for (Task task : state) {
+            record.setLength(0);
+            writeRecord(new CsvWriter(record), task);
+            RecordChecksum.appendSealed(stringToFile, record).append('\n');
         }
+        return stringToFile.toString();
+    }
 
-        for (Task task : getAllEpic()) {
-            stringToFile.append(toString(task)).append("\n");
+    // Снимок в фоне: под блокировкой только фиксируется состояние и откладывается журнал,
+    // запись файла идет в отдельном потоке и не задерживает изменения.
+    private void startCompaction() {
+        if (compaction != null && !compaction.isDone()) {
+            return;
+        }
+        // Записи прошлой неудачной попытки остались в отложенном журнале и войдут в этот снимок
+        logCompactionFailure(finishCompaction(), "повторная попытка");
+        List<Task> state = captureState();
+        wal.rotate(WriteAheadLog.rotatedPathFor(file.toPath()));
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "compactor-" + file.getName());
+                thread.setDaemon(true);
+                return thread;
+            });
         }
+        compaction = compactor.submit(() -> compact(state));
+    }
 
-        for (Task task : getAllSubtask()) {
-            stringToFile.append(toString(task)).append("\n");
+    // Пишет снимок во временный файл и атомарно подменяет им основной
+    private void compact(List<Task> state) {
+        long started = System.nanoTime();
+        long bytes;
+        try {
+            bytes = writeAtomically(file.toPath(), state);
+            Files.deleteIfExists(WriteAheadLog.rotatedPathFor(file.toPath()));
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу записать снимок " + file + ". Ошибка: " + e.getMessage());
         }
+        compactionStats.record(System.nanoTime() - started, bytes);
+    }
+
+    // Пишет снимок во временный файл, сбрасывает его на диск и атомарно подменяет им target;
+    // возвращает размер. При сбое на диске остается либо старый снимок, либо новый целиком.
+    // Снимок сбрасывается при любой Durability: после него журнал обрезается, и недописанный
+    // снимок потерял бы всё, что было в журнале.
+    private long writeAtomically(Path target, List<Task> state) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        long bytes = writeSnapshot(temp, state, settings.getSnapshotFormat(), true);
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(target.toAbsolutePath().getParent());
+        return bytes;
+    }
+
+    // Переписывает все шарды по текущему состоянию и удаляет файлы опустевших шардов
+    private void writeAllShards() throws IOException {
+        IntHashMap<List<Task>> byShard = new IntHashMap<>();
+        for (Task task : captureState()) {
+            int shard = shards.shardOf(task.getId());
+            List<Task> part = byShard.get(shard);
+            if (part == null) {
+                part = new ArrayList<>();
+                byShard.put(shard, part);
+            }
+            part.add(task);
+        }
+        for (int shard : byShard.keys()) {
+            writeShard(shard, byShard.get(shard));
+        }
+        for (Path existing : shards.shardFiles()) {
+            if (!byShard.containsKey(ShardedSnapshotStore.numberOf(existing))) {
+                Files.delete(existing);
+            }
+        }
+        touched.clear();
+    }
 
+    // Переписывает только шарды, в которые попали задетые изменением id. Шард собирается
+    // прямым обходом своего диапазона id, остальные задачи не просматриваются.
+    private void writeDirtyShards() {
+        IntHashSet dirty = new IntHashSet();
+        touched.forEach(id -> dirty.add(shards.shardOf(id)));
         try {
-            Files.writeString(file.toPath(), stringToFile);
+            for (int shard : dirty.toSortedArray()) {
+                writeShard(shard, shardState(shard));
+            }
         } catch (IOException e) {
-            throw new ManagerSaveException("Не могу записать taskFile. Ошибка: " + e.getMessage());
+            // touched не очищается: следующее изменение перепишет и эти шарды
+            throw new ManagerSaveException("Не могу записать шард доски " + file + ". Ошибка: " + e.getMessage());
         }
+        touched.clear();
+    }
+
+    // Эпики копируются, как в captureState; порядок - эпики, затем задачи и подзадачи по приоритету
+    private List<Task> shardState(int shard) {
+        List<Task> state = new ArrayList<>();
+        List<Task> timeline = new ArrayList<>();
+        int first = shards.firstId(shard);
+        for (int id = first; id < first + shards.getShardSize(); id++) {
+            Epic epic = epics.get(id);
+            if (epic != null) {
+                state.add(new Epic(epic));
+                continue;
+            }
+            Task task = tasks.get(id);
+            if (task == null) {
+                task = subtasks.get(id);
+            }
+            if (task != null) {
+                timeline.add(task);
+            }
+        }
+        timeline.sort(PrioritizedTaskIndex.byStartThenId);
+        state.addAll(timeline);
+        return state;
+    }
+
+    private void writeShard(int shard, List<Task> state) throws IOException {
+        if (state.isEmpty()) {
+            Files.deleteIfExists(shards.pathOf(shard));
+        } else {
+            writeAtomically(shards.pathOf(shard), state);
+        }
+        shards.recordWrite();
+    }
+
+    // Сколько раз в режиме SHARDED был переписан или удален файл-шард
+    public long getShardWriteCount() {
+        return shards == null ? 0 : shards.getShardWrites();
+    }
+
+    // Переименование переживает сбой только после сброса каталога. Не везде каталог можно
+    // открыть как файл (Windows) - там остается гарантия самой ОС.
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Каталог не сбрасывается на этой платформе
+        }
+    }
+
+    // Дожидается, пока на диске окажутся все изменения, сделанные до вызова. В режимах
+    // SNAPSHOT и WAL изменение сохраняется до возврата из метода, ждать нечего.
+    public void flush() {
+        if (asyncWriter != null) {
+            asyncWriter.flush();
+        }
+    }
+
+    // Сколько раз фоновый писатель режима ASYNC переписал файл
+    public long getSnapshotWriteCount() {
+        return asyncWriter == null ? 0 : asyncWriter.getWriteCount();
+    }
+
+    // Дожидается фонового снимка и забирает его результат; ошибка отдается один раз
+    private Throwable finishCompaction() {
+        Future<?> current = compaction;
+        if (current == null) {
+            return null;
+        }
+        try {
+            current.get();
+            compaction = null;
+            return null;
+        } catch (ExecutionException e) {
+            compaction = null;
+            return e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return e;
+        }
+    }
+
+    private void logCompactionFailure(Throwable failure, String outcome) {
+        if (failure != null) {
+            logger.warning("Фоновый снимок " + file + " не записан, " + outcome + ". Ошибка: "
+                    + failure.getMessage());
+        }
+    }
+
+    public void awaitCompaction() {
+        Throwable failure = finishCompaction();
+        if (failure != null) {
+            throw new ManagerSaveException("Фоновый снимок не записан. Ошибка: " + failure.getMessage());
+        }
+    }
+
+    public CompactionStats getCompactionStats() {
+        return compactionStats;
+    }
+
+    // Применяет изменение под блокировкой менеджера и сохраняет его. Ожидание записи журнала
+    // идет уже без блокировки, поэтому изменения параллельных потоков попадают в одну группу.
+    private void commit(Supplier<List<String>> change) {
+        WriteAheadLog.Commit pending;
+        synchronized (this) {
+            pending = persist(change.get());
+        }
+        await(pending);
+    }
+
+    private void await(WriteAheadLog.Commit pending) {
+        if (pending != null) {
+            pending.await();
+        }
+    }
+
+    // В режиме SNAPSHOT переписывает файл, в режиме WAL ставит записи в журнал,
+    // а раз в snapshotEvery записей пишет снимок. В режиме ASYNC только отмечает изменение
+    // для фонового писателя, в режиме SHARDED переписывает задетые шарды.
+    private WriteAheadLog.Commit persist(List<String> records) {
+        if (shards != null) {
+            writeDirtyShards();
+            return null;
+        }
+        if (asyncWriter != null) {
+            if (!records.isEmpty()) {
+                asyncWriter.markDirty();
+            }
+            return null;
+        }
+        if (wal == null) {
+            save();
+            return null;
+        }
+        if (records.isEmpty()) {
+            return null;
+        }
+        WriteAheadLog.Commit pending = wal.append(records);
+        if (wal.getRecordCount() >= settings.getSnapshotEvery()) {
+            startCompaction();
+        }
+        return pending;
+    }
+
+    // Вне режима WAL записи журнала не нужны: persist смотрит только, было ли изменение,
+    // поэтому вместо строки записи отдается отметка UNLOGGED
+    private String putRecord(Task task) {
+        if (shards != null) {
+            touched.add(task.getId());
+        }
+        if (wal == null) {
+            return UNLOGGED;
+        }
+        StringBuilder record = new StringBuilder(128);
+        writeRecord(new CsvWriter(record).field(WriteAheadLog.PUT), task);
+        return RecordChecksum.seal(record.toString());
+    }
+
+    private String deleteRecord(int id) {
+        if (shards != null) {
+            touched.add(id);
+        }
+        if (wal == null) {
+            return UNLOGGED;
+        }
+        return RecordChecksum.seal(WriteAheadLog.DELETE + "," + id);
     }
 
 
     public String toString(Task task) { // перевод задачи в строку
+        StringBuilder record = new StringBuilder(128);
+        writeRecord(new CsvWriter(record), task);
+        return record.toString();
+    }
+
+    // Поля задачи в конец текущей записи csv; конец записи не пишется
+    private static void writeRecord(CsvWriter csv, Task task) {
 
         //id,type,name,status,description,epic,start,duration
-        Integer id = task.getId();
-        String type = task.getType().toString();
-        String name = task.getTitle();
-        String status = task.getStatus().toString();
-        String description = task.getDescription();
-        String epic = task instanceof Subtask sub ? sub.getEpicTask().toString() : "";
-        String start = task.getStartTime().format(dateFormatter);
-        String duration = String.valueOf(task.getDuration().getSeconds());
+        csv.field(task.getId());
+        csv.plainField().append(task.getType().name());
+        csv.field(task.getTitle());
+        csv.plainField().append(task.getStatus().name());
+        csv.field(task.getDescription());
+        if (task instanceof Subtask sub) {
+            csv.field(sub.getEpicTask());
+        } else {
+            csv.plainField();
+        }
+        StringBuilder start = csv.plainField();
+        if (TimeIntervalIndex.isScheduled(task)) {
+            appendDate(start, task.getStartTime());
+        }
+        csv.field(task.getDuration().getSeconds());
+    }
 
-        return String.format("%d,%s,%s,%s,%s,%s,%s, %s", id, type, name, status, description, epic, start, duration);
+    // Дата в формате dateFormatter, для четырехзначных лет - без форматтера
+    private static void appendDate(StringBuilder out, LocalDateTime date) {
+        if (date.getYear() < 0 || date.getYear() > 9999) {
+            out.append(date.format(dateFormatter));
+            return;
+        }
+        appendDigits(out, date.getYear(), 4);
+        appendDigits(out, date.getMonthValue(), 2);
+        appendDigits(out, date.getDayOfMonth(), 2);
+        appendDigits(out, date.getHour(), 2);
+        appendDigits(out, date.getMinute(), 2);
     }
 
-    private Optional<Task> fromString(String processString) { // перевод строки в задачу
+    private static void appendDigits(StringBuilder out, int value, int width) {
+        for (int divisor = width == 4 ? 1000 : 10; divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + value / divisor % 10));
+        }
+    }
 
-        List<String> parsedString = List.of(processString.split(",", -1));
+    private static Optional<Task> fromString(String processString) { // перевод строки в задачу
+        CsvReader csv = new CsvReader(CharBuffer.wrap(processString));
+        try {
+            return csv.next() ? fromRecord(csv, 0) : Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Задача из полей записи csv начиная с first. Строки создаются только для названия
+    // и описания, остальные поля разбираются прямо из буфера читателя.
+    private static Optional<Task> fromRecord(CsvReader csv, int first) {
 
-        Integer taskId;
+        //id,type,name,status,description,epic,start,duration
+        if (csv.size() < first + 8 || csv.length(first + 2) == 0) {
+            return Optional.empty();
+        }
+
+        int taskId;
         TaskType taskType;
         TaskStatus taskStatus;
         int epicId;
-        String taskDescription;
-        String taskName;
         LocalDateTime startTime;
         Duration duration;
 
         try {
-            taskId = Integer.parseInt(parsedString.get(0));
-            taskType = TaskType.valueOf(parsedString.get(1));
-            taskStatus = TaskStatus.valueOf(parsedString.get(3));
-            epicId = parsedString.get(5).isBlank() ? 0 : Integer.parseInt(parsedString.get(5));
-            startTime = parsedString.get(6).trim().isBlank() ? LocalDateTime.MIN :
-                    LocalDateTime.parse(parsedString.get(6).trim(), dateFormatter);
-            duration = parsedString.get(7).trim().isBlank() ? Duration.ZERO :
-                    Duration.ofSeconds(Long.parseLong(parsedString.get(7).trim()));
-        } catch (IllegalArgumentException | NullPointerException e) {
+            taskId = csv.getInt(first);
+            taskType = constantOf(TASK_TYPES, csv, first + 1);
+            taskStatus = constantOf(TASK_STATUSES, csv, first + 3);
+            epicId = csv.isBlank(first + 5) ? 0 : csv.getInt(first + 5);
+            startTime = csv.isBlank(first + 6) ? LocalDateTime.MIN : parseDate(csv, first + 6);
+            duration = csv.isBlank(first + 7) ? Duration.ZERO : Duration.ofSeconds(csv.getLong(first + 7));
+        } catch (IllegalArgumentException | DateTimeException e) {
             return Optional.empty();
         }
 
-        if (!parsedString.get(2).isEmpty()) {
-            taskName = parsedString.get(2);
-        } else {
-            return Optional.empty();
-        }
-        taskDescription = parsedString.get(4);
+        String taskName = csv.get(first + 2);
+        String taskDescription = csv.getOrNull(first + 4);
 
         switch (taskType) {
             case TASK -> {
@@ -183,6 +844,38 @@ public class FileBackedTaskManager  extends InMemoryTaskManager implements TaskM
         }
     }
 
+    // Константа перечисления по точному имени, как valueOf, но без строки поля
+    private static <E extends Enum<E>> E constantOf(E[] constants, CsvReader csv, int field) {
+        for (E constant : constants) {
+            if (csv.fieldEquals(field, constant.name())) {
+                return constant;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестное значение \"" + csv.get(field) + "\"");
+    }
+
+    // Дата в формате dateFormatter; двенадцать цифр разбираются без форматтера
+    private static LocalDateTime parseDate(CsvReader csv, int field) {
+        if (csv.length(field) != 12) {
+            return LocalDateTime.parse(csv.get(field).trim(), dateFormatter);
+        }
+        for (int i = 0; i < 12; i++) {
+            if (csv.charAt(field, i) < '0' || csv.charAt(field, i) > '9') {
+                return LocalDateTime.parse(csv.get(field).trim(), dateFormatter);
+            }
+        }
+        return LocalDateTime.of(digits(csv, field, 0, 4), digits(csv, field, 4, 2), digits(csv, field, 6, 2),
+                digits(csv, field, 8, 2), digits(csv, field, 10, 2));
+    }
+
+    private static int digits(CsvReader csv, int field, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            value = value * 10 + csv.charAt(field, i) - '0';
+        }
+        return value;
+    }
+
     /*
     id,type,name,status,description,epic
     0,TASK,Task 1,NEW,Description task 1,
@@ -193,55 +886,167 @@ public class FileBackedTaskManager  extends InMemoryTaskManager implements TaskM
 
     @Override
     public void addSubtask(Subtask subtask) {
-        super.addSubtask(subtask);
-        save();
+        commit(() -> {
+            super.addSubtask(subtask);
+            return List.of(putRecord(subtasks.get(subtask.getId())));
+        });
     }
 
     @Override
     public void addEpic(Epic epic) { // создание нового эпика
-        super.addEpic(epic);
-        save();
+        commit(() -> {
+            super.addEpic(epic);
+            return List.of(putRecord(epics.get(epic.getId())));
+        });
     }
 
     @Override
     public void addTask(Task task) { // создание новой задачи
-        super.addTask(task);
-        save();
+        commit(() -> {
+            super.addTask(task);
+            return List.of(putRecord(tasks.get(task.getId())));
+        });
+    }
+
+    @Override
+    public void addAll(Collection<? extends Task> items) {
+        commit(() -> {
+            super.addAll(items);
+            List<String> records = new ArrayList<>(items.size());
+            for (Task item : items) {
+                Task stored = item instanceof Epic ? epics.get(item.getId())
+                        : item instanceof Subtask ? subtasks.get(item.getId()) : tasks.get(item.getId());
+                records.add(putRecord(stored));
+            }
+            return records;
+        });
     }
 
     @Override
     public void updateTask(Task taskUpdate) { // Обновление задачи
-        super.updateTask(taskUpdate);
-        save();
+        commit(() -> {
+            super.updateTask(taskUpdate);
+            return List.of(putRecord(tasks.get(taskUpdate.getId())));
+        });
     }
 
     @Override
     public void updateEpic(Epic epicUpdate) {   // обновление эпика
-        super.updateEpic(epicUpdate);
-        save();
+        commit(() -> {
+            super.updateEpic(epicUpdate);
+            return List.of(putRecord(epics.get(epicUpdate.getId())));
+        });
     }
 
     @Override
     public void updateSubtask(Subtask subtaskUpdate) { // обновление подзадачи
-        super.updateSubtask(subtaskUpdate);
-        save();
+        commit(() -> {
+            super.updateSubtask(subtaskUpdate);
+            return List.of(putRecord(subtasks.get(subtaskUpdate.getId())));
+        });
     }
 
     @Override
     public void deleteTaskById(Integer id) { //удаление задачи по ID
-        super.deleteTaskById(id);
-        save();
+        commit(() -> {
+            super.deleteTaskById(id);
+            return List.of(deleteRecord(id));
+        });
     }
 
     @Override
     public void deleteSubtaskById(Integer id) { //удаление подзадачи по ID
-        super.deleteSubtaskById(id);
-        save();
+        commit(() -> {
+            super.deleteSubtaskById(id);
+            return List.of(deleteRecord(id));
+        });
     }
 
     @Override
     public void deleteEpicById(Integer id) { // удаление эпика по ID
-        super.deleteEpicById(id);
-        save();
+        commit(() -> {
+            List<Integer> subtaskIds = id != null && epics.containsKey(id)
+                    ? epics.get(id).getSubtaskList() : List.of();
+            super.deleteEpicById(id);
+            List<String> records = new ArrayList<>(subtaskIds.size() + 1);
+            subtaskIds.forEach(subtaskId -> records.add(deleteRecord(subtaskId)));
+            records.add(deleteRecord(id));
+            return records;
+        });
+    }
+
+    @Override
+    public void deleteAllTask() { // удаление всех задач
+        commit(() -> {
+            int[] ids = tasks.keys();
+            super.deleteAllTask();
+            List<String> records = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                records.add(deleteRecord(id));
+            }
+            return records;
+        });
+    }
+
+    @Override
+    public void deleteAllSubtask() { // удаление всех подзадач
+        commit(() -> {
+            int[] ids = subtasks.keys();
+            super.deleteAllSubtask();
+            List<String> records = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                records.add(deleteRecord(id));
+            }
+            return records;
+        });
+    }
+
+    @Override
+    public void deleteAllEpic() { // удаление всех эпиков вместе с их подзадачами
+        commit(() -> {
+            int[] epicIds = epics.keys();
+            int[] subtaskIds = subtasks.keys();
+            super.deleteAllEpic();
+            List<String> records = new ArrayList<>(subtaskIds.length + epicIds.length);
+            for (int id : subtaskIds) {
+                records.add(deleteRecord(id));
+            }
+            for (int id : epicIds) {
+                records.add(deleteRecord(id));
+            }
+            return records;
+        });
+    }
+
+    @Override
+    public List<Task> scheduleUnscheduled(SchedulePolicy policy, LocalDateTime notBefore) {
+        List<Task> scheduled;
+        WriteAheadLog.Commit pending;
+        synchronized (this) {
+            scheduled = super.scheduleUnscheduled(policy, notBefore);
+            pending = persist(scheduled.stream().map(this::putRecord).toList());
+        }
+        await(pending);
+        return scheduled;
+    }
+
+    // Дописывает незаписанные изменения, дожидается фонового снимка и записи журнала,
+    // останавливает их потоки
+    @Override
+    public void close() {
+        if (asyncWriter != null) {
+            asyncWriter.close();
+        }
+        Throwable failure = finishCompaction();
+        if (compactor != null) {
+            compactor.shutdown();
+        }
+        if (wal != null) {
+            wal.close();
+        }
+        if (failure != null) {
+            throw new ManagerSaveException("Фоновый снимок не записан, изменения остались только в журнале. "
+                    + "Ошибка: " + failure.getMessage());
+        }
     }
 }
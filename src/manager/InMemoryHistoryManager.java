@@ -1,17 +1,16 @@
 package manager;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
 import tasks.Task;
+import util.IntHashMap;
 
 public class InMemoryHistoryManager implements HistoryManager {
-    private final Map<Integer, Node> historyMap;
+    private final IntHashMap<Node> historyMap;
     private Node head;
     private Node tail;
 
     public InMemoryHistoryManager() {
-        historyMap = new HashMap<>();
+        historyMap = new IntHashMap<>();
         head = null;
         tail = null;
     }
@@ -1,8 +1,6 @@
 package manager;
 
 import static tasks.TaskStatus.NEW;
-import static tasks.TaskStatus.IN_PROGRESS;
-import static tasks.TaskStatus.DONE;
 
 import tasks.Epic;
 import tasks.Subtask;
@@ -11,90 +9,124 @@ import tasks.Task;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.stream.Collectors;
+import util.IntHashMap;
+import util.IntHashSet;
 
 
+// Публичные методы синхронизированы: менеджер обслуживает параллельные HTTP-запросы
 public class InMemoryTaskManager implements TaskManager {
 
-    protected final Map<Integer, Task> tasks;
-    protected final Map<Integer, Subtask> subtasks;
-    protected final Map<Integer, Epic> epics;
+    protected final IntHashMap<Task> tasks;
+    protected final IntHashMap<Subtask> subtasks;
+    protected final IntHashMap<Epic> epics;
+    protected final IntHashMap<EpicAggregate> epicAggregates;
     protected final HistoryManager history;
     protected Integer taskId;
-    protected final Set<Task> taskPriorityList;
+    protected final PrioritizedTaskIndex taskPriorityIndex;
+    protected final TimeIntervalIndex timeIndex;
+    // Эпики, чьи показатели в режиме LAZY ещё не пересчитаны после изменения подзадач
+    protected final IntHashSet dirtyEpics;
+    private EpicRefreshMode epicRefreshMode;
 
     public InMemoryTaskManager() {
         taskId = 1;
-        tasks = new HashMap<>();
-        subtasks = new HashMap<>();
-        epics = new HashMap<>();
+        tasks = new IntHashMap<>();
+        subtasks = new IntHashMap<>();
+        epics = new IntHashMap<>();
+        epicAggregates = new IntHashMap<>();
         history = Manager.getDefaultHistory();
-        taskPriorityList = new TreeSet<>(Comparator.naturalOrder());
+        taskPriorityIndex = new PrioritizedTaskIndex();
+        timeIndex = new TimeIntervalIndex();
+        dirtyEpics = new IntHashSet();
+        epicRefreshMode = EpicRefreshMode.EAGER;
     }
 
-    public void setGlobalTaskId(Integer id) {
+    public synchronized void setGlobalTaskId(Integer id) {
         taskId = id;
     }
 
     @Override
-    public ArrayList<Task> getAllTask() { // Показать все задачи
-        return new ArrayList<>(tasks.values());
+    public synchronized void setEpicRefreshMode(EpicRefreshMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Режим пересчета эпиков не должен быть null.");
+        }
+        epicRefreshMode = mode;
+        if (mode == EpicRefreshMode.EAGER) {
+            refreshDirtyEpics();
+        }
+    }
+
+    public synchronized EpicRefreshMode getEpicRefreshMode() {
+        return epicRefreshMode;
     }
 
     @Override
-    public ArrayList<Subtask> getAllSubtask() { // Показать все подзадачи
-        return new ArrayList<>(subtasks.values());
+    public synchronized ArrayList<Task> getAllTask() { // Показать все задачи
+        ArrayList<Task> allTasks = new ArrayList<>(tasks.size());
+        tasks.forEachValue(allTasks::add);
+        return allTasks;
     }
 
     @Override
-    public ArrayList<Epic> getAllEpic() { // Показать все эпики
-        return new ArrayList<>(epics.values());
+    public synchronized ArrayList<Subtask> getAllSubtask() { // Показать все подзадачи
+        ArrayList<Subtask> allSubtasks = new ArrayList<>(subtasks.size());
+        subtasks.forEachValue(allSubtasks::add);
+        return allSubtasks;
     }
 
     @Override
-    public void deleteAllTask() { // удаление всех задач
+    public synchronized ArrayList<Epic> getAllEpic() { // Показать все эпики
+        refreshDirtyEpics();
+        ArrayList<Epic> allEpics = new ArrayList<>(epics.size());
+        epics.forEachValue(allEpics::add);
+        return allEpics;
+    }
+
+    @Override
+    public synchronized void deleteAllTask() { // удаление всех задач
         if (tasks.isEmpty()) {
             return;
         }
-        tasks.keySet()
-                .forEach(id -> {
-                    history.remove(id);
-                    taskPriorityList.remove(tasks.get(id));
-                });
+        tasks.forEachValue(task -> {
+            history.remove(task.getId());
+            taskPriorityIndex.remove(task);
+            timeIndex.remove(task);
+        });
         tasks.clear();
     }
 
 
     @Override
-    public void deleteAllSubtask() { // удаление всех подзадач
+    public synchronized void deleteAllSubtask() { // удаление всех подзадач
         if (subtasks.isEmpty()) {
             return;
         }
-        List<Integer> subtasksToRemove = new ArrayList<>(subtasks.keySet());
-        subtasksToRemove.forEach(id -> taskPriorityList.remove(getSubtaskById(id)));
-        subtasksToRemove.forEach(this::deleteSubtaskById);
+        // Удаление идет мимо deleteSubtaskById: наследник, сохраняющий каждое удаление,
+        // сохраняет всю очистку одним изменением
+        for (int id : subtasks.keys()) {
+            removeSubtask(id);
+        }
     }
 
     // Final
     @Override
-    public void deleteAllEpic() { // удаление всех эпиков
+    public synchronized void deleteAllEpic() { // удаление всех эпиков
         if (epics.isEmpty()) {
             return;
         }
-        List<Integer> epicsToRemove = new ArrayList<>(epics.keySet());
-        epicsToRemove.forEach(this::deleteEpicById);
+        for (int id : epics.keys()) {
+            removeEpic(id);
+        }
     }
 
     @Override
-    public Task getTaskById(Integer id) { // Возвращаем по ID задачу
+    public synchronized Task getTaskById(Integer id) { // Возвращаем по ID задачу
         if (id == null) {
             throw new IllegalArgumentException("ID задачи не должно быть null.");
         }
@@ -109,7 +141,7 @@ public class InMemoryTaskManager implements TaskManager {
 
     // Final
     @Override
-    public Subtask getSubtaskById(Integer id) { // Возвращаем по ID подзадачи
+    public synchronized Subtask getSubtaskById(Integer id) { // Возвращаем по ID подзадачи
         if (id == null) {
             throw new IllegalArgumentException("ID подзадачи не должно быть null.");
         }
@@ -124,7 +156,7 @@ public class InMemoryTaskManager implements TaskManager {
 
     // Final
     @Override
-    public Epic getEpicById(Integer id) { // Возвращаем по ID Эпики
+    public synchronized Epic getEpicById(Integer id) { // Возвращаем по ID Эпики
         if (id == null) {
             throw new IllegalArgumentException("ID эпика не должно быть null.");
         }
@@ -133,13 +165,16 @@ public class InMemoryTaskManager implements TaskManager {
             throw new NoSuchElementException("Epic с id: "
                     + id + " не найден в менеджере.");
         }
+        if (dirtyEpics.contains(id)) {
+            recomputeEpic(id);
+        }
         history.add(epics.get(id));
         return new Epic(epic);
     }
 
     // Final
     @Override
-    public void addTask(Task task) { // создание новой задачи
+    public synchronized void addTask(Task task) { // создание новой задачи
         if (task == null) {
             throw new IllegalArgumentException("Task не должна быть null.");
         }
@@ -153,32 +188,42 @@ public class InMemoryTaskManager implements TaskManager {
             throw new TimeOverlapException("Задача с id: "
                     + task.getId() + " пересекается по времени выполнения с другими задачами.");
         }
-        tasks.put(task.getId(), new Task(task));
-        taskPriorityList.add(task);
+        storeTask(task);
     }
 
     @Override
-    public void addEpic(Epic epic) { // создание нового эпика
+    public synchronized void addEpic(Epic epic) { // создание нового эпика
         if (epic == null) {
             throw new IllegalArgumentException("Epic не должен быть null.");
         }
+        storeEpic(epic);
+    }
+
+    private void storeEpic(Epic epic) {
         if (epic.getId() == 0) {
             epic.setId(generateNewId());
         }
 
-        epics.put(epic.getId(), new Epic(epic));
-
-        if (!epic.getSubtaskList().isEmpty()) {
-            epic = updateEpicStatus(epic).orElseThrow(() ->
-                    new IllegalArgumentException("Обновление статуса Epic невозможно: " +
-                            "Epic не добавлен в менеджер.")
-            );
-            epics.put(epic.getId(), new Epic(epic));
+        // Состав эпика определяют сами подзадачи: из переданного списка остаются только
+        // подзадачи менеджера, которые ссылаются на этот эпик
+        Epic storedEpic = new Epic(epic.getId(), epic.getTitle(), epic.getDescription(), NEW,
+                LocalDateTime.MIN, Duration.ZERO);
+        EpicAggregate aggregate = new EpicAggregate();
+        for (Integer subtaskId : epic.getSubtaskList()) {
+            Subtask subtask = subtasks.get(subtaskId);
+            if (subtask != null && subtask.getEpicTask().equals(epic.getId())) {
+                storedEpic.addSubtask(subtaskId);
+                aggregate.add(subtask);
+            }
         }
+        aggregate.applyTo(storedEpic);
+        epics.put(storedEpic.getId(), storedEpic);
+        epicAggregates.put(storedEpic.getId(), aggregate);
+        dirtyEpics.remove(storedEpic.getId());
     }
 
     @Override
-    public void addSubtask(Subtask subtask) { // создание новой подзадачи
+    public synchronized void addSubtask(Subtask subtask) { // создание новой подзадачи
         if (subtask == null) {
             throw new IllegalArgumentException("Subtask не должен быть null.");
         }
@@ -192,31 +237,190 @@ public class InMemoryTaskManager implements TaskManager {
             throw new TimeOverlapException("Подзадача с id: "
                     + subtask.getId() + " пересекается по времени выполнения с другими задачами.");
         }
+        storeSubtask(subtask);
+        refreshEpic(epicId);
+    }
+
+    @Override
+    public synchronized void addAll(Collection<? extends Task> items) { // пакетное создание задач, эпиков и подзадач
+        List<TimeConflict> conflicts = validateBatch(items);
+        if (!conflicts.isEmpty()) {
+            throw new TimeOverlapException("Пакет содержит " + conflicts.size()
+                    + " пересечений по времени выполнения: "
+                    + conflicts.stream().map(TimeConflict::toString).collect(Collectors.joining("; ")) + ".");
+        }
+        insertAll(items);
+    }
+
+    // Проверяет пакет целиком: ссылки подзадач на эпики и все пересечения по времени.
+    // Пересечения ищутся одним проходом по отсортированному пакету.
+    public synchronized List<TimeConflict> validateBatch(Collection<? extends Task> items) {
+        if (items == null) {
+            throw new IllegalArgumentException("Пакет задач не должен быть null.");
+        }
+        Set<Integer> batchEpics = new HashSet<>();
+        List<Task> timed = new ArrayList<>(items.size());
+        for (Task item : items) {
+            if (item == null) {
+                throw new IllegalArgumentException("Пакет не должен содержать null.");
+            }
+            if (item instanceof Epic epic) {
+                batchEpics.add(epic.getId());
+            } else {
+                timed.add(item);
+            }
+        }
+        for (Task item : timed) {
+            if (item instanceof Subtask subtask && (subtask.getEpicTask() == null
+                    || !epics.containsKey(subtask.getEpicTask()) && !batchEpics.contains(subtask.getEpicTask()))) {
+                throw new IllegalArgumentException("Указанный в Subtask с id: " + subtask.getId()
+                        + " Epic с id: " + subtask.getEpicTask() + " не найден ни в менеджере, ни в пакете.");
+            }
+        }
+        return timeIndex.findConflicts(timed);
+    }
+
+    // Вставка пакета, уже прошедшего validateBatch: без попарных проверок пересечений,
+    // время и статус каждого затронутого эпика пересчитываются один раз.
+    protected void insertAll(Collection<? extends Task> items) {
+        for (Task item : items) {
+            if (item instanceof Epic epic) {
+                storeEpic(epic);
+            }
+        }
+        Set<Integer> touchedEpics = new HashSet<>();
+        for (Task item : items) {
+            if (item instanceof Subtask subtask) {
+                storeSubtask(subtask);
+                touchedEpics.add(subtask.getEpicTask());
+            } else if (!(item instanceof Epic)) {
+                if (item.getId() == 0) {
+                    item.setId(generateNewId());
+                }
+                if (item.getStatus() == null) {
+                    item.setStatus(NEW);
+                }
+                storeTask(item);
+            }
+        }
+        touchedEpics.forEach(this::refreshEpic);
+    }
+
+    // Загрузка заведомо корректного состояния (например, прошедшего validateBatch) в пустой
+    // менеджер. Записи переходят во владение менеджера и кладутся в хранилища без копий и без
+    // проверок пересечений; приоритетный и временной индексы строятся по одной сортировке,
+    // показатели каждого эпика считаются один раз. История не меняется.
+    protected void bulkLoad(Collection<? extends Task> records) {
+        if (!tasks.isEmpty() || !subtasks.isEmpty() || !epics.isEmpty()) {
+            throw new IllegalStateException("Пакетная загрузка возможна только в пустой менеджер.");
+        }
+        for (Task record : records) {
+            if (record instanceof Epic epic) {
+                // Состав, время и статус эпика восстанавливаются по подзадачам
+                epics.put(epic.getId(), new Epic(epic.getId(), epic.getTitle(), epic.getDescription(), NEW,
+                        LocalDateTime.MIN, Duration.ZERO));
+            }
+        }
+        List<Task> timeline = new ArrayList<>(records.size());
+        for (Task record : records) {
+            if (record instanceof Subtask subtask) {
+                subtasks.put(subtask.getId(), subtask);
+                epics.get(subtask.getEpicTask()).addSubtask(subtask.getId());
+                timeline.add(subtask);
+            } else if (!(record instanceof Epic)) {
+                tasks.put(record.getId(), record);
+                timeline.add(record);
+            }
+        }
+        timeline.sort(PrioritizedTaskIndex.byStartThenId);
+        taskPriorityIndex.addAllSorted(timeline);
+        timeIndex.addAllSorted(timeline);
+        for (int epicId : epics.keys()) {
+            recomputeEpic(epicId);
+        }
+    }
+
+    private void storeTask(Task task) {
+        Task previousTask = tasks.get(task.getId());
+        taskPriorityIndex.remove(previousTask);
+        timeIndex.remove(previousTask);
+
+        Task storedTask = new Task(task);
+        tasks.put(task.getId(), storedTask);
+        taskPriorityIndex.add(storedTask);
+        timeIndex.add(storedTask);
+    }
+
+    // Регистрирует подзадачу в хранилищах и в списке её эпика; время и статус эпика не пересчитывает
+    private void storeSubtask(Subtask subtask) {
         if (subtask.getId() == 0) {
             subtask.setId(generateNewId());
         }
         if (subtask.getStatus() == null) {
             subtask.setStatus(NEW);
         }
-        taskPriorityList.add(subtask);
 
-        Epic epic = new Epic(epics.get(epicId));
-        epic.addSubtask(subtask.getId());
-        subtasks.put(subtask.getId(), new Subtask(subtask));
-        epic = updateEpicTime(epic);
-        epic = updateEpicStatus(epic).orElseThrow(() ->
-                new IllegalArgumentException("Обновление статуса Epic невозможно: " +
-                        "Epic не добавлен в менеджер.")
-        );
-        epics.put(epic.getId(), epic);
+        epics.get(subtask.getEpicTask()).addSubtask(subtask.getId());
+        Subtask storedSubtask = new Subtask(subtask);
+        subtasks.put(subtask.getId(), storedSubtask);
+        taskPriorityIndex.add(storedSubtask);
+        timeIndex.add(storedSubtask);
+        subtaskAdded(storedSubtask);
+    }
+
+    // Учитывает подзадачу в показателях эпика; в режиме LAZY только помечает эпик устаревшим
+    private void subtaskAdded(Subtask subtask) {
+        if (epicRefreshMode == EpicRefreshMode.LAZY) {
+            dirtyEpics.add(subtask.getEpicTask());
+        } else {
+            epicAggregates.get(subtask.getEpicTask()).add(subtask);
+        }
+    }
+
+    // subtask - версия подзадачи, с которой она была учтена в эпике
+    private void subtaskRemoved(Subtask subtask) {
+        if (epicRefreshMode == EpicRefreshMode.LAZY) {
+            dirtyEpics.add(subtask.getEpicTask());
+        } else {
+            epicAggregates.get(subtask.getEpicTask()).remove(subtask);
+        }
+    }
+
+    // Переносит накопленные показатели подзадач в хранимый эпик, без копирования эпика.
+    // Устаревший эпик ждёт пересчета при чтении.
+    private void refreshEpic(Integer epicId) {
+        if (!dirtyEpics.contains(epicId)) {
+            epicAggregates.get(epicId).applyTo(epics.get(epicId));
+        }
+    }
+
+    // Пересобирает показатели эпика по его подзадачам - один проход на эпик
+    private void recomputeEpic(int epicId) {
+        Epic epic = epics.get(epicId);
+        EpicAggregate aggregate = new EpicAggregate();
+        for (Integer subtaskId : epic.getSubtaskList()) {
+            aggregate.add(subtasks.get(subtaskId));
+        }
+        aggregate.applyTo(epic);
+        epicAggregates.put(epicId, aggregate);
+        dirtyEpics.remove(epicId);
+    }
+
+    protected void refreshDirtyEpics() {
+        if (dirtyEpics.isEmpty()) {
+            return;
+        }
+        for (int epicId : dirtyEpics.toSortedArray()) {
+            recomputeEpic(epicId);
+        }
     }
 
     @Override
-    public void updateTask(Task task) {
+    public synchronized void updateTask(Task task) {
         if (task == null) {
             throw new IllegalArgumentException("Task не должен быть null.");
         }
-        if (!tasks.containsKey(task.getId())) {
+        if (task.getId() == null || !tasks.containsKey(task.getId())) {
             throw new NoSuchElementException("Обновляемый Task с id: "
                     + task.getId() + " не найден в менеджере.");
         }
@@ -224,37 +428,33 @@ public class InMemoryTaskManager implements TaskManager {
             throw new TimeOverlapException("Обновляемая задача с id: "
                     + task.getId() + " пересекается по времени выполнения с другими задачами.");
         }
-        Task previousTask = tasks.get(task.getId());
-        taskPriorityList.remove(previousTask);
-        taskPriorityList.add(task);
-        tasks.put(task.getId(), task);
+        storeTask(task);
     }
 
     // Final
     @Override
-    public void updateEpic(Epic epic) {
+    public synchronized void updateEpic(Epic epic) {
         if (epic == null) {
             throw new IllegalArgumentException("Epic не должен быть null.");
         }
-        if (!epics.containsKey(epic.getId())) {
+        if (epic.getId() == null || !epics.containsKey(epic.getId())) {
             throw new NoSuchElementException("Обновляемый Epic с id: "
                     + epic.getId() + " не найден в менеджере.");
         }
-        epic = updateEpicTime(epic);
-        epic = updateEpicStatus(epic).orElseThrow(() ->
-                new IllegalArgumentException("Обновление статуса Epic невозможно: " +
-                        "Epic не добавлен в менеджер.")
-        );
-        epics.put(epic.getId(), new Epic(epic));
+        // Статус, время и состав эпика вычисляются по подзадачам, обновляются только его поля
+        Epic storedEpic = epics.get(epic.getId());
+        storedEpic.setTitle(epic.getTitle());
+        storedEpic.setDescription(epic.getDescription());
+        refreshEpic(storedEpic.getId());
     }
 
     // Final
     @Override
-    public void updateSubtask(Subtask subtask) {
+    public synchronized void updateSubtask(Subtask subtask) {
         if (subtask == null) {
             throw new IllegalArgumentException("Subtask не должен быть null.");
         }
-        if (!subtasks.containsKey(subtask.getId())) {
+        if (subtask.getId() == null || !subtasks.containsKey(subtask.getId())) {
             throw new NoSuchElementException("Обновляемый Subtask с id: "
                     + subtask.getId() + " не найден в менеджере.");
         }
@@ -263,13 +463,7 @@ public class InMemoryTaskManager implements TaskManager {
                     + subtask.getId() + " пересекается по времени выполнения с другими задачами.");
         }
 
-        int subtaskId = subtask.getId();
-        Subtask previousSubtask = subtasks.get(subtaskId);
-        taskPriorityList.remove(previousSubtask);
-        taskPriorityList.add(subtask);
-        subtasks.put(subtaskId, new Subtask(subtask));
-
-        if (!epics.containsKey(subtask.getEpicTask())) {
+        if (subtask.getEpicTask() == null || !epics.containsKey(subtask.getEpicTask())) {
             throw new IllegalStateException("Нарушена целостность данных: "
                     + "Subtask с id: " + subtask.getId()
                     + " содержит ссылку на epic: " + subtask.getEpicTask()
@@ -278,24 +472,30 @@ public class InMemoryTaskManager implements TaskManager {
 
         Epic epic = epics.get(subtask.getEpicTask());
 
-        if (!epic.getSubtaskList().contains(subtask.getId())) {
+        if (!epic.containsSubtask(subtask.getId())) {
             throw new IllegalStateException("Нарушена целостность данных: "
                     + "Subtask c id: " + subtask.getId()
                     + " не зарегистрирована в epic с id:" + epic.getId()
                     + ", как его подзадача.");
         }
 
-        epic = updateEpicTime(epic);
-        epic = updateEpicStatus(epic).orElseThrow(() ->
-                new IllegalArgumentException("Обновление статуса Epic невозможно: " +
-                        "Epic не добавлен в менеджер.")
-        );
-        epics.put(epic.getId(), epic);
+        int subtaskId = subtask.getId();
+        Subtask previousSubtask = subtasks.get(subtaskId);
+        Subtask storedSubtask = new Subtask(subtask);
+        taskPriorityIndex.remove(previousSubtask);
+        taskPriorityIndex.add(storedSubtask);
+        timeIndex.remove(previousSubtask);
+        timeIndex.add(storedSubtask);
+        subtasks.put(subtaskId, storedSubtask);
+
+        subtaskRemoved(previousSubtask);
+        subtaskAdded(storedSubtask);
+        refreshEpic(epic.getId());
     }
 
     // Final
     @Override
-    public void deleteTaskById(Integer id) { //удаление задачи по ID
+    public synchronized void deleteTaskById(Integer id) { //удаление задачи по ID
         if (id == null) {
             throw new IllegalArgumentException("ID удаляемой задачи не должно быть null.");
         }
@@ -305,37 +505,38 @@ public class InMemoryTaskManager implements TaskManager {
         if (task == null) {
             throw new NoSuchElementException("Task с id: " + id + " не найдена.");
         }
-        taskPriorityList.remove(task);
+        taskPriorityIndex.remove(task);
+        timeIndex.remove(task);
         history.remove(id);
         tasks.remove(id);
     }
 
     // Final
     @Override
-    public void deleteSubtaskById(Integer id) { //удаление подзадачи по ID
+    public synchronized void deleteSubtaskById(Integer id) { //удаление подзадачи по ID
         if (id == null) {
             throw new IllegalArgumentException("ID удаляемой подзадачи не должно быть null.");
         }
 
-        Subtask sub = subtasks.get(id);
-
-        if (sub == null) {
+        if (!subtasks.containsKey(id)) {
             throw new NoSuchElementException("Subtask с id: " + id + " не найдена.");
         }
-        taskPriorityList.remove(sub);
+        removeSubtask(id);
+    }
+
+    private void removeSubtask(int id) {
+        Subtask sub = subtasks.get(id);
+        taskPriorityIndex.remove(sub);
+        timeIndex.remove(sub);
         history.remove(id);
         subtasks.remove(id);
 
         Epic epic = epics.get(sub.getEpicTask());
         if (epic != null) {
-            if (epic.getSubtaskList().contains(sub.getId())) {
+            if (epic.containsSubtask(sub.getId())) {
                 epic.removeSubtask(id);
-                Epic updateEpic = updateEpicStatus(epic).orElseThrow(() ->
-                        new IllegalArgumentException("Обновление статуса Epic невозможно: " +
-                                "Epic не добавлен в менеджер.")
-                );
-                updateEpic = updateEpicTime(updateEpic);
-                epics.put(updateEpic.getId(), updateEpic);
+                subtaskRemoved(sub);
+                refreshEpic(epic.getId());
             } else {
                 throw new IllegalStateException("Нарушена целостность данных: "
                         + "Subtask c id: " + id
@@ -347,143 +548,119 @@ public class InMemoryTaskManager implements TaskManager {
 
     // Final
     @Override
-    public void deleteEpicById(Integer id) { // удаление эпика по ID
+    public synchronized void deleteEpicById(Integer id) { // удаление эпика по ID
         if (id == null) {
             throw new IllegalArgumentException("ID удаляемого эпика не должно быть null.");
         }
 
-        Epic epic = epics.get(id);
-
-        if (epic == null) {
+        if (!epics.containsKey(id)) {
             throw new NoSuchElementException("Epic с id: " + id + " не найден.");
         }
+        removeEpic(id);
+    }
 
-        List<Integer> subTaskIdList = epics.get(id).getSubtaskList();
-        if (!subTaskIdList.isEmpty()) {
-            for (Integer subTaskId : subTaskIdList) {
-                taskPriorityList.remove(subtasks.get(subTaskId));
+    private void removeEpic(int id) {
+        Epic epic = epics.get(id);
+        if (epic.hasSubtasks()) {
+            for (Integer subTaskId : epic.getSubtaskList()) {
+                taskPriorityIndex.remove(subtasks.get(subTaskId));
+                timeIndex.remove(subtasks.get(subTaskId));
                 subtasks.remove(subTaskId);
                 history.remove(subTaskId);
             }
         }
         epics.remove(id);
+        epicAggregates.remove(id);
+        dirtyEpics.remove(id);
         history.remove(id);
     }
 
     // Final
     @Override
-    public ArrayList<Task> getHistory() {
+    public synchronized ArrayList<Task> getHistory() {
+        // История хранит свои копии, снятые при просмотре: пересчет эпиков её не меняет
         return history.getHistory();
     }
 
-    public List<Task> getPrioritizedTasks() {
-        return taskPriorityList.stream().toList();
-    }
-
-    protected boolean checkTimeOverlap(Task task) {
-
-        if (taskPriorityList.isEmpty())
-            return true;
-
-        if (task.getStartTime() == null)
-            return true;
-
-        return taskPriorityList
-                .stream()
-                .filter(priorityTask -> !Objects.equals(priorityTask.getId(), task.getId()))
-                .filter(priorityTask -> priorityTask.getStartTime() != null)
-                .filter(priorityTask -> priorityTask.getStartTime().isEqual(task.getStartTime())
-                        || (priorityTask.getStartTime().isBefore(task.getStartTime())
-                        && priorityTask.getEndTime().isAfter(task.getStartTime()))
-                        || (priorityTask.getStartTime().isAfter(task.getStartTime())
-                        && priorityTask.getStartTime().isBefore(task.getEndTime())))
-                .findFirst()
-                .isEmpty();
+    public synchronized List<Task> getPrioritizedTasks() {
+        return taskPriorityIndex.toList();
     }
 
-    // Final
-    private Integer generateNewId() {
-        return taskId++;
+    @Override
+    public synchronized List<Task> getTasksInWindow(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Границы временного окна не должны быть null.");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало временного окна " + from
+                    + " позже его конца " + to + ".");
+        }
+        return timeIndex.findInWindow(from, to);
     }
 
-    protected Epic updateEpicTime(Epic epic) {
-
-        Epic updateTimeEpic = new Epic(epic);
-
-        updateTimeEpic.setDuration(Duration.ZERO);
-        updateTimeEpic.setStartTime(LocalDateTime.MIN);
-        updateTimeEpic.setEndTime(LocalDateTime.MIN);
-
-        if (updateTimeEpic.getSubtaskList().isEmpty()) {
-            return updateTimeEpic;
+    @Override
+    public synchronized LocalDateTime findNextFreeSlot(Duration duration, LocalDateTime notBefore) {
+        if (duration == null || notBefore == null) {
+            throw new IllegalArgumentException("Длительность и начало поиска свободного времени не должны быть null.");
         }
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("Длительность не может быть отрицательной: " + duration);
+        }
+        return timeIndex.findFreeSlot(notBefore, duration);
+    }
 
-        LocalDateTime subtaskStartTime;
-        LocalDateTime subtaskEndTime;
-        Duration subtaskDuration;
-
-        for (Integer id : updateTimeEpic.getSubtaskList()) {
-            if (subtasks.get(id).getStartTime() != LocalDateTime.MIN) {
-                subtaskStartTime = subtasks.get(id).getStartTime();
-                subtaskDuration = subtasks.get(id).getDuration();
-                subtaskEndTime = subtasks.get(id).getEndTime();
-
-                if (updateTimeEpic.getSubtaskList().size() == 1) {
-                    updateTimeEpic.setStartTime(subtaskStartTime);
-                    updateTimeEpic.setDuration(subtaskDuration);
-                    updateTimeEpic.setEndTime(subtaskEndTime);
-                    return updateTimeEpic;
-                }
-                if (updateTimeEpic.getStartTime() == LocalDateTime.MIN) {
-                    updateTimeEpic.setStartTime(subtaskStartTime);
-                    updateTimeEpic.setEndTime(subtaskEndTime);
-                }
-                updateTimeEpic.setDuration(updateTimeEpic.getDuration().plus(subtaskDuration));
-                if (subtaskStartTime.isBefore(updateTimeEpic.getStartTime())) {
-                    updateTimeEpic.setStartTime(subtaskStartTime);
-                }
-                if (subtaskEndTime.isAfter(updateTimeEpic.getEndTime())) {
-                    updateTimeEpic.setEndTime(subtaskEndTime);
-                }
+    @Override
+    public synchronized List<Task> scheduleUnscheduled(SchedulePolicy policy, LocalDateTime notBefore) {
+        if (policy == null || notBefore == null) {
+            throw new IllegalArgumentException("Политика и начало планирования не должны быть null.");
+        }
+        List<Task> unscheduled = new ArrayList<>(taskPriorityIndex.getUnscheduled());
+        unscheduled.sort(policy.getOrder());
+
+        List<LocalDateTime> starts = timeIndex.packSlots(notBefore,
+                unscheduled.stream().map(Task::getDuration).toList());
+
+        List<Task> scheduled = new ArrayList<>(unscheduled.size());
+        Set<Integer> touchedEpics = new HashSet<>();
+        for (int i = 0; i < unscheduled.size(); i++) {
+            Task previous = unscheduled.get(i);
+            Task placed;
+            if (previous instanceof Subtask subtask) {
+                Subtask placedSubtask = new Subtask(subtask);
+                placedSubtask.setStartTime(starts.get(i));
+                subtasks.put(placedSubtask.getId(), placedSubtask);
+                subtaskRemoved(subtask);
+                subtaskAdded(placedSubtask);
+                touchedEpics.add(placedSubtask.getEpicTask());
+                placed = placedSubtask;
+            } else {
+                placed = new Task(previous);
+                placed.setStartTime(starts.get(i));
+                tasks.put(placed.getId(), placed);
             }
+            taskPriorityIndex.remove(previous);
+            taskPriorityIndex.add(placed);
+            timeIndex.add(placed);
+            scheduled.add(placed);
         }
-        return updateTimeEpic;
-    }
 
-    // Ready
-    private Optional<Epic> updateEpicStatus(Epic epic) { //Обновление статуса у эпика
+        touchedEpics.forEach(this::refreshEpic);
+        return scheduled;
+    }
 
-        int allInProgress = 0;
-        int allDone = 0;
+    protected boolean checkTimeOverlap(Task task) {
 
-        if (epic == null) {
-            return Optional.empty();
-        }
+        if (timeIndex.isEmpty())
+            return true;
 
-        if (!epics.containsKey(epic.getId())) {
-            return Optional.empty();
-        }
+        if (task.getStartTime() == null)
+            return true;
 
-        if (epic.getSubtaskList().isEmpty()) {
-            epic.setStatus(NEW);
-            return Optional.of(epic);
-        }
+        return timeIndex.findOverlap(task) == null;
+    }
 
-        for (Integer subTaskId : epic.getSubtaskList()) {
-            if (subtasks.get(subTaskId).getStatus() == IN_PROGRESS) {
-                allInProgress++;
-                break;
-            } else if (subtasks.get(subTaskId).getStatus() == DONE) {
-                allDone++;
-            }
-        }
-        if (allDone > 0 && allDone == epic.getSubtaskList().size()) {
-            epic.setStatus(DONE);
-        } else if (allInProgress > 0 || allDone > 0) {
-            epic.setStatus(IN_PROGRESS);
-        } else {
-            epic.setStatus(NEW);
-        }
-        return Optional.of(epic);
+    // Final
+    private Integer generateNewId() {
+        return taskId++;
     }
-}
\ No newline at end of file
+}
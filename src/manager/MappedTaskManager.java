@@ -0,0 +1,36 @@
+package manager;
+
+import java.io.File;
+
+// Менеджер для досок больше кучи: задачи лежат в отображенном в память файле (MappedTaskStore),
+// в куче - шкала запланированных задач из примитивов (PackedTimeline), 16 байт на задачу.
+// Логика менеджера общая с BTreeTaskManager и описана в RecordTaskManager.
+public class MappedTaskManager extends RecordTaskManager {
+
+    private MappedTaskManager(MappedTaskStore store, PackedTimeline timeline) {
+        super(store, timeline);
+    }
+
+    // Новая пустая доска; прежние файлы по этому пути обнуляются
+    public MappedTaskManager(File file) {
+        this(file, DescriptionStorage.INLINE);
+    }
+
+    public MappedTaskManager(File file, DescriptionStorage descriptions) {
+        this(MappedTaskStore.create(file.toPath(), descriptions), new PackedTimeline());
+    }
+
+    // Открывает доску, записанную ранее; в память читается только шкала времени
+    public static MappedTaskManager open(File file) {
+        MappedTaskStore store = MappedTaskStore.open(file.toPath());
+        PackedTimeline timeline = new PackedTimeline();
+        store.forEachId(id -> {
+            byte type = store.type(id);
+            if ((type == TaskRecordStore.TASK || type == TaskRecordStore.SUBTASK) && store.isScheduled(id)) {
+                timeline.stage(store.startSecond(id), store.startNano(id), id);
+            }
+        });
+        timeline.commitStaged();
+        return new MappedTaskManager(store, timeline);
+    }
+}
@@ -0,0 +1,509 @@
+package manager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+import tasks.TaskStatus;
+
+// Файлы MappedTaskManager. Записи фиксированной ширины лежат в файле доски по адресу
+// id * RECORD_SIZE, названия и описания - в куче строк <файл>.heap. Оба файла отображаются
+// в память сегментами и растут по мере надобности; поле читается прямо из отображения.
+// Запись 0 - заголовок: сигнатура, версия, следующий id, наибольший занятый id, конец кучи.
+// Строка при замене на не более длинную переписывается на месте, иначе дописывается в конец
+// кучи; место старых строк не освобождается.
+// В режиме DescriptionStorage.COLD описания лежат сжатыми в DescriptionBlobs, а поле
+// DESCRIPTION хранит адрес блока; режим записан в заголовке.
+// Отображенный файл пишет на диск ОС: записи переживают падение процесса, но не сбой
+// питания посреди изменения - force() сбрасывает всё, что записано до вызова.
+class MappedTaskStore implements TaskRecordStore {
+
+    static final int RECORD_SIZE = 80;
+    private static final int RECORDS_PER_SEGMENT = 1 << 16;
+    private static final long RECORD_SEGMENT_SIZE = (long) RECORD_SIZE * RECORDS_PER_SEGMENT;
+    private static final int HEAP_SEGMENT_SIZE = 1 << 24;
+    private static final int MAGIC = 0x4B424D53; // "KBMS"
+    private static final int VERSION = 1;
+    private static final int NULL_STRING = -1;
+    private static final long UNSCHEDULED_SECOND = LocalDateTime.MIN.toEpochSecond(ZoneOffset.UTC);
+
+    // Поля заголовка
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_NEXT_ID = 8;
+    private static final int HEADER_MAX_ID = 12;
+    private static final int HEADER_HEAP_END = 16;
+    private static final int HEADER_DESCRIPTIONS = 24;
+
+    // Поля записи. LINK - эпик подзадачи или первая подзадача эпика, PREVIOUS - предыдущая
+    // подзадача того же эпика или последняя подзадача эпика, NEXT - следующая подзадача.
+    private static final int TYPE = 0;
+    private static final int STATUS = 1;
+    private static final int LINK = 4;
+    private static final int PREVIOUS = 8;
+    private static final int NEXT = 12;
+    private static final int START_SECOND = 16;
+    private static final int START_NANO = 24;
+    private static final int DURATION_NANO = 28;
+    private static final int DURATION_SECOND = 32;
+    private static final int END_SECOND = 40;
+    private static final int END_NANO = 48;
+    private static final int TITLE_LENGTH = 52;
+    private static final int TITLE = 56;
+    private static final int DESCRIPTION = 64;
+    private static final int DESCRIPTION_LENGTH = 72;
+
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+    private static final DescriptionStorage[] DESCRIPTION_STORAGES = DescriptionStorage.values();
+
+    private final Path path;
+    private final FileChannel records;
+    private final FileChannel heap;
+    private final List<MappedByteBuffer> recordSegments;
+    private final List<MappedByteBuffer> heapSegments;
+    // null в режиме INLINE
+    private DescriptionBlobs blobs;
+
+    private MappedTaskStore(Path path, FileChannel records, FileChannel heap) {
+        this.path = path;
+        this.records = records;
+        this.heap = heap;
+        this.recordSegments = new ArrayList<>();
+        this.heapSegments = new ArrayList<>();
+    }
+
+    static Path heapPathFor(Path path) {
+        return path.resolveSibling(path.getFileName() + ".heap");
+    }
+
+    // Пустое хранилище; прежние файлы по этому пути обнуляются
+    static MappedTaskStore create(Path path, DescriptionStorage descriptions) {
+        MappedTaskStore store = openFiles(path, StandardOpenOption.TRUNCATE_EXISTING);
+        store.mapRecordSegment();
+        MappedByteBuffer header = store.recordSegments.getFirst();
+        header.putInt(HEADER_MAGIC, MAGIC);
+        header.putInt(HEADER_VERSION, VERSION);
+        header.putInt(HEADER_NEXT_ID, 1);
+        header.putInt(HEADER_MAX_ID, 0);
+        header.putLong(HEADER_HEAP_END, 0);
+        header.putInt(HEADER_DESCRIPTIONS, descriptions.ordinal());
+        if (descriptions == DescriptionStorage.COLD) {
+            store.blobs = DescriptionBlobs.create(path);
+        }
+        return store;
+    }
+
+    // Заголовок читается и проверяется до отображения: отображение за концом файла удлиняет
+    // его, и чужой файл, открытый по ошибке, был бы испорчен. Куча строк открывается только
+    // для файла, признанного доской.
+    static MappedTaskStore open(Path path) {
+        if (!path.toFile().isFile()) {
+            throw new ManagerSaveException("Файл не найден.");
+        }
+        FileChannel records = null;
+        FileChannel heap = null;
+        try {
+            records = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE);
+            int read = 0;
+            while (header.hasRemaining() && read >= 0) {
+                read = records.read(header, header.position());
+            }
+            if (header.hasRemaining() || header.getInt(HEADER_MAGIC) != MAGIC) {
+                throw new ManagerSaveException("Файл " + path + " не является отображаемой доской.");
+            }
+            if (header.getInt(HEADER_VERSION) != VERSION) {
+                throw new ManagerSaveException("Неподдерживаемая версия отображаемой доски: "
+                        + header.getInt(HEADER_VERSION));
+            }
+            int descriptions = header.getInt(HEADER_DESCRIPTIONS);
+            if (descriptions < 0 || descriptions >= DESCRIPTION_STORAGES.length) {
+                throw new ManagerSaveException("Неизвестный способ хранения описаний в " + path + ": "
+                        + descriptions);
+            }
+
+            heap = FileChannel.open(heapPathFor(path), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            MappedTaskStore store = new MappedTaskStore(path, records, heap);
+            long recordsSize = records.size();
+            while ((long) store.recordSegments.size() * RECORD_SEGMENT_SIZE < recordsSize) {
+                store.mapRecordSegment();
+            }
+            long heapSize = heap.size();
+            while ((long) store.heapSegments.size() * HEAP_SEGMENT_SIZE < heapSize) {
+                store.mapHeapSegment();
+            }
+            if (DESCRIPTION_STORAGES[descriptions] == DescriptionStorage.COLD) {
+                store.blobs = DescriptionBlobs.open(path);
+            }
+            return store;
+        } catch (IOException e) {
+            throw rejected(new ManagerSaveException("Не могу прочесть " + path + ". Ошибка: " + e.getMessage()),
+                    records, heap);
+        } catch (ManagerSaveException e) {
+            throw rejected(e, records, heap);
+        }
+    }
+
+    // Закрывает каналы непринятого файла и возвращает исходную ошибку
+    private static ManagerSaveException rejected(ManagerSaveException error, FileChannel... channels) {
+        for (FileChannel channel : channels) {
+            if (channel == null) {
+                continue;
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Файл уже непригоден, исходная ошибка важнее
+            }
+        }
+        return error;
+    }
+
+    private static MappedTaskStore openFiles(Path path, StandardOpenOption... extra) {
+        List<StandardOpenOption> options = new ArrayList<>(List.of(StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE));
+        options.addAll(List.of(extra));
+        StandardOpenOption[] mode = options.toArray(StandardOpenOption[]::new);
+        try {
+            FileChannel records = FileChannel.open(path, mode);
+            try {
+                return new MappedTaskStore(path, records, FileChannel.open(heapPathFor(path), mode));
+            } catch (IOException e) {
+                records.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу открыть " + path + ". Ошибка: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public DescriptionStorage descriptionStorage() {
+        return DESCRIPTION_STORAGES[header().getInt(HEADER_DESCRIPTIONS)];
+    }
+
+    @Override
+    public int nextId() {
+        return header().getInt(HEADER_NEXT_ID);
+    }
+
+    @Override
+    public void setNextId(int id) {
+        header().putInt(HEADER_NEXT_ID, id);
+    }
+
+    // Наибольший id, под который когда-либо выделялась запись; граница обхода хранилища
+    private int maxId() {
+        return header().getInt(HEADER_MAX_ID);
+    }
+
+    @Override
+    public void forEachId(IntConsumer action) {
+        for (int id = 1, max = maxId(); id <= max; id++) {
+            if (type(id) != FREE) {
+                action.accept(id);
+            }
+        }
+    }
+
+    @Override
+    public byte type(int id) {
+        if (id <= 0 || id > maxId()) {
+            return FREE;
+        }
+        return segment(id).get(offset(id) + TYPE);
+    }
+
+    @Override
+    public void allocate(int id, byte type) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("id записи должен быть положительным: " + id);
+        }
+        while ((long) recordSegments.size() * RECORDS_PER_SEGMENT <= id) {
+            mapRecordSegment();
+        }
+        MappedByteBuffer segment = segment(id);
+        int offset = offset(id);
+        for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+            segment.putLong(offset + i, 0);
+        }
+        segment.put(offset + TYPE, type);
+        segment.putInt(offset + TITLE_LENGTH, NULL_STRING);
+        segment.putInt(offset + DESCRIPTION_LENGTH, NULL_STRING);
+        if (id > maxId()) {
+            header().putInt(HEADER_MAX_ID, id);
+        }
+    }
+
+    @Override
+    public void free(int id) {
+        MappedByteBuffer segment = segment(id);
+        int offset = offset(id);
+        for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+            segment.putLong(offset + i, 0);
+        }
+    }
+
+    @Override
+    public TaskStatus status(int id) {
+        return STATUSES[segment(id).get(offset(id) + STATUS)];
+    }
+
+    @Override
+    public void setStatus(int id, TaskStatus status) {
+        segment(id).put(offset(id) + STATUS, (byte) status.ordinal());
+    }
+
+    @Override
+    public int epicId(int id) {
+        return segment(id).getInt(offset(id) + LINK);
+    }
+
+    @Override
+    public void setEpicId(int id, int epicId) {
+        segment(id).putInt(offset(id) + LINK, epicId);
+    }
+
+    @Override
+    public int firstSubtask(int epicId) {
+        return segment(epicId).getInt(offset(epicId) + LINK);
+    }
+
+    @Override
+    public void setFirstSubtask(int epicId, int subtaskId) {
+        segment(epicId).putInt(offset(epicId) + LINK, subtaskId);
+    }
+
+    @Override
+    public int lastSubtask(int epicId) {
+        return segment(epicId).getInt(offset(epicId) + PREVIOUS);
+    }
+
+    @Override
+    public void setLastSubtask(int epicId, int subtaskId) {
+        segment(epicId).putInt(offset(epicId) + PREVIOUS, subtaskId);
+    }
+
+    @Override
+    public int previous(int subtaskId) {
+        return segment(subtaskId).getInt(offset(subtaskId) + PREVIOUS);
+    }
+
+    @Override
+    public void setPrevious(int subtaskId, int previous) {
+        segment(subtaskId).putInt(offset(subtaskId) + PREVIOUS, previous);
+    }
+
+    @Override
+    public int next(int subtaskId) {
+        return segment(subtaskId).getInt(offset(subtaskId) + NEXT);
+    }
+
+    @Override
+    public void setNext(int subtaskId, int next) {
+        segment(subtaskId).putInt(offset(subtaskId) + NEXT, next);
+    }
+
+    @Override
+    public long startSecond(int id) {
+        return segment(id).getLong(offset(id) + START_SECOND);
+    }
+
+    @Override
+    public int startNano(int id) {
+        return segment(id).getInt(offset(id) + START_NANO);
+    }
+
+    @Override
+    public boolean isScheduled(int id) {
+        return startSecond(id) != UNSCHEDULED_SECOND || startNano(id) != 0;
+    }
+
+    @Override
+    public LocalDateTime start(int id) {
+        return LocalDateTime.ofEpochSecond(startSecond(id), startNano(id), ZoneOffset.UTC);
+    }
+
+    @Override
+    public void setStart(int id, LocalDateTime start) {
+        MappedByteBuffer segment = segment(id);
+        segment.putLong(offset(id) + START_SECOND, start.toEpochSecond(ZoneOffset.UTC));
+        segment.putInt(offset(id) + START_NANO, start.getNano());
+    }
+
+    @Override
+    public Duration duration(int id) {
+        MappedByteBuffer segment = segment(id);
+        return Duration.ofSeconds(segment.getLong(offset(id) + DURATION_SECOND),
+                segment.getInt(offset(id) + DURATION_NANO));
+    }
+
+    @Override
+    public void setDuration(int id, Duration duration) {
+        MappedByteBuffer segment = segment(id);
+        segment.putLong(offset(id) + DURATION_SECOND, duration.getSeconds());
+        segment.putInt(offset(id) + DURATION_NANO, duration.getNano());
+    }
+
+    @Override
+    public LocalDateTime end(int epicId) {
+        MappedByteBuffer segment = segment(epicId);
+        return LocalDateTime.ofEpochSecond(segment.getLong(offset(epicId) + END_SECOND),
+                segment.getInt(offset(epicId) + END_NANO), ZoneOffset.UTC);
+    }
+
+    @Override
+    public void setEnd(int epicId, LocalDateTime end) {
+        MappedByteBuffer segment = segment(epicId);
+        segment.putLong(offset(epicId) + END_SECOND, end.toEpochSecond(ZoneOffset.UTC));
+        segment.putInt(offset(epicId) + END_NANO, end.getNano());
+    }
+
+    @Override
+    public String title(int id) {
+        return readString(id, TITLE, TITLE_LENGTH);
+    }
+
+    @Override
+    public void setTitle(int id, String title) {
+        writeString(id, TITLE, TITLE_LENGTH, title);
+    }
+
+    @Override
+    public String description(int id) {
+        if (blobs == null) {
+            return readString(id, DESCRIPTION, DESCRIPTION_LENGTH);
+        }
+        MappedByteBuffer segment = segment(id);
+        if (segment.getInt(offset(id) + DESCRIPTION_LENGTH) == NULL_STRING) {
+            return null;
+        }
+        return blobs.read(segment.getLong(offset(id) + DESCRIPTION));
+    }
+
+    @Override
+    public void setDescription(int id, String description) {
+        if (blobs == null) {
+            writeString(id, DESCRIPTION, DESCRIPTION_LENGTH, description);
+            return;
+        }
+        MappedByteBuffer segment = segment(id);
+        if (description == null) {
+            segment.putInt(offset(id) + DESCRIPTION_LENGTH, NULL_STRING);
+            return;
+        }
+        segment.putLong(offset(id) + DESCRIPTION, blobs.append(description));
+        segment.putInt(offset(id) + DESCRIPTION_LENGTH, description.length());
+    }
+
+    @Override
+    public void force() {
+        recordSegments.forEach(MappedByteBuffer::force);
+        heapSegments.forEach(MappedByteBuffer::force);
+        if (blobs != null) {
+            blobs.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        force();
+        try {
+            records.close();
+            heap.close();
+            if (blobs != null) {
+                blobs.close();
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу закрыть " + path + ". Ошибка: " + e.getMessage());
+        }
+    }
+
+    private String readString(int id, int referenceField, int lengthField) {
+        MappedByteBuffer segment = segment(id);
+        int length = segment.getInt(offset(id) + lengthField);
+        if (length == NULL_STRING) {
+            return null;
+        }
+        long reference = segment.getLong(offset(id) + referenceField);
+        byte[] bytes = new byte[length];
+        heapSegments.get((int) (reference / HEAP_SEGMENT_SIZE)).get((int) (reference % HEAP_SEGMENT_SIZE), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeString(int id, int referenceField, int lengthField, String value) {
+        MappedByteBuffer segment = segment(id);
+        int offset = offset(id);
+        if (value == null) {
+            segment.putInt(offset + lengthField, NULL_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > HEAP_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Строка длиннее " + HEAP_SEGMENT_SIZE + " байт не помещается в кучу.");
+        }
+        int previousLength = segment.getInt(offset + lengthField);
+        long reference;
+        if (previousLength != NULL_STRING && bytes.length <= previousLength) {
+            reference = segment.getLong(offset + referenceField);
+        } else {
+            reference = allocateString(bytes.length);
+        }
+        heapSegments.get((int) (reference / HEAP_SEGMENT_SIZE)).put((int) (reference % HEAP_SEGMENT_SIZE), bytes);
+        segment.putLong(offset + referenceField, reference);
+        segment.putInt(offset + lengthField, bytes.length);
+    }
+
+    // Место под строку в конце кучи; строка не пересекает границу сегмента
+    private long allocateString(int length) {
+        long reference = header().getLong(HEADER_HEAP_END);
+        if (reference % HEAP_SEGMENT_SIZE + length > HEAP_SEGMENT_SIZE) {
+            reference = (reference / HEAP_SEGMENT_SIZE + 1) * HEAP_SEGMENT_SIZE;
+        }
+        while ((long) heapSegments.size() * HEAP_SEGMENT_SIZE < reference + length) {
+            mapHeapSegment();
+        }
+        header().putLong(HEADER_HEAP_END, reference + length);
+        return reference;
+    }
+
+    private MappedByteBuffer header() {
+        return recordSegments.getFirst();
+    }
+
+    private MappedByteBuffer segment(int id) {
+        return recordSegments.get(id / RECORDS_PER_SEGMENT);
+    }
+
+    private static int offset(int id) {
+        return (id % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+    }
+
+    private void mapRecordSegment() {
+        try {
+            recordSegments.add(records.map(FileChannel.MapMode.READ_WRITE,
+                    recordSegments.size() * RECORD_SEGMENT_SIZE, RECORD_SEGMENT_SIZE));
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу расширить " + path + ". Ошибка: " + e.getMessage());
+        }
+    }
+
+    private void mapHeapSegment() {
+        try {
+            heapSegments.add(heap.map(FileChannel.MapMode.READ_WRITE,
+                    (long) heapSegments.size() * HEAP_SEGMENT_SIZE, HEAP_SEGMENT_SIZE));
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу расширить кучу строк " + path + ". Ошибка: " + e.getMessage());
+        }
+    }
+}
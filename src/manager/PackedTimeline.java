@@ -0,0 +1,170 @@
+package manager;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+// Шкала MappedTaskManager в куче без объектов Task: параллельные упорядоченные массивы
+// старта и id, 16 байт на запланированную задачу.
+class PackedTimeline implements StartTimeIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] seconds;
+    private int[] nanos;
+    private int[] ids;
+    private int size;
+    // Записи с этого индекса добавлены через stage и ещё не упорядочены
+    private int staged;
+
+    PackedTimeline() {
+        seconds = new long[INITIAL_CAPACITY];
+        nanos = new int[INITIAL_CAPACITY];
+        ids = new int[INITIAL_CAPACITY];
+        staged = -1;
+    }
+
+    @Override
+    public void insert(long second, int nano, int id) {
+        int index = lowerBound(second, nano, id);
+        ensureCapacity(size + 1);
+        System.arraycopy(seconds, index, seconds, index + 1, size - index);
+        System.arraycopy(nanos, index, nanos, index + 1, size - index);
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        seconds[index] = second;
+        nanos[index] = nano;
+        ids[index] = id;
+        size++;
+        if (staged >= 0) {
+            staged++;
+        }
+    }
+
+    @Override
+    public void remove(long second, int nano, int id) {
+        int index = lowerBound(second, nano, id);
+        if (index < size && seconds[index] == second && nanos[index] == nano && ids[index] == id) {
+            System.arraycopy(seconds, index + 1, seconds, index, size - index - 1);
+            System.arraycopy(nanos, index + 1, nanos, index, size - index - 1);
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            if (staged >= 0) {
+                staged--;
+            }
+        }
+    }
+
+    // Записи дописываются в конец, а commitStaged упорядочивает их и сливает с остальными:
+    // пакет из k записей стоит O(k log k + n), а не k сдвигов массива
+    @Override
+    public void stage(long second, int nano, int id) {
+        if (staged < 0) {
+            staged = size;
+        }
+        ensureCapacity(size + 1);
+        seconds[size] = second;
+        nanos[size] = nano;
+        ids[size] = id;
+        size++;
+    }
+
+    @Override
+    public void commitStaged() {
+        int from = staged;
+        staged = -1;
+        if (from < 0 || from >= size) {
+            return;
+        }
+        long[] spareSeconds = new long[size];
+        int[] spareNanos = new int[size];
+        int[] spareIds = new int[size];
+        for (int width = 1; width < size - from; width *= 2) {
+            for (int low = from; low < size; low += 2 * width) {
+                merge(low, Math.min(low + width, size), Math.min(low + 2 * width, size),
+                        spareSeconds, spareNanos, spareIds);
+            }
+        }
+        merge(0, from, size, spareSeconds, spareNanos, spareIds);
+    }
+
+    @Override
+    public Entry lower(long second, int nano, int id) {
+        int index = lowerBound(second, nano, id) - 1;
+        return index >= 0 ? entry(index) : null;
+    }
+
+    @Override
+    public Entry higher(long second, int nano, int id) {
+        int index = lowerBound(second, nano, id);
+        if (index < size && seconds[index] == second && nanos[index] == nano && ids[index] == id) {
+            index++;
+        }
+        return index < size ? entry(index) : null;
+    }
+
+    @Override
+    public void scanFrom(long second, int nano, int id, Predicate<Entry> visitor) {
+        for (int index = lowerBound(second, nano, id); index < size; index++) {
+            if (!visitor.test(entry(index))) {
+                return;
+            }
+        }
+    }
+
+    private Entry entry(int index) {
+        return new Entry(seconds[index], nanos[index], ids[index]);
+    }
+
+    // Индекс первой записи не меньше ключа
+    private int lowerBound(long second, int nano, int id) {
+        int low = 0;
+        int high = staged < 0 ? size : staged;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (StartTimeIndex.compare(seconds[middle], nanos[middle], ids[middle], second, nano, id) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Сливает упорядоченные отрезки [low, middle) и [middle, high)
+    private void merge(int low, int middle, int high, long[] spareSeconds, int[] spareNanos, int[] spareIds) {
+        if (low >= middle || middle >= high || compareAt(middle - 1, middle) <= 0) {
+            return;
+        }
+        int left = low;
+        int right = middle;
+        int out = low;
+        while (left < middle && right < high) {
+            int next = compareAt(left, right) <= 0 ? left++ : right++;
+            spareSeconds[out] = seconds[next];
+            spareNanos[out] = nanos[next];
+            spareIds[out++] = ids[next];
+        }
+        for (int rest = left < middle ? left : right, end = left < middle ? middle : high; rest < end; rest++) {
+            spareSeconds[out] = seconds[rest];
+            spareNanos[out] = nanos[rest];
+            spareIds[out++] = ids[rest];
+        }
+        System.arraycopy(spareSeconds, low, seconds, low, high - low);
+        System.arraycopy(spareNanos, low, nanos, low, high - low);
+        System.arraycopy(spareIds, low, ids, low, high - low);
+    }
+
+    private int compareAt(int first, int second) {
+        return StartTimeIndex.compare(seconds[first], nanos[first], ids[first],
+                seconds[second], nanos[second], ids[second]);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int grown = Math.max(capacity, ids.length + (ids.length >> 1));
+        seconds = Arrays.copyOf(seconds, grown);
+        nanos = Arrays.copyOf(nanos, grown);
+        ids = Arrays.copyOf(ids, grown);
+    }
+}
@@ -0,0 +1,229 @@
+package manager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Файл из страниц по PAGE_SIZE байт с LRU-кэшем страниц в куче. Страница 0 - заголовок:
+// сигнатура, версия, число страниц; байты с META_OFFSET отданы владельцу файла под его поля.
+// Заголовок всегда в памяти, остальные страницы читаются по требованию. Измененная страница
+// помечается markDirty и пишется на диск при вытеснении или flush.
+// Вытеснение откладывается до trim(): буфер, полученный из page(), остается действительным
+// до ближайшего trim, поэтому операция над несколькими страницами не теряет изменений.
+class PagedFile implements AutoCloseable {
+
+    static final int PAGE_SIZE = 4_096;
+    static final int META_OFFSET = 16;
+
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_PAGE_COUNT = 8;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer header;
+    private final int cachedPages;
+    private final LinkedHashMap<Integer, ByteBuffer> cache;
+    private final Map<Integer, ByteBuffer> dirty;
+    private long pageReads;
+
+    private PagedFile(Path path, FileChannel channel, int cachedPages) {
+        this.path = path;
+        this.channel = channel;
+        this.header = ByteBuffer.allocate(PAGE_SIZE);
+        this.cachedPages = cachedPages;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.dirty = new LinkedHashMap<>();
+    }
+
+    // Пустой файл из одного заголовка; прежний файл по этому пути обнуляется
+    static PagedFile create(Path path, int magic, int version, int cachedPages) {
+        PagedFile file = openChannel(path, cachedPages, StandardOpenOption.TRUNCATE_EXISTING);
+        file.header.putInt(HEADER_MAGIC, magic);
+        file.header.putInt(HEADER_VERSION, version);
+        file.header.putInt(HEADER_PAGE_COUNT, 1);
+        file.writePage(0, file.header);
+        return file;
+    }
+
+    static PagedFile open(Path path, int magic, int version, int cachedPages) {
+        if (!path.toFile().isFile()) {
+            throw new ManagerSaveException("Файл не найден.");
+        }
+        PagedFile file = openChannel(path, cachedPages);
+        try {
+            if (file.channel.size() < PAGE_SIZE) {
+                throw file.rejected("Файл " + path + " не является страничной доской.");
+            }
+            file.readPage(0, file.header);
+        } catch (IOException e) {
+            throw file.rejected("Не могу прочесть " + path + ". Ошибка: " + e.getMessage());
+        }
+        if (file.header.getInt(HEADER_MAGIC) != magic) {
+            throw file.rejected("Файл " + path + " не является страничной доской.");
+        }
+        if (file.header.getInt(HEADER_VERSION) != version) {
+            throw file.rejected("Неподдерживаемая версия страничной доски: " + file.header.getInt(HEADER_VERSION));
+        }
+        return file;
+    }
+
+    private static PagedFile openChannel(Path path, int cachedPages, StandardOpenOption... extra) {
+        if (cachedPages <= 0) {
+            throw new IllegalArgumentException("Размер кэша страниц должен быть положительным: " + cachedPages);
+        }
+        List<StandardOpenOption> options = new ArrayList<>(List.of(StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE));
+        options.addAll(List.of(extra));
+        try {
+            return new PagedFile(path, FileChannel.open(path, options.toArray(StandardOpenOption[]::new)),
+                    cachedPages);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу открыть " + path + ". Ошибка: " + e.getMessage());
+        }
+    }
+
+    // Поля владельца в заголовке; смещение считается от META_OFFSET
+    int metaInt(int offset) {
+        return header.getInt(META_OFFSET + offset);
+    }
+
+    void setMetaInt(int offset, int value) {
+        header.putInt(META_OFFSET + offset, value);
+    }
+
+    long metaLong(int offset) {
+        return header.getLong(META_OFFSET + offset);
+    }
+
+    void setMetaLong(int offset, long value) {
+        header.putLong(META_OFFSET + offset, value);
+    }
+
+    ByteBuffer page(int number) {
+        if (number <= 0 || number >= pageCount()) {
+            throw new IllegalStateException("Нарушена целостность данных: страницы " + number
+                    + " нет в " + path + ".");
+        }
+        ByteBuffer page = cache.get(number);
+        if (page == null) {
+            page = ByteBuffer.allocate(PAGE_SIZE);
+            try {
+                readPage(number, page);
+            } catch (IOException e) {
+                throw new ManagerSaveException("Не могу прочесть страницу " + number + " из " + path
+                        + ". Ошибка: " + e.getMessage());
+            }
+            pageReads++;
+        }
+        cache.put(number, page);
+        return page;
+    }
+
+    // Новая пустая страница в конце файла, сразу помеченная измененной
+    int allocate() {
+        int number = pageCount();
+        header.putInt(HEADER_PAGE_COUNT, number + 1);
+        ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+        cache.put(number, page);
+        dirty.put(number, page);
+        return number;
+    }
+
+    void markDirty(int number) {
+        ByteBuffer page = cache.get(number);
+        if (page == null) {
+            throw new IllegalStateException("Страница " + number + " помечена измененной вне кэша.");
+        }
+        dirty.put(number, page);
+    }
+
+    // Вытесняет давно не использованные страницы сверх размера кэша
+    void trim() {
+        Iterator<Map.Entry<Integer, ByteBuffer>> eldest = cache.entrySet().iterator();
+        while (cache.size() > cachedPages && eldest.hasNext()) {
+            Map.Entry<Integer, ByteBuffer> entry = eldest.next();
+            ByteBuffer page = dirty.remove(entry.getKey());
+            if (page != null) {
+                writePage(entry.getKey(), page);
+            }
+            eldest.remove();
+        }
+    }
+
+    // Пишет измененные страницы и заголовок и сбрасывает файл на диск
+    void flush() {
+        for (Map.Entry<Integer, ByteBuffer> entry : dirty.entrySet()) {
+            writePage(entry.getKey(), entry.getValue());
+        }
+        dirty.clear();
+        writePage(0, header);
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу сбросить " + path + " на диск. Ошибка: " + e.getMessage());
+        }
+    }
+
+    int pageCount() {
+        return header.getInt(HEADER_PAGE_COUNT);
+    }
+
+    int cachedPageCount() {
+        return cache.size();
+    }
+
+    long getPageReads() {
+        return pageReads;
+    }
+
+    @Override
+    public void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу закрыть " + path + ". Ошибка: " + e.getMessage());
+        }
+    }
+
+    private void readPage(int number, ByteBuffer page) throws IOException {
+        page.clear();
+        long position = (long) number * PAGE_SIZE;
+        while (page.hasRemaining()) {
+            if (channel.read(page, position + page.position()) < 0) {
+                throw new IOException("страница " + number + " обрезана");
+            }
+        }
+    }
+
+    private void writePage(int number, ByteBuffer page) {
+        ByteBuffer source = page.duplicate().clear();
+        long position = (long) number * PAGE_SIZE;
+        try {
+            while (source.hasRemaining()) {
+                channel.write(source, position + source.position());
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу записать страницу " + number + " в " + path
+                    + ". Ошибка: " + e.getMessage());
+        }
+    }
+
+    // Закрывает файл, который не удалось открыть как доску
+    private ManagerSaveException rejected(String message) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Файл уже непригоден, исходная ошибка важнее
+        }
+        return new ManagerSaveException(message);
+    }
+}
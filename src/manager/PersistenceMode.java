@@ -0,0 +1,9 @@
+package manager;
+
+// Как FileBackedTaskManager сохраняет изменения на диск
+public enum PersistenceMode {
+    SNAPSHOT, // каждое изменение переписывает файл целиком
+    WAL, // изменение дописывается записью в журнал, файл целиком пишется раз в snapshotEvery записей
+    ASYNC, // изменение только помечает состояние; фоновый поток пишет файл по интервалу или порогу
+    SHARDED // задачи лежат в файлах-шардах по диапазонам id; изменение переписывает только свои шарды
+}
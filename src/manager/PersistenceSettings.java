@@ -0,0 +1,163 @@
+package manager;
+
+import java.time.Duration;
+
+// Настройки сохранения FileBackedTaskManager. Неизменяемые: with-методы возвращают копию.
+public final class PersistenceSettings {
+
+    private static final int DEFAULT_SNAPSHOT_EVERY = 10_000;
+    private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+    private static final int DEFAULT_FLUSH_THRESHOLD = 1_000;
+    private static final int DEFAULT_SHARD_SIZE = 1_024;
+
+    private final PersistenceMode mode;
+    private final int snapshotEvery;
+    private final Durability durability;
+    private final Duration groupCommitWindow;
+    private final SnapshotFormat snapshotFormat;
+    private final int loadParallelism;
+    private final Duration flushInterval;
+    private final int flushThreshold;
+    private final int shardSize;
+
+    private PersistenceSettings(PersistenceMode mode, int snapshotEvery, Durability durability,
+                                Duration groupCommitWindow, SnapshotFormat snapshotFormat, int loadParallelism,
+                                Duration flushInterval, int flushThreshold, int shardSize) {
+        this.mode = mode;
+        this.snapshotEvery = snapshotEvery;
+        this.durability = durability;
+        this.groupCommitWindow = groupCommitWindow;
+        this.snapshotFormat = snapshotFormat;
+        this.loadParallelism = loadParallelism;
+        this.flushInterval = flushInterval;
+        this.flushThreshold = flushThreshold;
+        this.shardSize = shardSize;
+    }
+
+    public static PersistenceSettings defaults() {
+        return new PersistenceSettings(PersistenceMode.SNAPSHOT, DEFAULT_SNAPSHOT_EVERY,
+                Durability.OS_BUFFERED, Duration.ZERO, SnapshotFormat.CSV,
+                Runtime.getRuntime().availableProcessors(), DEFAULT_FLUSH_INTERVAL, DEFAULT_FLUSH_THRESHOLD,
+                DEFAULT_SHARD_SIZE);
+    }
+
+    public PersistenceSettings withMode(PersistenceMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Режим сохранения не должен быть null.");
+        }
+        return new PersistenceSettings(mode, snapshotEvery, durability, groupCommitWindow, snapshotFormat,
+                loadParallelism, flushInterval, flushThreshold, shardSize);
+    }
+
+    // Через сколько записей журнала файл переписывается целиком, а журнал обнуляется
+    public PersistenceSettings withSnapshotEvery(int snapshotEvery) {
+        if (snapshotEvery <= 0) {
+            throw new IllegalArgumentException("Период снимка должен быть положительным: " + snapshotEvery);
+        }
+        return new PersistenceSettings(mode, snapshotEvery, durability, groupCommitWindow, snapshotFormat,
+                loadParallelism, flushInterval, flushThreshold, shardSize);
+    }
+
+    public PersistenceSettings withDurability(Durability durability) {
+        if (durability == null) {
+            throw new IllegalArgumentException("Уровень надежности не должен быть null.");
+        }
+        return new PersistenceSettings(mode, snapshotEvery, durability, groupCommitWindow, snapshotFormat,
+                loadParallelism, flushInterval, flushThreshold, shardSize);
+    }
+
+    // Сколько писатель журнала ждет после первого изменения, собирая группу. При нулевом окне
+    // в группу попадает всё, что накопилось, пока шла предыдущая запись.
+    public PersistenceSettings withGroupCommitWindow(Duration groupCommitWindow) {
+        if (groupCommitWindow == null || groupCommitWindow.isNegative()) {
+            throw new IllegalArgumentException("Окно группового коммита должно быть неотрицательным: "
+                    + groupCommitWindow);
+        }
+        return new PersistenceSettings(mode, snapshotEvery, durability, groupCommitWindow, snapshotFormat,
+                loadParallelism, flushInterval, flushThreshold, shardSize);
+    }
+
+    // Формат, в котором пишутся снимки; читаются оба формата
+    public PersistenceSettings withSnapshotFormat(SnapshotFormat snapshotFormat) {
+        if (snapshotFormat == null) {
+            throw new IllegalArgumentException("Формат снимка не должен быть null.");
+        }
+        return new PersistenceSettings(mode, snapshotEvery, durability, groupCommitWindow, snapshotFormat,
+                loadParallelism, flushInterval, flushThreshold, shardSize);
+    }
+
+    // Сколько потоков разбирают CSV-снимок при загрузке; 1 - последовательное чтение
+    public PersistenceSettings withLoadParallelism(int loadParallelism) {
+        if (loadParallelism <= 0) {
+            throw new IllegalArgumentException("Число потоков загрузки должно быть положительным: "
+                    + loadParallelism);
+        }
+        return new PersistenceSettings(mode, snapshotEvery, durability, groupCommitWindow, snapshotFormat,
+                loadParallelism, flushInterval, flushThreshold, shardSize);
+    }
+
+    // Режим ASYNC: сколько после первого незаписанного изменения писатель ждет новых,
+    // прежде чем записать файл
+    public PersistenceSettings withFlushInterval(Duration flushInterval) {
+        if (flushInterval == null || flushInterval.isNegative()) {
+            throw new IllegalArgumentException("Интервал записи должен быть неотрицательным: " + flushInterval);
+        }
+        return new PersistenceSettings(mode, snapshotEvery, durability, groupCommitWindow, snapshotFormat,
+                loadParallelism, flushInterval, flushThreshold, shardSize);
+    }
+
+    // Режим ASYNC: после скольких незаписанных изменений файл пишется, не дожидаясь интервала
+    public PersistenceSettings withFlushThreshold(int flushThreshold) {
+        if (flushThreshold <= 0) {
+            throw new IllegalArgumentException("Порог записи должен быть положительным: " + flushThreshold);
+        }
+        return new PersistenceSettings(mode, snapshotEvery, durability, groupCommitWindow, snapshotFormat,
+                loadParallelism, flushInterval, flushThreshold, shardSize);
+    }
+
+    // Режим SHARDED: сколько подряд идущих id хранит один файл-шард. Действует при создании
+    // доски; загруженная доска берет размер из своего манифеста.
+    public PersistenceSettings withShardSize(int shardSize) {
+        if (shardSize <= 0) {
+            throw new IllegalArgumentException("Размер шарда должен быть положительным: " + shardSize);
+        }
+        return new PersistenceSettings(mode, snapshotEvery, durability, groupCommitWindow, snapshotFormat,
+                loadParallelism, flushInterval, flushThreshold, shardSize);
+    }
+
+    public PersistenceMode getMode() {
+        return mode;
+    }
+
+    public int getSnapshotEvery() {
+        return snapshotEvery;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public Duration getGroupCommitWindow() {
+        return groupCommitWindow;
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    public int getLoadParallelism() {
+        return loadParallelism;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public int getFlushThreshold() {
+        return flushThreshold;
+    }
+
+    public int getShardSize() {
+        return shardSize;
+    }
+}
@@ -0,0 +1,88 @@
+package manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import tasks.Task;
+import util.SortedListView;
+
+// Приоритетный список задач: задачи со временем старта упорядочены по старту, а при равном
+// старте - по id, поэтому записи с одинаковым временем не схлопываются. Задачи без времени
+// старта лежат в отдельной корзине в порядке добавления и в выдаче идут первыми.
+public class PrioritizedTaskIndex {
+
+    // Задачи без времени (старт LocalDateTime.MIN) в этом порядке идут первыми, по id
+    static final Comparator<Task> byStartThenId =
+            Comparator.comparing(Task::getStartTime).thenComparing(Task::getId);
+
+    private final NavigableSet<Task> scheduled;
+    private final Map<Integer, Task> unscheduled;
+
+    public PrioritizedTaskIndex() {
+        scheduled = new TreeSet<>(byStartThenId);
+        unscheduled = new LinkedHashMap<>();
+    }
+
+    public void add(Task task) {
+        if (TimeIntervalIndex.isScheduled(task)) {
+            scheduled.add(task);
+        } else {
+            unscheduled.put(task.getId(), task);
+        }
+    }
+
+    // Заполняет пустой индекс задачами, уже отсортированными по byStartThenId: дерево
+    // строится из списка линейно, без вставок по одной
+    public void addAllSorted(List<? extends Task> sorted) {
+        if (size() != 0) {
+            throw new IllegalStateException("Пакетное заполнение возможно только для пустого индекса.");
+        }
+        List<Task> timed = new ArrayList<>(sorted.size());
+        for (Task task : sorted) {
+            if (TimeIntervalIndex.isScheduled(task)) {
+                timed.add(task);
+            } else {
+                unscheduled.put(task.getId(), task);
+            }
+        }
+        scheduled.addAll(SortedListView.asSortedSet(timed, byStartThenId));
+    }
+
+    // task - версия задачи, с которой она была добавлена в индекс
+    public void remove(Task task) {
+        if (task == null) {
+            return;
+        }
+        if (TimeIntervalIndex.isScheduled(task)) {
+            scheduled.remove(task);
+        } else {
+            unscheduled.remove(task.getId());
+        }
+    }
+
+    public Collection<Task> getUnscheduled() {
+        return Collections.unmodifiableCollection(unscheduled.values());
+    }
+
+    public int size() {
+        return scheduled.size() + unscheduled.size();
+    }
+
+    public void clear() {
+        scheduled.clear();
+        unscheduled.clear();
+    }
+
+    public List<Task> toList() {
+        List<Task> prioritized = new ArrayList<>(size());
+        prioritized.addAll(unscheduled.values());
+        prioritized.addAll(scheduled);
+        return prioritized;
+    }
+}
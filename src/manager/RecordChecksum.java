@@ -0,0 +1,89 @@
+package manager;
+
+import java.util.zip.CRC32C;
+
+// Контрольная сумма строки снимка или журнала: "<crc32c, 8 hex>,<запись>".
+// Снимок с суммами отличается заголовком, а запись журнала старого формата начинается
+// с "P,"/"D," и не похожа на запечатанную: у той первые восемь символов шестнадцатеричные,
+// а девятый - запятая.
+public final class RecordChecksum {
+
+    private static final int CRC_LENGTH = 8;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private RecordChecksum() {
+    }
+
+    public static String seal(String record) {
+        return appendSealed(new StringBuilder(CRC_LENGTH + 1 + record.length()), record).toString();
+    }
+
+    // То же, что seal, но дописывает строку в out без промежуточных строк
+    public static StringBuilder appendSealed(StringBuilder out, CharSequence record) {
+        int crc = crc(record, 0);
+        out.append(HEX[crc >>> 28]);
+        for (int shift = 24; shift >= 0; shift -= 4) {
+            out.append(HEX[(crc >>> shift) & 0xF]);
+        }
+        return out.append(',').append(record);
+    }
+
+    public static boolean isSealed(CharSequence line) {
+        if (line.length() <= CRC_LENGTH || line.charAt(CRC_LENGTH) != ',') {
+            return false;
+        }
+        for (int i = 0; i < CRC_LENGTH; i++) {
+            if (Character.digit(line.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Запись без суммы или null, если строка не запечатана или сумма не сходится
+    public static String open(String line) {
+        return isIntact(line) ? line.substring(CRC_LENGTH + 1) : null;
+    }
+
+    // Запечатана ли строка и сходится ли сумма; сама запись не копируется
+    public static boolean isIntact(CharSequence line) {
+        return isSealed(line)
+                && crc(line, CRC_LENGTH + 1) == Integer.parseUnsignedInt(line, 0, CRC_LENGTH, 16);
+    }
+
+    // CRC32C байтов UTF-8 символов text начиная с from. Кодирование повторяет
+    // String.getBytes(UTF_8), включая замену непарного суррогата на '?', но идет кусками
+    // через небольшой буфер.
+    private static int crc(CharSequence text, int from) {
+        CRC32C crc = new CRC32C();
+        byte[] chunk = new byte[512];
+        int length = 0;
+        for (int i = from, end = text.length(); i < end; i++) {
+            if (length > chunk.length - 4) {
+                crc.update(chunk, 0, length);
+                length = 0;
+            }
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                chunk[length++] = (byte) c;
+            } else if (c < 0x800) {
+                chunk[length++] = (byte) (0xC0 | c >> 6);
+                chunk[length++] = (byte) (0x80 | c & 0x3F);
+            } else if (!Character.isSurrogate(c)) {
+                chunk[length++] = (byte) (0xE0 | c >> 12);
+                chunk[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                chunk[length++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                chunk[length++] = (byte) (0xF0 | codePoint >> 18);
+                chunk[length++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                chunk[length++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                chunk[length++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                chunk[length++] = '?';
+            }
+        }
+        crc.update(chunk, 0, length);
+        return (int) crc.getValue();
+    }
+}
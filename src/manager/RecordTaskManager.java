@@ -0,0 +1,759 @@
+package manager;
+
+import static tasks.TaskStatus.DONE;
+import static tasks.TaskStatus.IN_PROGRESS;
+import static tasks.TaskStatus.NEW;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+import tasks.TaskStatus;
+import util.IntHashSet;
+
+// Менеджер поверх хранилища записей (TaskRecordStore) и шкалы времени (StartTimeIndex):
+// объекты Task создаются только для выдачи и не хранятся, поэтому память менеджера
+// определяет хранилище, а не размер доски. В куче остаются история просмотров и эпики,
+// ждущие пересчета. Подзадачи эпика связаны в списке прямо в записях, пересчет эпика -
+// проход по его подзадачам. Выборки всех задач и задач без времени обходят хранилище целиком.
+// Если описания хранятся отдельно (DescriptionStorage.COLD), выборки списков - все задачи,
+// приоритеты, окно, расстановка - отдают задачи без описания; его возвращают getXxxById.
+// В отличие от InMemoryTaskManager, id общий для всех типов: задача не может получить id эпика.
+// Публичные методы синхронизированы, как и в InMemoryTaskManager.
+public abstract class RecordTaskManager implements TaskManager, AutoCloseable {
+
+    private final TaskRecordStore store;
+    private final StartTimeIndex timeline;
+    private final HistoryManager history;
+    // Эпики, чьи показатели в режиме LAZY ещё не пересчитаны после изменения подзадач
+    private final IntHashSet dirtyEpics;
+    // Читать ли описание для выборок списков
+    private final boolean listDescriptions;
+    private EpicRefreshMode epicRefreshMode;
+
+    RecordTaskManager(TaskRecordStore store, StartTimeIndex timeline) {
+        this.store = store;
+        this.timeline = timeline;
+        this.listDescriptions = store.descriptionStorage() == DescriptionStorage.INLINE;
+        this.history = Manager.getDefaultHistory();
+        this.dirtyEpics = new IntHashSet();
+        this.epicRefreshMode = EpicRefreshMode.EAGER;
+    }
+
+    @Override
+    public synchronized void setEpicRefreshMode(EpicRefreshMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Режим пересчета эпиков не должен быть null.");
+        }
+        epicRefreshMode = mode;
+        if (mode == EpicRefreshMode.EAGER) {
+            refreshDirtyEpics();
+        }
+    }
+
+    @Override
+    public synchronized List<Task> getAllTask() {
+        List<Task> allTasks = new ArrayList<>();
+        forEachRecordOf(TaskRecordStore.TASK, id -> allTasks.add(readListed(id)));
+        return allTasks;
+    }
+
+    @Override
+    public synchronized List<Subtask> getAllSubtask() {
+        List<Subtask> allSubtasks = new ArrayList<>();
+        forEachRecordOf(TaskRecordStore.SUBTASK, id -> allSubtasks.add((Subtask) readListed(id)));
+        return allSubtasks;
+    }
+
+    @Override
+    public synchronized List<Epic> getAllEpic() {
+        refreshDirtyEpics();
+        List<Epic> allEpics = new ArrayList<>();
+        forEachRecordOf(TaskRecordStore.EPIC, id -> allEpics.add((Epic) readListed(id)));
+        return allEpics;
+    }
+
+    // Записи читаются по одной и целиком, с описаниями и в режиме DescriptionStorage.COLD.
+    // Блокировка берется на каждую запись, а не на весь обход, поэтому медленный получатель
+    // не останавливает изменения; удаленная за это время запись пропускается.
+    @Override
+    public void exportAll(Consumer<? super Task> sink) {
+        for (byte type : new byte[]{TaskRecordStore.EPIC, TaskRecordStore.TASK, TaskRecordStore.SUBTASK}) {
+            for (int id : idsOf(type)) {
+                Task record = readIfPresent(id, type);
+                if (record != null) {
+                    sink.accept(record);
+                }
+            }
+        }
+    }
+
+    private synchronized int[] idsOf(byte type) {
+        IntHashSet ids = new IntHashSet();
+        forEachRecordOf(type, ids::add);
+        return ids.toSortedArray();
+    }
+
+    private synchronized Task readIfPresent(int id, byte type) {
+        if (type == TaskRecordStore.EPIC && dirtyEpics.contains(id)) {
+            recomputeEpic(id);
+        }
+        return store.type(id) == type ? read(id) : null;
+    }
+
+    @Override
+    public synchronized void deleteAllTask() {
+        forEachRecordOf(TaskRecordStore.TASK, id -> {
+            unindex(id);
+            history.remove(id);
+            store.free(id);
+        });
+    }
+
+    @Override
+    public synchronized void deleteAllSubtask() {
+        forEachRecordOf(TaskRecordStore.SUBTASK, this::deleteSubtaskById);
+    }
+
+    @Override
+    public synchronized void deleteAllEpic() {
+        forEachRecordOf(TaskRecordStore.EPIC, this::deleteEpicById);
+    }
+
+    @Override
+    public synchronized Task getTaskById(Integer id) {
+        if (id == null) {
+            throw new IllegalArgumentException("ID задачи не должно быть null.");
+        }
+        if (store.type(id) != TaskRecordStore.TASK) {
+            throw new NoSuchElementException("Task с id: " + id + " не найден в менеджере.");
+        }
+        Task task = read(id);
+        history.add(task);
+        return task;
+    }
+
+    @Override
+    public synchronized Subtask getSubtaskById(Integer id) {
+        if (id == null) {
+            throw new IllegalArgumentException("ID подзадачи не должно быть null.");
+        }
+        if (store.type(id) != TaskRecordStore.SUBTASK) {
+            throw new NoSuchElementException("Subtask с id: " + id + " не найден в менеджере.");
+        }
+        Subtask subtask = (Subtask) read(id);
+        history.add(subtask);
+        return subtask;
+    }
+
+    @Override
+    public synchronized Epic getEpicById(Integer id) {
+        if (id == null) {
+            throw new IllegalArgumentException("ID эпика не должно быть null.");
+        }
+        if (store.type(id) != TaskRecordStore.EPIC) {
+            throw new NoSuchElementException("Epic с id: " + id + " не найден в менеджере.");
+        }
+        if (dirtyEpics.contains(id)) {
+            recomputeEpic(id);
+        }
+        Epic epic = (Epic) read(id);
+        history.add(epic);
+        return epic;
+    }
+
+    @Override
+    public synchronized void addTask(Task task) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task не должна быть null.");
+        }
+        if (task.getId() == 0) {
+            task.setId(generateNewId());
+        }
+        if (task.getStatus() == null) {
+            task.setStatus(NEW);
+        }
+        if (findOverlap(task) != null) {
+            throw new TimeOverlapException("Задача с id: "
+                    + task.getId() + " пересекается по времени выполнения с другими задачами.");
+        }
+        storeTask(task, true);
+    }
+
+    @Override
+    public synchronized void addEpic(Epic epic) {
+        if (epic == null) {
+            throw new IllegalArgumentException("Epic не должен быть null.");
+        }
+        storeEpic(epic);
+    }
+
+    @Override
+    public synchronized void addSubtask(Subtask subtask) {
+        if (subtask == null) {
+            throw new IllegalArgumentException("Subtask не должен быть null.");
+        }
+        if (subtask.getEpicTask() == null || store.type(subtask.getEpicTask()) != TaskRecordStore.EPIC) {
+            throw new IllegalArgumentException("Указанный в Subtask Epic не найден в менеджере.");
+        }
+        if (findOverlap(subtask) != null) {
+            throw new TimeOverlapException("Подзадача с id: "
+                    + subtask.getId() + " пересекается по времени выполнения с другими задачами.");
+        }
+        Set<Integer> touchedEpics = new HashSet<>();
+        storeSubtask(subtask, true, touchedEpics);
+        touchedEpics.forEach(this::epicChanged);
+    }
+
+    @Override
+    public synchronized void addAll(Collection<? extends Task> items) {
+        List<TimeConflict> conflicts = validateBatch(items);
+        if (!conflicts.isEmpty()) {
+            throw new TimeOverlapException("Пакет содержит " + conflicts.size()
+                    + " пересечений по времени выполнения: "
+                    + conflicts.stream().map(TimeConflict::toString).collect(Collectors.joining("; ")) + ".");
+        }
+        insertAll(items);
+    }
+
+    // Проверяет пакет целиком: ссылки подзадач на эпики и все пересечения по времени,
+    // как InMemoryTaskManager.validateBatch
+    public synchronized List<TimeConflict> validateBatch(Collection<? extends Task> items) {
+        if (items == null) {
+            throw new IllegalArgumentException("Пакет задач не должен быть null.");
+        }
+        Set<Integer> batchEpics = new HashSet<>();
+        List<Task> timed = new ArrayList<>(items.size());
+        for (Task item : items) {
+            if (item == null) {
+                throw new IllegalArgumentException("Пакет не должен содержать null.");
+            }
+            if (item instanceof Epic epic) {
+                batchEpics.add(epic.getId());
+            } else {
+                timed.add(item);
+            }
+        }
+        for (Task item : timed) {
+            if (item instanceof Subtask subtask && (subtask.getEpicTask() == null
+                    || store.type(subtask.getEpicTask()) != TaskRecordStore.EPIC
+                    && !batchEpics.contains(subtask.getEpicTask()))) {
+                throw new IllegalArgumentException("Указанный в Subtask с id: " + subtask.getId()
+                        + " Epic с id: " + subtask.getEpicTask() + " не найден ни в менеджере, ни в пакете.");
+            }
+        }
+
+        return TimelineSweep.findConflicts(timed, this::findOverlap);
+    }
+
+    // Вставка пакета, прошедшего validateBatch. Новые записи попадают на шкалу одним
+    // слиянием, показатели каждого затронутого эпика пересчитываются один раз.
+    private void insertAll(Collection<? extends Task> items) {
+        for (Task item : items) {
+            if (item instanceof Epic epic) {
+                storeEpic(epic);
+            }
+        }
+        Set<Integer> touchedEpics = new HashSet<>();
+        for (Task item : items) {
+            if (item instanceof Subtask subtask) {
+                storeSubtask(subtask, false, touchedEpics);
+            } else if (!(item instanceof Epic)) {
+                if (item.getId() == 0) {
+                    item.setId(generateNewId());
+                }
+                if (item.getStatus() == null) {
+                    item.setStatus(NEW);
+                }
+                storeTask(item, false);
+            }
+        }
+        timeline.commitStaged();
+        touchedEpics.forEach(this::epicChanged);
+    }
+
+    @Override
+    public synchronized void updateTask(Task task) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task не должен быть null.");
+        }
+        if (task.getId() == null || store.type(task.getId()) != TaskRecordStore.TASK) {
+            throw new NoSuchElementException("Обновляемый Task с id: "
+                    + task.getId() + " не найден в менеджере.");
+        }
+        if (findOverlap(task) != null) {
+            throw new TimeOverlapException("Обновляемая задача с id: "
+                    + task.getId() + " пересекается по времени выполнения с другими задачами.");
+        }
+        storeTask(task, true);
+    }
+
+    @Override
+    public synchronized void updateEpic(Epic epic) {
+        if (epic == null) {
+            throw new IllegalArgumentException("Epic не должен быть null.");
+        }
+        if (epic.getId() == null || store.type(epic.getId()) != TaskRecordStore.EPIC) {
+            throw new NoSuchElementException("Обновляемый Epic с id: "
+                    + epic.getId() + " не найден в менеджере.");
+        }
+        // Статус, время и состав эпика вычисляются по подзадачам, обновляются только его поля
+        store.setTitle(epic.getId(), epic.getTitle());
+        store.setDescription(epic.getId(), epic.getDescription());
+    }
+
+    @Override
+    public synchronized void updateSubtask(Subtask subtask) {
+        if (subtask == null) {
+            throw new IllegalArgumentException("Subtask не должен быть null.");
+        }
+        if (subtask.getId() == null || store.type(subtask.getId()) != TaskRecordStore.SUBTASK) {
+            throw new NoSuchElementException("Обновляемый Subtask с id: "
+                    + subtask.getId() + " не найден в менеджере.");
+        }
+        if (findOverlap(subtask) != null) {
+            throw new TimeOverlapException("Обновляемый подзадача с id: "
+                    + subtask.getId() + " пересекается по времени выполнения с другими задачами.");
+        }
+        if (subtask.getEpicTask() == null || store.type(subtask.getEpicTask()) != TaskRecordStore.EPIC) {
+            throw new IllegalStateException("Нарушена целостность данных: "
+                    + "Subtask с id: " + subtask.getId()
+                    + " содержит ссылку на epic: " + subtask.getEpicTask()
+                    + ", но данный данный epic не найден в менеджере.");
+        }
+        if (store.epicId(subtask.getId()) != subtask.getEpicTask()) {
+            throw new IllegalStateException("Нарушена целостность данных: "
+                    + "Subtask c id: " + subtask.getId()
+                    + " не зарегистрирована в epic с id:" + subtask.getEpicTask()
+                    + ", как его подзадача.");
+        }
+        int id = subtask.getId();
+        unindex(id);
+        writeFields(id, subtask);
+        index(id);
+        epicChanged(subtask.getEpicTask());
+    }
+
+    @Override
+    public synchronized void deleteTaskById(Integer id) {
+        if (id == null) {
+            throw new IllegalArgumentException("ID удаляемой задачи не должно быть null.");
+        }
+        if (store.type(id) != TaskRecordStore.TASK) {
+            throw new NoSuchElementException("Task с id: " + id + " не найдена.");
+        }
+        unindex(id);
+        history.remove(id);
+        store.free(id);
+    }
+
+    @Override
+    public synchronized void deleteSubtaskById(Integer id) {
+        if (id == null) {
+            throw new IllegalArgumentException("ID удаляемой подзадачи не должно быть null.");
+        }
+        if (store.type(id) != TaskRecordStore.SUBTASK) {
+            throw new NoSuchElementException("Subtask с id: " + id + " не найдена.");
+        }
+        int epicId = store.epicId(id);
+        unindex(id);
+        unlinkSubtask(epicId, id);
+        history.remove(id);
+        store.free(id);
+        epicChanged(epicId);
+    }
+
+    @Override
+    public synchronized void deleteEpicById(Integer id) {
+        if (id == null) {
+            throw new IllegalArgumentException("ID удаляемого эпика не должно быть null.");
+        }
+        if (store.type(id) != TaskRecordStore.EPIC) {
+            throw new NoSuchElementException("Epic с id: " + id + " не найден.");
+        }
+        for (int subtaskId = store.firstSubtask(id); subtaskId != 0; ) {
+            int next = store.next(subtaskId);
+            unindex(subtaskId);
+            history.remove(subtaskId);
+            store.free(subtaskId);
+            subtaskId = next;
+        }
+        store.free(id);
+        dirtyEpics.remove(id);
+        history.remove(id);
+    }
+
+    @Override
+    public synchronized ArrayList<Task> getHistory() {
+        refreshDirtyEpics();
+        return history.getHistory();
+    }
+
+    // Задачи без времени в порядке id, затем запланированные по времени старта
+    @Override
+    public synchronized List<Task> getPrioritizedTasks() {
+        List<Task> prioritized = new ArrayList<>();
+        store.forEachId(id -> {
+            byte type = store.type(id);
+            if ((type == TaskRecordStore.TASK || type == TaskRecordStore.SUBTASK) && !store.isScheduled(id)) {
+                prioritized.add(readListed(id));
+            }
+        });
+        timeline.scanFrom(Long.MIN_VALUE, 0, 0, entry -> prioritized.add(readListed(entry.id())));
+        return prioritized;
+    }
+
+    @Override
+    public synchronized List<Task> getTasksInWindow(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Границы временного окна не должны быть null.");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало временного окна " + from
+                    + " позже его конца " + to + ".");
+        }
+        List<Task> window = new ArrayList<>();
+        StartTimeIndex.Entry spanning = timeline.lower(second(from), from.getNano(), 0);
+        if (spanning != null && endOf(spanning).isAfter(from)) {
+            window.add(readListed(spanning.id()));
+        }
+        timeline.scanFrom(second(from), from.getNano(), 0, entry -> {
+            if (!startOf(entry).isBefore(to)) {
+                return false;
+            }
+            window.add(readListed(entry.id()));
+            return true;
+        });
+        return window;
+    }
+
+    @Override
+    public synchronized LocalDateTime findNextFreeSlot(Duration duration, LocalDateTime notBefore) {
+        if (duration == null || notBefore == null) {
+            throw new IllegalArgumentException("Длительность и начало поиска свободного времени не должны быть null.");
+        }
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("Длительность не может быть отрицательной: " + duration);
+        }
+        return packSlots(notBefore, List.of(duration)).getFirst();
+    }
+
+    @Override
+    public synchronized List<Task> scheduleUnscheduled(SchedulePolicy policy, LocalDateTime notBefore) {
+        if (policy == null || notBefore == null) {
+            throw new IllegalArgumentException("Политика и начало планирования не должны быть null.");
+        }
+        List<Task> unscheduled = new ArrayList<>();
+        store.forEachId(id -> {
+            byte type = store.type(id);
+            if ((type == TaskRecordStore.TASK || type == TaskRecordStore.SUBTASK) && !store.isScheduled(id)) {
+                unscheduled.add(readListed(id));
+            }
+        });
+        unscheduled.sort(policy.getOrder());
+
+        List<LocalDateTime> starts = packSlots(notBefore, unscheduled.stream().map(Task::getDuration).toList());
+        Set<Integer> touchedEpics = new HashSet<>();
+        for (int i = 0; i < unscheduled.size(); i++) {
+            Task placed = unscheduled.get(i);
+            placed.setStartTime(starts.get(i));
+            store.setStart(placed.getId(), placed.getStartTime());
+            timeline.stage(store.startSecond(placed.getId()), store.startNano(placed.getId()), placed.getId());
+            if (placed instanceof Subtask subtask) {
+                touchedEpics.add(subtask.getEpicTask());
+            }
+        }
+        timeline.commitStaged();
+        touchedEpics.forEach(this::epicChanged);
+        return unscheduled;
+    }
+
+    // Сбрасывает на диск все изменения, сделанные до вызова
+    public synchronized void force() {
+        store.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        store.close();
+    }
+
+    private void storeTask(Task task, boolean indexNow) {
+        int id = task.getId();
+        claim(id, TaskRecordStore.TASK);
+        writeFields(id, task);
+        if (indexNow) {
+            index(id);
+        } else if (store.isScheduled(id)) {
+            timeline.stage(store.startSecond(id), store.startNano(id), id);
+        }
+    }
+
+    // Состав эпика определяют сами подзадачи: повторное добавление эпика меняет только его поля
+    private void storeEpic(Epic epic) {
+        if (epic.getId() == 0) {
+            epic.setId(generateNewId());
+        }
+        int id = epic.getId();
+        boolean existing = store.type(id) == TaskRecordStore.EPIC;
+        if (!existing) {
+            claim(id, TaskRecordStore.EPIC);
+        }
+        store.setTitle(id, epic.getTitle());
+        store.setDescription(id, epic.getDescription());
+        recomputeEpic(id);
+    }
+
+    // Регистрирует подзадачу и дописывает её в список эпика; эпики, чей состав изменился,
+    // попадают в touchedEpics
+    private void storeSubtask(Subtask subtask, boolean indexNow, Set<Integer> touchedEpics) {
+        if (subtask.getId() == 0) {
+            subtask.setId(generateNewId());
+        }
+        if (subtask.getStatus() == null) {
+            subtask.setStatus(NEW);
+        }
+        int id = subtask.getId();
+        if (store.type(id) == TaskRecordStore.SUBTASK) {
+            int previousEpic = store.epicId(id);
+            unlinkSubtask(previousEpic, id);
+            touchedEpics.add(previousEpic);
+        }
+        claim(id, TaskRecordStore.SUBTASK);
+        store.setEpicId(id, subtask.getEpicTask());
+        writeFields(id, subtask);
+        linkSubtask(subtask.getEpicTask(), id);
+        touchedEpics.add(subtask.getEpicTask());
+        if (indexNow) {
+            index(id);
+        } else if (store.isScheduled(id)) {
+            timeline.stage(store.startSecond(id), store.startNano(id), id);
+        }
+    }
+
+    // Готовит запись id под тип type: прежняя версия того же типа снимается со шкалы, а её
+    // строки переписываются на месте. Явно заданный id сдвигает счетчик, чтобы новые
+    // записи на него не претендовали.
+    private void claim(int id, byte type) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("id задачи должен быть положительным: " + id);
+        }
+        byte current = store.type(id);
+        if (current != TaskRecordStore.FREE && current != type) {
+            throw new IllegalArgumentException("id " + id + " уже занят записью другого типа.");
+        }
+        if (current == type) {
+            unindex(id);
+            return;
+        }
+        store.allocate(id, type);
+        if (id >= store.nextId()) {
+            store.setNextId(id + 1);
+        }
+    }
+
+    private void writeFields(int id, Task task) {
+        store.setStatus(id, task.getStatus());
+        store.setStart(id, task.getStartTime());
+        store.setDuration(id, task.getDuration());
+        store.setTitle(id, task.getTitle());
+        store.setDescription(id, task.getDescription());
+    }
+
+    private void linkSubtask(int epicId, int subtaskId) {
+        int last = store.lastSubtask(epicId);
+        store.setPrevious(subtaskId, last);
+        store.setNext(subtaskId, 0);
+        if (last == 0) {
+            store.setFirstSubtask(epicId, subtaskId);
+        } else {
+            store.setNext(last, subtaskId);
+        }
+        store.setLastSubtask(epicId, subtaskId);
+    }
+
+    private void unlinkSubtask(int epicId, int subtaskId) {
+        int previous = store.previous(subtaskId);
+        int next = store.next(subtaskId);
+        if (previous == 0) {
+            store.setFirstSubtask(epicId, next);
+        } else {
+            store.setNext(previous, next);
+        }
+        if (next == 0) {
+            store.setLastSubtask(epicId, previous);
+        } else {
+            store.setPrevious(next, previous);
+        }
+    }
+
+    // Показатели эпика после изменения подзадач; в режиме LAZY эпик только помечается
+    private void epicChanged(int epicId) {
+        if (store.type(epicId) != TaskRecordStore.EPIC) {
+            return;
+        }
+        if (epicRefreshMode == EpicRefreshMode.LAZY) {
+            dirtyEpics.add(epicId);
+        } else {
+            recomputeEpic(epicId);
+        }
+    }
+
+    // Статус, время и длительность эпика одним проходом по его подзадачам, как в EpicAggregate
+    private void recomputeEpic(int epicId) {
+        int total = 0;
+        int done = 0;
+        int started = 0;
+        Duration duration = Duration.ZERO;
+        LocalDateTime first = null;
+        LocalDateTime last = null;
+        for (int subtaskId = store.firstSubtask(epicId); subtaskId != 0; subtaskId = store.next(subtaskId)) {
+            TaskStatus status = store.status(subtaskId);
+            total++;
+            if (status == DONE) {
+                done++;
+            } else if (status == IN_PROGRESS) {
+                started++;
+            }
+            if (store.isScheduled(subtaskId)) {
+                LocalDateTime start = store.start(subtaskId);
+                Duration length = store.duration(subtaskId);
+                LocalDateTime end = start.plus(length);
+                duration = duration.plus(length);
+                first = first == null || start.isBefore(first) ? start : first;
+                last = last == null || end.isAfter(last) ? end : last;
+            }
+        }
+        store.setStatus(epicId, total > 0 && done == total ? DONE : started > 0 || done > 0 ? IN_PROGRESS : NEW);
+        store.setDuration(epicId, duration);
+        store.setStart(epicId, first == null ? LocalDateTime.MIN : first);
+        store.setEnd(epicId, last == null ? LocalDateTime.MIN : last);
+        dirtyEpics.remove(epicId);
+    }
+
+    private void refreshDirtyEpics() {
+        if (dirtyEpics.isEmpty()) {
+            return;
+        }
+        for (int epicId : dirtyEpics.toSortedArray()) {
+            recomputeEpic(epicId);
+        }
+    }
+
+    private Task read(int id) {
+        return read(id, true);
+    }
+
+    private Task readListed(int id) {
+        return read(id, listDescriptions);
+    }
+
+    private Task read(int id, boolean withDescription) {
+        String title = store.title(id);
+        String description = withDescription ? store.description(id) : null;
+        TaskStatus status = store.status(id);
+        LocalDateTime start = store.start(id);
+        Duration duration = store.duration(id);
+        return switch (store.type(id)) {
+            case TaskRecordStore.TASK -> new Task(id, title, description, status, start, duration);
+            case TaskRecordStore.SUBTASK -> new Subtask(id, title, description, status, store.epicId(id),
+                    start, duration);
+            case TaskRecordStore.EPIC -> {
+                Epic epic = new Epic(id, title, description, status, start, duration);
+                epic.setEndTime(store.end(id));
+                for (int subtaskId = store.firstSubtask(id); subtaskId != 0; subtaskId = store.next(subtaskId)) {
+                    epic.addSubtask(subtaskId);
+                }
+                yield epic;
+            }
+            default -> throw new IllegalStateException("Запись с id: " + id + " пуста.");
+        };
+    }
+
+    private void index(int id) {
+        if (store.isScheduled(id)) {
+            timeline.insert(store.startSecond(id), store.startNano(id), id);
+        }
+    }
+
+    private void unindex(int id) {
+        if (store.isScheduled(id)) {
+            timeline.remove(store.startSecond(id), store.startNano(id), id);
+        }
+    }
+
+    // Задача шкалы, с которой пересекается task (сама task по id не учитывается), или null
+    private Task findOverlap(Task task) {
+        if (!TimeIntervalIndex.isScheduled(task)) {
+            return null;
+        }
+        LocalDateTime start = task.getStartTime();
+        LocalDateTime end = task.getEndTime();
+        int id = task.getId();
+
+        StartTimeIndex.Entry before = timeline.lower(second(start), start.getNano(), Integer.MAX_VALUE);
+        if (before != null && before.id() == id) {
+            before = timeline.lower(before.second(), before.nano(), before.id());
+        }
+        if (before != null && (startOf(before).isEqual(start) || endOf(before).isAfter(start))) {
+            return readListed(before.id());
+        }
+        StartTimeIndex.Entry after = timeline.higher(second(start), start.getNano(), Integer.MAX_VALUE);
+        if (after != null && after.id() == id) {
+            after = timeline.higher(after.second(), after.nano(), after.id());
+        }
+        if (after != null && startOf(after).isBefore(end)) {
+            return readListed(after.id());
+        }
+        return null;
+    }
+
+    // Расстановка TimelineSweep.Packer по StartTimeIndex: шкала обходится один раз
+    private List<LocalDateTime> packSlots(LocalDateTime notBefore, List<Duration> durations) {
+        TimelineSweep.Packer packer = new TimelineSweep.Packer(notBefore, durations);
+        StartTimeIndex.Entry spanning = timeline.lower(second(notBefore), notBefore.getNano(), 0);
+        if (spanning != null) {
+            packer.spanning(endOf(spanning));
+        }
+        timeline.scanFrom(second(notBefore), notBefore.getNano(), 0,
+                entry -> packer.offer(startOf(entry), endOf(entry)));
+        return packer.finish();
+    }
+
+    private static long second(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime startOf(StartTimeIndex.Entry entry) {
+        return LocalDateTime.ofEpochSecond(entry.second(), entry.nano(), ZoneOffset.UTC);
+    }
+
+    private LocalDateTime endOf(StartTimeIndex.Entry entry) {
+        return startOf(entry).plus(store.duration(entry.id()));
+    }
+
+    private void forEachRecordOf(byte type, IntConsumer action) {
+        store.forEachId(id -> {
+            if (store.type(id) == type) {
+                action.accept(id);
+            }
+        });
+    }
+
+    private int generateNewId() {
+        int id = store.nextId();
+        store.setNextId(id + 1);
+        return id;
+    }
+}
@@ -0,0 +1,27 @@
+package manager;
+
+import java.util.Comparator;
+import tasks.Subtask;
+import tasks.Task;
+
+// Порядок, в котором автопланировщик расставляет задачи без времени старта
+public enum SchedulePolicy {
+    CREATION_ORDER(Comparator.comparing(Task::getId)),
+    SHORTEST_FIRST(Comparator.comparing(Task::getDuration).thenComparing(Task::getId)),
+    EPIC_GROUPED(Comparator.comparing(SchedulePolicy::groupId).thenComparing(Task::getId));
+
+    private final Comparator<Task> order;
+
+    SchedulePolicy(Comparator<Task> order) {
+        this.order = order;
+    }
+
+    public Comparator<Task> getOrder() {
+        return order;
+    }
+
+    // Подзадачи одного эпика идут подряд, обычные задачи образуют собственные группы
+    private static Integer groupId(Task task) {
+        return task instanceof Subtask subtask ? subtask.getEpicTask() : task.getId();
+    }
+}
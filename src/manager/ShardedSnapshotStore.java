@@ -0,0 +1,129 @@
+package manager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Раскладка режима SHARDED: задачи всех типов делятся по диапазонам id на файлы-шарды
+// в каталоге <файл>.shards; шард k хранит id из [k * shardSize, (k + 1) * shardSize).
+// Сам файл доски - манифест с размером шарда: размер фиксируется при создании доски,
+// иначе одна задача могла бы оказаться сразу в двух шардах.
+// Каждый шард - обычный снимок (CSV или двоичный) и пишется атомарно. Изменение,
+// задевшее несколько шардов, переписывает их по очереди.
+class ShardedSnapshotStore {
+
+    private static final String MANIFEST_PREFIX = "shards,";
+    private static final Pattern SHARD_NAME = Pattern.compile("shard-(\\d+)");
+
+    private final Path directory;
+    private final int shardSize;
+    private long shardWrites;
+
+    private ShardedSnapshotStore(Path directory, int shardSize) {
+        this.directory = directory;
+        this.shardSize = shardSize;
+    }
+
+    static Path directoryFor(Path file) {
+        return file.resolveSibling(file.getFileName() + ".shards");
+    }
+
+    // Новая пустая доска: манифест переписывается, шарды прошлой доски удаляются
+    static ShardedSnapshotStore create(Path file, int shardSize) {
+        ShardedSnapshotStore store = new ShardedSnapshotStore(directoryFor(file), shardSize);
+        try {
+            Files.createDirectories(store.directory);
+            for (Path shard : store.shardFiles()) {
+                Files.delete(shard);
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, MANIFEST_PREFIX + shardSize + "\n", StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу создать шарды доски " + file + ". Ошибка: " + e.getMessage());
+        }
+        return store;
+    }
+
+    static ShardedSnapshotStore open(Path file) {
+        String manifest;
+        try {
+            manifest = Files.readString(file, StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу прочесть манифест " + file + ". Ошибка: " + e.getMessage());
+        }
+        if (!manifest.startsWith(MANIFEST_PREFIX)) {
+            throw new ManagerSaveException("Файл " + file + " не является манифестом шардов.");
+        }
+        try {
+            int shardSize = Integer.parseInt(manifest.substring(MANIFEST_PREFIX.length()));
+            if (shardSize <= 0) {
+                throw new NumberFormatException();
+            }
+            return new ShardedSnapshotStore(directoryFor(file), shardSize);
+        } catch (NumberFormatException e) {
+            throw new ManagerSaveException("Некорректный размер шарда в манифесте " + file + ": " + manifest);
+        }
+    }
+
+    int shardOf(int id) {
+        return id / shardSize;
+    }
+
+    int firstId(int shard) {
+        return shard * shardSize;
+    }
+
+    int getShardSize() {
+        return shardSize;
+    }
+
+    Path pathOf(int shard) {
+        return directory.resolve("shard-" + shard);
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    // Файлы шардов по возрастанию номера
+    List<Path> shardFiles() throws IOException {
+        List<Path> shards = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return shards;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (SHARD_NAME.matcher(entry.getFileName().toString()).matches()) {
+                    shards.add(entry);
+                }
+            }
+        }
+        shards.sort(Comparator.comparingInt(ShardedSnapshotStore::numberOf));
+        return shards;
+    }
+
+    static int numberOf(Path shard) {
+        Matcher matcher = SHARD_NAME.matcher(shard.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Не файл шарда: " + shard);
+        }
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    void recordWrite() {
+        shardWrites++;
+    }
+
+    long getShardWrites() {
+        return shardWrites;
+    }
+}
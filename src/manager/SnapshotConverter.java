@@ -0,0 +1,28 @@
+package manager;
+
+import java.io.File;
+
+// Перевод снимка доски между форматами CSV и BINARY.
+// Запуск: java manager.SnapshotConverter <исходный файл> <новый файл> <CSV|BINARY>
+public class SnapshotConverter {
+
+    public static void convert(File source, File target, SnapshotFormat format) {
+        if (source == null || target == null || format == null) {
+            throw new IllegalArgumentException("Файлы и формат снимка не должны быть null.");
+        }
+        if (source.getAbsoluteFile().equals(target.getAbsoluteFile())) {
+            throw new IllegalArgumentException("Снимок нельзя перевести в тот же файл: " + source);
+        }
+        // Загрузка проверяет снимок так же, как при старте менеджера
+        FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(source);
+        manager.writeSnapshot(target.toPath(), format);
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Использование: SnapshotConverter <исходный файл> <новый файл> <CSV|BINARY>");
+            System.exit(2);
+        }
+        convert(new File(args[0]), new File(args[1]), SnapshotFormat.valueOf(args[2]));
+    }
+}
@@ -0,0 +1,7 @@
+package manager;
+
+// Формат файла снимка. При загрузке формат определяется по содержимому файла.
+public enum SnapshotFormat {
+    CSV, // текстовый, строка на задачу
+    BINARY // двоичный, см. BinarySnapshotCodec
+}
@@ -0,0 +1,41 @@
+package manager;
+
+import java.util.function.Predicate;
+
+// Шкала запланированных задач RecordTaskManager: записи (старт, id), упорядоченные по старту
+// (секунды от эпохи UTC и наносекунды), а при равном старте - по id. Хранимые задачи
+// не пересекаются, поэтому, как и в TimeIntervalIndex, для проверки пересечения
+// достаточно соседей по шкале. Границы поиска задаются полным ключом: id 0 стоит раньше
+// любой задачи с тем же стартом, Integer.MAX_VALUE - позже.
+interface StartTimeIndex {
+
+    record Entry(long second, int nano, int id) {
+    }
+
+    void insert(long second, int nano, int id);
+
+    void remove(long second, int nano, int id);
+
+    // Запись для пакетной вставки; на шкале она гарантированно появится после commitStaged()
+    void stage(long second, int nano, int id);
+
+    void commitStaged();
+
+    // Наибольшая запись строго меньше ключа или null
+    Entry lower(long second, int nano, int id);
+
+    // Наименьшая запись строго больше ключа или null
+    Entry higher(long second, int nano, int id);
+
+    // Записи начиная с наименьшей не меньше ключа, по возрастанию, пока visitor возвращает true
+    void scanFrom(long second, int nano, int id, Predicate<Entry> visitor);
+
+    static int compare(long firstSecond, int firstNano, int firstId, long secondSecond, int secondNano, int secondId) {
+        int bySecond = Long.compare(firstSecond, secondSecond);
+        if (bySecond != 0) {
+            return bySecond;
+        }
+        int byNano = Integer.compare(firstNano, secondNano);
+        return byNano != 0 ? byNano : Integer.compare(firstId, secondId);
+    }
+}
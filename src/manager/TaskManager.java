@@ -3,8 +3,12 @@ package manager;
 import tasks.Epic;
 import tasks.Subtask;
 import tasks.Task;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface TaskManager {
 
@@ -32,6 +36,8 @@ public interface TaskManager {
 
      void addSubtask(Subtask subtask); // создание новой подзадачи
 
+     void addAll(Collection<? extends Task> items); // пакетное создание задач, эпиков и подзадач
+
      void updateTask(Task task);// Обновление задачи
 
      void updateEpic(Epic epic);  // обновление эпика
@@ -47,4 +53,20 @@ public interface TaskManager {
      ArrayList<Task> getHistory();
 
      List<Task> getPrioritizedTasks();
+
+     List<Task> getTasksInWindow(LocalDateTime from, LocalDateTime to); // задачи, пересекающие окно [from, to)
+
+     LocalDateTime findNextFreeSlot(Duration duration, LocalDateTime notBefore); // ближайшее свободное время
+
+     List<Task> scheduleUnscheduled(SchedulePolicy policy, LocalDateTime notBefore); // расстановка задач без времени
+
+     void setEpicRefreshMode(EpicRefreshMode mode); // немедленный или отложенный пересчет эпиков
+
+     // Все записи доски по одной, целиком и без записи в историю: сначала эпики, затем задачи
+     // и подзадачи. Менеджеры, которые могут не собирать доску в список, переопределяют обход.
+     default void exportAll(Consumer<? super Task> sink) {
+          getAllEpic().forEach(sink);
+          getAllTask().forEach(sink);
+          getAllSubtask().forEach(sink);
+     }
 }
@@ -0,0 +1,95 @@
+package manager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.function.IntConsumer;
+import tasks.TaskStatus;
+
+// Хранилище записей RecordTaskManager: у каждой задачи, эпика и подзадачи одна запись по id,
+// поля читаются и пишутся по одному, объекты Task хранилище не держит.
+// Подзадачи эпика связаны в список через поля записей: у эпика - первая и последняя
+// подзадача, у подзадачи - эпик, предыдущая и следующая. 0 - нет ссылки.
+interface TaskRecordStore extends AutoCloseable {
+
+    byte FREE = 0;
+    byte TASK = 1;
+    byte EPIC = 2;
+    byte SUBTASK = 3;
+
+    // Задается при создании хранилища
+    DescriptionStorage descriptionStorage();
+
+    int nextId();
+
+    void setNextId(int id);
+
+    // FREE, если записи с таким id нет
+    byte type(int id);
+
+    // Заводит пустую запись типа type: без названия, описания и ссылок
+    void allocate(int id, byte type);
+
+    void free(int id);
+
+    // id всех занятых записей по возрастанию
+    void forEachId(IntConsumer action);
+
+    TaskStatus status(int id);
+
+    void setStatus(int id, TaskStatus status);
+
+    int epicId(int subtaskId);
+
+    void setEpicId(int subtaskId, int epicId);
+
+    int firstSubtask(int epicId);
+
+    void setFirstSubtask(int epicId, int subtaskId);
+
+    int lastSubtask(int epicId);
+
+    void setLastSubtask(int epicId, int subtaskId);
+
+    int previous(int subtaskId);
+
+    void setPrevious(int subtaskId, int previous);
+
+    int next(int subtaskId);
+
+    void setNext(int subtaskId, int next);
+
+    long startSecond(int id);
+
+    int startNano(int id);
+
+    // Старт LocalDateTime.MIN - задача без времени
+    boolean isScheduled(int id);
+
+    LocalDateTime start(int id);
+
+    void setStart(int id, LocalDateTime start);
+
+    Duration duration(int id);
+
+    void setDuration(int id, Duration duration);
+
+    // Конец хранится только у эпика: у задачи он вычисляется из старта и длительности
+    LocalDateTime end(int epicId);
+
+    void setEnd(int epicId, LocalDateTime end);
+
+    String title(int id);
+
+    void setTitle(int id, String title);
+
+    // В режиме COLD чтение описания - отдельное обращение к файлу описаний
+    String description(int id);
+
+    void setDescription(int id, String description);
+
+    // Сбрасывает на диск всё, что записано до вызова
+    void force();
+
+    @Override
+    void close();
+}
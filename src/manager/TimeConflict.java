@@ -0,0 +1,13 @@
+package manager;
+
+import tasks.Task;
+
+// Пара задач, интервалы выполнения которых пересекаются
+public record TimeConflict(Task task, Task conflictsWith) {
+
+    @Override
+    public String toString() {
+        return task.getType() + " с id: " + task.getId() + " пересекается с "
+                + conflictsWith.getType() + " с id: " + conflictsWith.getId();
+    }
+}
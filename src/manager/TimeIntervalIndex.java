@@ -0,0 +1,137 @@
+package manager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import tasks.Task;
+import util.SortedListView;
+
+// Индекс временных интервалов задач, упорядоченный по времени старта.
+// Менеджер не допускает пересечений, поэтому у хранимых интервалов концы растут вместе
+// со стартами: максимальный конец среди задач, начавшихся не позже момента t, всегда
+// принадлежит ближайшей слева задаче. Для проверки пересечения достаточно двух соседей.
+// Задачи без времени старта (LocalDateTime.MIN) на шкале времени не размещаются.
+public class TimeIntervalIndex {
+
+    private final NavigableMap<LocalDateTime, Task> byStart;
+
+    public TimeIntervalIndex() {
+        byStart = new TreeMap<>();
+    }
+
+    public static boolean isScheduled(Task task) {
+        return task.getStartTime() != null && !LocalDateTime.MIN.equals(task.getStartTime());
+    }
+
+    public void add(Task task) {
+        if (!isScheduled(task)) {
+            return;
+        }
+        byStart.put(task.getStartTime(), task);
+    }
+
+    // Заполняет пустой индекс задачами, уже отсортированными по старту и без пересечений
+    public void addAllSorted(List<? extends Task> sorted) {
+        if (!byStart.isEmpty()) {
+            throw new IllegalStateException("Пакетное заполнение возможно только для пустого индекса.");
+        }
+        List<Task> timed = new ArrayList<>(sorted.size());
+        for (Task task : sorted) {
+            if (isScheduled(task)) {
+                timed.add(task);
+            }
+        }
+        byStart.putAll(SortedListView.asSortedMap(timed, Task::getStartTime, null));
+    }
+
+    public void remove(Task task) {
+        if (task == null || !isScheduled(task)) {
+            return;
+        }
+        Task indexed = byStart.get(task.getStartTime());
+        if (indexed != null && indexed.getId().equals(task.getId())) {
+            byStart.remove(task.getStartTime());
+        }
+    }
+
+    public void clear() {
+        byStart.clear();
+    }
+
+    public boolean isEmpty() {
+        return byStart.isEmpty();
+    }
+
+    // Возвращает задачу, с которой пересекается task (сама task по id не учитывается)
+    public Task findOverlap(Task task) {
+        if (!isScheduled(task)) {
+            return null;
+        }
+        LocalDateTime start = task.getStartTime();
+        LocalDateTime end = task.getEndTime();
+
+        Map.Entry<LocalDateTime, Task> before = byStart.floorEntry(start);
+        if (before != null && isSame(before.getValue(), task)) {
+            before = byStart.lowerEntry(before.getKey());
+        }
+        if (before != null && (before.getKey().isEqual(start) || before.getValue().getEndTime().isAfter(start))) {
+            return before.getValue();
+        }
+
+        Map.Entry<LocalDateTime, Task> after = byStart.higherEntry(start);
+        if (after != null && isSame(after.getValue(), task)) {
+            after = byStart.higherEntry(after.getKey());
+        }
+        if (after != null && after.getKey().isBefore(end)) {
+            return after.getValue();
+        }
+        return null;
+    }
+
+    // Все пересечения пакета задач - внутри пакета и с уже проиндексированными задачами
+    public List<TimeConflict> findConflicts(Collection<? extends Task> batch) {
+        return TimelineSweep.findConflicts(batch, this::findOverlap);
+    }
+
+    // Задачи, интервалы которых пересекают окно [from, to), в порядке времени старта
+    public List<Task> findInWindow(LocalDateTime from, LocalDateTime to) {
+        List<Task> window = new ArrayList<>();
+        Map.Entry<LocalDateTime, Task> spanning = byStart.lowerEntry(from);
+        if (spanning != null && spanning.getValue().getEndTime().isAfter(from)) {
+            window.add(spanning.getValue());
+        }
+        window.addAll(byStart.subMap(from, true, to, false).values());
+        return window;
+    }
+
+    // Самое раннее время старта не раньше notBefore, с которого интервал длительностью duration
+    // ни с чем не пересекается.
+    public LocalDateTime findFreeSlot(LocalDateTime notBefore, Duration duration) {
+        return packSlots(notBefore, List.of(duration)).getFirst();
+    }
+
+    // Расставляет интервалы заданных длительностей друг за другом в свободные промежутки,
+    // начиная с notBefore. Индекс обходится по возрастанию один раз для всего списка.
+    public List<LocalDateTime> packSlots(LocalDateTime notBefore, List<Duration> durations) {
+        TimelineSweep.Packer packer = new TimelineSweep.Packer(notBefore, durations);
+        Map.Entry<LocalDateTime, Task> spanning = byStart.lowerEntry(notBefore);
+        if (spanning != null) {
+            packer.spanning(spanning.getValue().getEndTime());
+        }
+        for (Task next : byStart.tailMap(notBefore, true).values()) {
+            if (!packer.offer(next.getStartTime(), next.getEndTime())) {
+                break;
+            }
+        }
+        return packer.finish();
+    }
+
+    private boolean isSame(Task indexed, Task task) {
+        return indexed.getId().equals(task.getId());
+    }
+}
@@ -0,0 +1,111 @@
+package manager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import tasks.Task;
+
+// Проходы по шкале времени, общие для TimeIntervalIndex и RecordTaskManager. Сами шкалы
+// устроены по-разному, поэтому хранимые задачи приходят через поиск соседа или по одной
+// в Packer, а алгоритм живет в одном месте.
+final class TimelineSweep {
+
+    private TimelineSweep() {
+    }
+
+    // Все пересечения пакета задач - внутри пакета и с уже хранимыми задачами (storedOverlap
+    // возвращает хранимую задачу, пересекающую данную, или null).
+    // Пакет сортируется один раз и проходится заметающей прямой: каждая задача сравнивается
+    // с предыдущей (равный старт) и с задачей пакета, дальше всех ушедшей вправо.
+    static List<TimeConflict> findConflicts(Collection<? extends Task> batch, Function<Task, Task> storedOverlap) {
+        List<Task> sorted = new ArrayList<>(batch.size());
+        for (Task task : batch) {
+            if (TimeIntervalIndex.isScheduled(task)) {
+                sorted.add(task);
+            }
+        }
+        sorted.sort(Comparator.comparing(Task::getStartTime).thenComparing(Task::getId));
+
+        List<TimeConflict> conflicts = new ArrayList<>();
+        Task previous = null;
+        Task furthest = null;
+        for (Task task : sorted) {
+            if (previous != null && previous.getStartTime().isEqual(task.getStartTime())) {
+                conflicts.add(new TimeConflict(task, previous));
+            } else if (furthest != null && furthest.getEndTime().isAfter(task.getStartTime())) {
+                conflicts.add(new TimeConflict(task, furthest));
+            }
+            Task stored = storedOverlap.apply(task);
+            if (stored != null) {
+                conflicts.add(new TimeConflict(task, stored));
+            }
+            if (furthest == null || task.getEndTime().isAfter(furthest.getEndTime())) {
+                furthest = task;
+            }
+            previous = task;
+        }
+        return conflicts;
+    }
+
+    // Расставляет интервалы заданных длительностей друг за другом в свободные промежутки,
+    // начиная с notBefore. Занятые интервалы шкалы подаются в offer по возрастанию старта,
+    // начиная с первого, стартующего не раньше notBefore; интервал, начавшийся раньше и
+    // накрывающий notBefore, - в spanning.
+    static final class Packer {
+
+        private final List<Duration> durations;
+        private final List<LocalDateTime> starts;
+        private LocalDateTime candidate;
+
+        Packer(LocalDateTime notBefore, List<Duration> durations) {
+            this.durations = durations;
+            this.starts = new ArrayList<>(durations.size());
+            this.candidate = notBefore;
+        }
+
+        void spanning(LocalDateTime end) {
+            if (end.isAfter(candidate)) {
+                candidate = end;
+            }
+        }
+
+        // Очередной занятый интервал; false - все интервалы уже расставлены, шкалу дальше
+        // обходить не нужно
+        boolean offer(LocalDateTime start, LocalDateTime end) {
+            while (starts.size() < durations.size()) {
+                Duration duration = durations.get(starts.size());
+                if (start.isBefore(candidate)) {
+                    if (end.isAfter(candidate)) {
+                        candidate = end;
+                    }
+                    return true;
+                } else if (start.isAfter(candidate) && !start.isBefore(candidate.plus(duration))) {
+                    place(duration);
+                } else {
+                    // Задача нулевой длительности занимает минуту своего старта: старт совпадать
+                    // не может, а точность хранения времени - минута
+                    candidate = end.isAfter(start) ? end : start.plusMinutes(1);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Оставшиеся интервалы встают за последней занятой задачей
+        List<LocalDateTime> finish() {
+            while (starts.size() < durations.size()) {
+                place(durations.get(starts.size()));
+            }
+            return starts;
+        }
+
+        private void place(Duration duration) {
+            starts.add(candidate);
+            candidate = duration.isZero() ? candidate.plusMinutes(1) : candidate.plus(duration);
+        }
+    }
+}
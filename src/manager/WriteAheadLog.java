@@ -0,0 +1,417 @@
+package manager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+// Журнал изменений рядом с файлом снимка: по строке на запись, только дозапись в конец.
+// "P,<строка задачи>" - задача добавлена или изменена, "D,<id>" - задача удалена;
+// каждая запись запечатана контрольной суммой (RecordChecksum). Строка задачи - запись CSV,
+// и поле в кавычках может перенести её на несколько строк файла.
+// Перед фоновым снимком журнал откладывается в <файл>.wal.old и начинается заново;
+// отложенная часть удаляется, когда снимок записан.
+// При SYNC_BATCH и OS_BUFFERED записи отдает на диск отдельный поток-писатель: всё, что
+// накопилось за окно группового коммита, уходит одной записью и не более чем одним force.
+public class WriteAheadLog implements AutoCloseable {
+
+    public static final String PUT = "P";
+    public static final String DELETE = "D";
+
+    private static final Logger logger = Logger.getLogger(WriteAheadLog.class.getName());
+
+    private final Path path;
+    private FileChannel channel;
+    private final Durability durability;
+    private final Duration window;
+    private final List<Commit> pending;
+    private final Thread writer;
+    private int recordCount;
+    private long commitCount;
+    private long batchCount;
+    private boolean writing;
+    private boolean closed;
+
+    private WriteAheadLog(Path path, FileChannel channel, int recordCount, PersistenceSettings settings) {
+        this.path = path;
+        this.channel = channel;
+        this.recordCount = recordCount;
+        this.durability = settings.getDurability();
+        this.window = settings.getGroupCommitWindow();
+        this.pending = new ArrayList<>();
+        if (durability == Durability.SYNC_EACH) {
+            writer = null;
+        } else {
+            writer = new Thread(this::writeLoop, "wal-writer-" + path.getFileName());
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    public static WriteAheadLog open(Path path, int existingRecords, PersistenceSettings settings) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            return new WriteAheadLog(path, channel, existingRecords, settings);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу открыть журнал " + path + ". Ошибка: " + e.getMessage());
+        }
+    }
+
+    public static Path pathFor(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + ".wal");
+    }
+
+    public static Path rotatedPathFor(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + ".wal.old");
+    }
+
+    // Отдает записи журнала по одной, не загружая файл целиком; возвращает их число.
+    // Записи сверяются с контрольной суммой. Битая или недописанная запись, за которой нет ни
+    // одной целой, - оборванный хвост: файл обрезается по последней целой записи, иначе следующая
+    // дозапись приклеилась бы к обрывку. Если же за битой записью идут целые, это повреждение
+    // середины журнала: обрезка стерла бы подтвержденные изменения, поэтому файл не трогается,
+    // а чтение завершается ManagerSaveException.
+    public static int readRecords(Path path, Consumer<String> sink) {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        int count = 0;
+        long valid = 0;
+        long size;
+        try (InputStream in = Files.newInputStream(path)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1 << 16];
+            long position = 0;
+            boolean inQuotes = false;
+            // Начало последней физической строки в line и смещение первой битой записи
+            int physicalStart = 0;
+            long damagedAt = -1;
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                int lineStart = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '"') {
+                        inQuotes = !inQuotes;
+                        continue;
+                    }
+                    if (buffer[i] != '\n') {
+                        continue;
+                    }
+                    line.write(buffer, lineStart, i - lineStart);
+                    lineStart = i + 1;
+                    byte[] bytes = line.toByteArray();
+                    String record = payloadOf(bytes);
+                    if (record == null && physicalStart > 0 && isSealedRecord(bytes, physicalStart)) {
+                        // Строка - целая запись сама по себе: накопленное до неё оказалось битой
+                        // записью, которая сбила подсчет кавычек
+                        throw damaged(path, damagedAt >= 0 ? damagedAt : valid);
+                    }
+                    if (damagedAt >= 0) {
+                        // После битой записи записи не отдаются, а только ищутся целые
+                        if (record != null) {
+                            throw damaged(path, damagedAt);
+                        }
+                        if (inQuotes) {
+                            line.write('\n');
+                            physicalStart = line.size();
+                        } else {
+                            line.reset();
+                            physicalStart = 0;
+                        }
+                        continue;
+                    }
+                    if (record == null && inQuotes) {
+                        // Перевод строки внутри поля в кавычках: запись продолжается на следующей
+                        // строке. Сначала строка все же проверяется целиком - в записях старого
+                        // формата кавычки не парные.
+                        line.write('\n');
+                        physicalStart = line.size();
+                        continue;
+                    }
+                    line.reset();
+                    physicalStart = 0;
+                    inQuotes = false;
+                    if (record == null) {
+                        // Хвост это или повреждение середины, станет ясно, когда файл дочитан
+                        damagedAt = valid;
+                        continue;
+                    }
+                    sink.accept(record);
+                    count++;
+                    valid = position + i + 1;
+                }
+                line.write(buffer, lineStart, read - lineStart);
+                position += read;
+            }
+            size = Files.size(path);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу прочесть журнал " + path + ". Ошибка: " + e.getMessage());
+        }
+        if (valid < size) {
+            truncateTail(path, valid, size);
+        }
+        return count;
+    }
+
+    private static ManagerSaveException damaged(Path path, long offset) {
+        return new ManagerSaveException("Журнал " + path + " поврежден: запись на позиции " + offset
+                + " не сходится с контрольной суммой, а за ней есть целые записи.");
+    }
+
+    // Запечатанная запись с верной суммой в line начиная с from
+    private static boolean isSealedRecord(byte[] line, int from) {
+        try {
+            return RecordChecksum.isIntact(StandardCharsets.UTF_8.newDecoder()
+                    .decode(ByteBuffer.wrap(line, from, line.length - from)));
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+
+    // Запись без контрольной суммы или null, если строка битая. Записи старого формата
+    // без суммы принимаются, если они дописаны до конца строки.
+    private static String payloadOf(byte[] line) {
+        String record;
+        try {
+            record = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(line)).toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+        if (RecordChecksum.isSealed(record)) {
+            return RecordChecksum.open(record);
+        }
+        return record.startsWith(PUT + ",") || record.startsWith(DELETE + ",") ? record : null;
+    }
+
+    private static void truncateTail(Path path, long valid, long size) {
+        logger.warning("Журнал " + path + " обрезан после " + valid + " байт: отброшено "
+                + (size - valid) + " байт оборванного или поврежденного хвоста.");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(valid);
+            channel.force(true);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу обрезать журнал " + path + ". Ошибка: " + e.getMessage());
+        }
+    }
+
+    // Ставит записи в журнал в порядке вызова. Вернувшийся коммит завершается, когда записи
+    // сохранены с заданной надежностью; ждать его лучше, не держа блокировку менеджера.
+    public synchronized Commit append(List<String> records) {
+        if (closed) {
+            throw new ManagerSaveException("Журнал " + path + " закрыт.");
+        }
+        Commit commit = new Commit(records);
+        recordCount += records.size();
+        commitCount++;
+        if (writer == null) {
+            write(List.of(commit), channel);
+            batchCount++;
+            commit.done.complete(null);
+        } else {
+            pending.add(commit);
+            notifyAll();
+        }
+        return commit;
+    }
+
+    // Вызывается после записи снимка: всё, что было в журнале, уже есть в снимке.
+    // Сначала дожидается записи поставленных в очередь изменений.
+    public synchronized void truncate() {
+        awaitIdle();
+        try {
+            channel.truncate(0);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу очистить журнал " + path + ". Ошибка: " + e.getMessage());
+        }
+        recordCount = 0;
+    }
+
+    // Откладывает текущий журнал: записи после этого вызова попадут в новый журнал.
+    // Если прошлая отложенная часть не удалена (снимок не удался), журнал дописывается к ней.
+    public synchronized void rotate(Path rotatedPath) {
+        awaitIdle();
+        try {
+            channel.close();
+            if (Files.exists(rotatedPath)) {
+                Files.write(rotatedPath, Files.readAllBytes(path), StandardOpenOption.APPEND);
+                Files.delete(path);
+            } else {
+                Files.move(path, rotatedPath);
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу отложить журнал " + path + ". Ошибка: " + e.getMessage());
+        }
+        recordCount = 0;
+    }
+
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    public synchronized long getCommitCount() {
+        return commitCount;
+    }
+
+    // Число физических записей в файл; при групповом коммите меньше числа коммитов
+    public synchronized long getBatchCount() {
+        return batchCount;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            awaitIdle();
+            closed = true;
+            notifyAll();
+        }
+        try {
+            if (writer != null) {
+                writer.join();
+            }
+            channel.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу закрыть журнал " + path + ". Ошибка: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            List<Commit> batch;
+            FileChannel target;
+            synchronized (this) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Писатель останавливается только через close(), дописав очередь
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+            }
+            if (!window.isZero()) {
+                try {
+                    Thread.sleep(window.toMillis(), window.toNanosPart() % 1_000_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (this) {
+                batch = new ArrayList<>(pending);
+                pending.clear();
+                writing = true;
+                target = channel;
+            }
+            RuntimeException failure = null;
+            try {
+                write(batch, target);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            synchronized (this) {
+                writing = false;
+                batchCount++;
+                notifyAll();
+            }
+            for (Commit commit : batch) {
+                if (failure == null) {
+                    commit.done.complete(null);
+                } else {
+                    commit.done.completeExceptionally(failure);
+                }
+            }
+        }
+    }
+
+    private void write(List<Commit> batch, FileChannel channel) {
+        StringBuilder lines = new StringBuilder();
+        try {
+            for (Commit commit : batch) {
+                for (String record : commit.records) {
+                    lines.append(record).append('\n');
+                }
+                if (durability == Durability.SYNC_EACH) {
+                    writeFully(lines, channel);
+                    channel.force(false);
+                    lines.setLength(0);
+                }
+            }
+            if (!lines.isEmpty()) {
+                writeFully(lines, channel);
+                if (durability == Durability.SYNC_BATCH) {
+                    channel.force(false);
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не могу записать журнал " + path + ". Ошибка: " + e.getMessage());
+        }
+    }
+
+    private static void writeFully(CharSequence lines, FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Ждет, пока писатель сохранит очередь; прерывание не теряется, но и не обрывает ожидание,
+    // иначе журнал очистили бы раньше, чем в него попали уже принятые изменения
+    private void awaitIdle() {
+        boolean interrupted = false;
+        while (!pending.isEmpty() || writing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Записи одного изменения менеджера
+    public static final class Commit {
+
+        private final List<String> records;
+        private final CompletableFuture<Void> done;
+
+        private Commit(List<String> records) {
+            this.records = records;
+            this.done = new CompletableFuture<>();
+        }
+
+        public void await() {
+            try {
+                done.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof ManagerSaveException saveException) {
+                    throw saveException;
+                }
+                throw new ManagerSaveException("Не удалось записать журнал. Ошибка: " + e.getCause());
+            }
+        }
+    }
+}
@@ -4,14 +4,19 @@ import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpServer;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 import server.adapters.GsonFactory;
 import server.handlers.EpicTaskHandler;
+import server.handlers.ExportHandler;
 import server.handlers.HistoryHandler;
+import server.handlers.ImportHandler;
 import server.handlers.PrioritizedHandler;
+import server.handlers.SlotHandler;
 import server.handlers.SubtaskHandler;
 import server.handlers.TaskHandler;
 import manager.TaskManager;
@@ -20,6 +25,7 @@ public class TasksServer {
 
     private static final int PORT = 8080;
     private static HttpServer httpServer;
+    private static ExecutorService executor;
     private static final Gson gson = getGson();
     static TaskManager manager;
     private static final Logger logger = Logger.getLogger(TasksServer.class.getName());
@@ -37,6 +43,13 @@ public class TasksServer {
             httpServer.createContext("/epics", new EpicTaskHandler(manager, gson));
             httpServer.createContext("/history", new HistoryHandler(manager, gson));
             httpServer.createContext("/prioritized", new PrioritizedHandler(manager, gson));
+            httpServer.createContext("/slots", new SlotHandler(manager, gson));
+            httpServer.createContext("/export", new ExportHandler(manager, gson));
+            httpServer.createContext("/import", new ImportHandler(manager, gson));
+            // Запросы обрабатываются параллельно: менеджер синхронизирован, а файловый менеджер
+            // объединяет одновременные изменения в групповой коммит
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            httpServer.setExecutor(executor);
             logger.info("HTTP сервер успешно инициализирован на порту " + PORT);
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Ошибка инициализации HTTP сервера на порту " + PORT, e);
@@ -55,6 +68,7 @@ public class TasksServer {
     public static void stop() {
         if (httpServer != null) {
             httpServer.stop(0);
+            executor.shutdown();
             logger.info("HTTP сервер остановлен. Порт " + PORT + " освобожден.");
         } else {
             logger.warning("Попытка остановки HTTP сервера не увенчалась успехом.");
@@ -2,12 +2,15 @@ package server.adapters;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializer;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import util.IntHashSet;
 
 public class GsonFactory {
 
@@ -35,6 +38,27 @@ public class GsonFactory {
                         (JsonDeserializer<Duration>)
                                 (json, typeOfT, context) ->
                                         Duration.parse(json.getAsString()))
+                .registerTypeAdapter(
+                        IntHashSet.class,
+                        (JsonSerializer<IntHashSet>)
+                                (src, typeOfSrc, context) -> {
+                                    JsonArray array = new JsonArray(src.size());
+                                    for (int id : src.toSortedArray()) {
+                                        array.add(id);
+                                    }
+                                    return array;
+                                })
+                .registerTypeAdapter(
+                        IntHashSet.class,
+                        (JsonDeserializer<IntHashSet>)
+                                (json, typeOfT, context) -> {
+                                    JsonArray array = json.getAsJsonArray();
+                                    IntHashSet set = new IntHashSet(array.size());
+                                    for (JsonElement id : array) {
+                                        set.add(id.getAsInt());
+                                    }
+                                    return set;
+                                })
                 .create();
     }
 }
@@ -10,8 +10,11 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.URLDecoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -57,6 +60,16 @@ public class BaseHttpHandler implements HttpHandler {
         }
     }
 
+    protected void sendBadRequest(HttpExchange h, String text) {
+        byte[] response = text.getBytes(DEFAULT_CHARSET);
+        try (OutputStream os = h.getResponseBody()) {
+            h.sendResponseHeaders(400, response.length);
+            os.write(response);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to send response: 400 Bad Request", e);
+        }
+    }
+
     protected void sendModified(HttpExchange h, String text) throws IOException {
         byte[] response = text.getBytes(DEFAULT_CHARSET);
         h.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
@@ -115,6 +128,23 @@ public class BaseHttpHandler implements HttpHandler {
         };
     }
 
+    protected Map<String, String> getQueryParameters(HttpExchange h) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = h.getRequestURI().getRawQuery();
+        if (query == null || query.isBlank()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Некорректный параметр запроса: " + pair);
+            }
+            parameters.put(URLDecoder.decode(pair.substring(0, separator), DEFAULT_CHARSET),
+                    URLDecoder.decode(pair.substring(separator + 1), DEFAULT_CHARSET));
+        }
+        return parameters;
+    }
+
     public void sendBadRequestDirectly(HttpExchange exchange) {
         try {
             sendBadRequest(exchange);
@@ -0,0 +1,81 @@
+package server.handlers;
+
+import com.google.gson.Gson;
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.logging.Level;
+import manager.ManagerSaveException;
+import manager.TaskManager;
+
+// GET /export - вся доска в формате NDJSON: по строке на запись вида
+// {"type":"EPIC","item":{...}}, эпики идут раньше своих подзадач.
+// Ответ пишется частями по мере обхода доски, ни список задач, ни весь JSON в памяти не
+// собираются. Формат читает ImportHandler.
+public class ExportHandler extends CrudHandler {
+
+    static final String TYPE = "type";
+    static final String ITEM = "item";
+
+    public ExportHandler(TaskManager manager, Gson gson) {
+        super(manager, gson, "export");
+    }
+
+    @Override
+    protected void getAll(HttpExchange exchange) {
+        exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson;charset=utf-8");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), DEFAULT_CHARSET),
+                1 << 16)) {
+            // Длина 0 - ответ уходит частями (chunked)
+            exchange.sendResponseHeaders(200, 0);
+            JsonWriter writer = new JsonWriter(out);
+            // Несколько значений верхнего уровня подряд допускает только нестрогий режим
+            writer.setStrictness(Strictness.LENIENT);
+            manager.exportAll(task -> {
+                try {
+                    writer.beginObject();
+                    writer.name(TYPE).value(task.getType().name());
+                    writer.name(ITEM);
+                    gson.toJson(task, task.getClass(), writer);
+                    writer.endObject();
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException | ManagerSaveException e) {
+            // Заголовки уже отправлены: остается оборвать ответ, клиент увидит неполный поток
+            logger.log(Level.WARNING, "Выгрузка доски прервана", e);
+        }
+    }
+
+    @Override
+    protected void getById(HttpExchange exchange, int id) {
+        sendBadRequestDirectly(exchange);
+    }
+
+    @Override
+    protected void create(HttpExchange exchange) {
+        sendBadRequestDirectly(exchange);
+    }
+
+    @Override
+    protected void update(HttpExchange exchange, int id) {
+        sendBadRequestDirectly(exchange);
+    }
+
+    @Override
+    protected void delete(HttpExchange exchange, int id) {
+        sendBadRequestDirectly(exchange);
+    }
+
+    @Override
+    protected void getAllLinked(HttpExchange exchange, int id, String linkedType) {
+        sendBadRequestDirectly(exchange);
+    }
+}
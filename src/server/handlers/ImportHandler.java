@@ -0,0 +1,161 @@
+package server.handlers;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import manager.ManagerSaveException;
+import manager.TaskManager;
+import manager.TimeOverlapException;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+import tasks.TaskType;
+import util.IntHashMap;
+
+// POST /import - загрузка доски в формате ExportHandler. Записи читаются из тела запроса по
+// одной и уходят в менеджер пакетами через addAll: одна проверка пересечений и одна запись
+// на диск на пакет, а не на задачу.
+// Записи получают новые id, ссылки подзадач переводятся на новые id эпиков; эпик должен
+// встретиться в потоке раньше своих подзадач. Импорт не атомарен: при ошибке пакеты,
+// принятые до неё, остаются в менеджере, и ответ сообщает, сколько записей принято.
+public class ImportHandler extends CrudHandler {
+
+    static final int BATCH_SIZE = 10_000;
+
+    public ImportHandler(TaskManager manager, Gson gson) {
+        super(manager, gson, "import");
+    }
+
+    @Override
+    protected void create(HttpExchange exchange) {
+        Batch batch = new Batch();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(exchange.getRequestBody(), DEFAULT_CHARSET))) {
+            // Несколько значений верхнего уровня подряд допускает только нестрогий режим
+            reader.setStrictness(Strictness.LENIENT);
+            while (reader.peek() != JsonToken.END_DOCUMENT) {
+                batch.add(readRecord(reader));
+            }
+            batch.flush();
+            sendModified(exchange, "Импортировано записей: " + batch.imported + ".");
+        } catch (MalformedJsonException | EOFException | JsonParseException | DateTimeException
+                 | IllegalStateException | IllegalArgumentException | NoSuchElementException e) {
+            sendBadRequest(exchange, "Импортировано записей: " + batch.imported
+                    + ". Некорректная запись: " + e.getMessage());
+        } catch (IOException | ManagerSaveException e) {
+            sendServerError(exchange);
+        } catch (TimeOverlapException e) {
+            sendHasTimeOverlapping(exchange, "Импортировано записей: " + batch.imported + ". " + e.getMessage());
+        }
+    }
+
+    // Запись {"type":...,"item":{...}}; поля могут идти в любом порядке
+    private Task readRecord(JsonReader reader) throws IOException {
+        TaskType type = null;
+        JsonElement item = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case ExportHandler.TYPE -> type = TaskType.valueOf(reader.nextString());
+                case ExportHandler.ITEM -> item = gson.fromJson(reader, JsonElement.class);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (type == null || item == null || !item.isJsonObject()) {
+            throw new IllegalArgumentException("в записи нет полей " + ExportHandler.TYPE + " и "
+                    + ExportHandler.ITEM);
+        }
+        return switch (type) {
+            case TASK -> gson.fromJson(item, Task.class);
+            case EPIC -> gson.fromJson(item, Epic.class);
+            case SUBTASK -> gson.fromJson(item, Subtask.class);
+        };
+    }
+
+    // Копит записи до BATCH_SIZE и переводит id из выгрузки в id менеджера
+    private class Batch {
+
+        private final List<Task> pending = new ArrayList<>(BATCH_SIZE);
+        // Эпики выгрузки по прежним id; новый id эпик получает, когда его пакет принят
+        private final IntHashMap<Epic> epics = new IntHashMap<>();
+        private int imported;
+
+        void add(Task record) {
+            if (record.getId() == null) {
+                throw new IllegalArgumentException("у записи нет id");
+            }
+            Task item;
+            if (record instanceof Epic epic) {
+                // Состав, статус и время эпика менеджер восстановит по подзадачам
+                Epic fresh = new Epic(epic.getTitle(), epic.getDescription());
+                epics.put(epic.getId(), fresh);
+                item = fresh;
+            } else if (record instanceof Subtask subtask) {
+                Epic epic = subtask.getEpicTask() == null ? null : epics.get(subtask.getEpicTask());
+                if (epic == null) {
+                    throw new NoSuchElementException("эпик с id: " + subtask.getEpicTask()
+                            + " подзадачи с id: " + subtask.getId() + " не встречался раньше неё");
+                }
+                if (epic.getId() == 0) {
+                    flush();
+                }
+                subtask.setEpicTask(epic.getId());
+                subtask.setId(0);
+                item = subtask;
+            } else {
+                record.setId(0);
+                item = record;
+            }
+            pending.add(item);
+            if (pending.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            manager.addAll(pending);
+            imported += pending.size();
+            pending.clear();
+        }
+    }
+
+    @Override
+    protected void getAll(HttpExchange exchange) {
+        sendBadRequestDirectly(exchange);
+    }
+
+    @Override
+    protected void getById(HttpExchange exchange, int id) {
+        sendBadRequestDirectly(exchange);
+    }
+
+    @Override
+    protected void update(HttpExchange exchange, int id) {
+        sendBadRequestDirectly(exchange);
+    }
+
+    @Override
+    protected void delete(HttpExchange exchange, int id) {
+        sendBadRequestDirectly(exchange);
+    }
+
+    @Override
+    protected void getAllLinked(HttpExchange exchange, int id, String linkedType) {
+        sendBadRequestDirectly(exchange);
+    }
+}
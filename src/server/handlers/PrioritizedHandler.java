@@ -3,10 +3,18 @@ package server.handlers;
 import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpExchange;
 import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
 import manager.TaskManager;
+import tasks.Task;
 
 public class PrioritizedHandler extends CrudHandler {
 
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
     public PrioritizedHandler(TaskManager manager, Gson gson) {
         super(manager, gson, "prioritized");
     }
@@ -14,8 +22,22 @@ public class PrioritizedHandler extends CrudHandler {
     @Override
     protected void getAll(HttpExchange exchange) {
         try {
-            String response = gson.toJson(manager.getPrioritizedTasks());
+            Map<String, String> parameters = getQueryParameters(exchange);
+            List<Task> prioritized;
+            if (parameters.isEmpty()) {
+                prioritized = manager.getPrioritizedTasks();
+            } else if (parameters.size() == 2 && parameters.containsKey("from") && parameters.containsKey("to")) {
+                LocalDateTime from = LocalDateTime.parse(parameters.get("from"), formatter);
+                LocalDateTime to = LocalDateTime.parse(parameters.get("to"), formatter);
+                prioritized = manager.getTasksInWindow(from, to);
+            } else {
+                sendBadRequest(exchange);
+                return;
+            }
+            String response = gson.toJson(prioritized);
             sendText(exchange, response);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            sendBadRequestDirectly(exchange);
         } catch (IOException e) {
             sendServerError(exchange);
         }
@@ -0,0 +1,70 @@
+package server.handlers;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import manager.TaskManager;
+
+public class SlotHandler extends CrudHandler {
+
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    public SlotHandler(TaskManager manager, Gson gson) {
+        super(manager, gson, "slots");
+    }
+
+    @Override
+    protected void getAll(HttpExchange exchange) {
+        try {
+            Map<String, String> parameters = getQueryParameters(exchange);
+            if (!parameters.containsKey("duration") || !parameters.containsKey("notBefore")) {
+                sendBadRequest(exchange);
+                return;
+            }
+            Duration duration = Duration.parse(parameters.get("duration"));
+            LocalDateTime notBefore = LocalDateTime.parse(parameters.get("notBefore"), formatter);
+            LocalDateTime slotStart = manager.findNextFreeSlot(duration, notBefore);
+
+            JsonObject slot = new JsonObject();
+            slot.addProperty("startTime", slotStart.format(formatter));
+            slot.addProperty("endTime", slotStart.plus(duration).format(formatter));
+            slot.addProperty("duration", duration.toString());
+            sendText(exchange, gson.toJson(slot));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            sendBadRequestDirectly(exchange);
+        } catch (IOException e) {
+            sendServerError(exchange);
+        }
+    }
+
+    @Override
+    protected void getById(HttpExchange exchange, int id) {
+        sendBadRequestDirectly(exchange);
+    }
+
+    @Override
+    protected void create(HttpExchange exchange) {
+        sendBadRequestDirectly(exchange);
+    }
+
+    @Override
+    protected void update(HttpExchange exchange, int id) {
+        sendBadRequestDirectly(exchange);
+    }
+
+    @Override
+    protected void delete(HttpExchange exchange, int id) {
+        sendBadRequestDirectly(exchange);
+    }
+
+    @Override
+    protected void getAllLinked(HttpExchange exchange, int id, String linkedType) {
+        sendBadRequestDirectly(exchange);
+    }
+}
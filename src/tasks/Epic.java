@@ -6,9 +6,11 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import util.IntHashSet;
 
 public class Epic extends Task {
-    private List<Integer> epicSubtasks = new ArrayList<>();
+    // id подзадач без упаковки: проверка и удаление за O(1), в JSON - массив чисел
+    private IntHashSet epicSubtasks = new IntHashSet();
     private LocalDateTime endTime;
 
     public Epic(String title, String description) {
@@ -28,13 +30,28 @@ public class Epic extends Task {
     }
 
     public Epic(Epic epic) {
-        super(epic.getId(), epic.getTitle(), epic.getDescription(), epic.getStatus());
+        super(epic.getId(), epic.getTitle(), epic.getDescription(), epic.getStatus(),
+                epic.getStartTime(), epic.getDuration());
         endTime = epic.getEndTime();
-        epicSubtasks = epic.getSubtaskList();
+        epicSubtasks = new IntHashSet(epic.epicSubtasks);
     }
 
+    // Снимок id подзадач по возрастанию
     public List<Integer> getSubtaskList() {
-        return epicSubtasks;
+        int[] ids = epicSubtasks.toSortedArray();
+        List<Integer> subtaskList = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            subtaskList.add(id);
+        }
+        return subtaskList;
+    }
+
+    public boolean containsSubtask(int id) {
+        return epicSubtasks.contains(id);
+    }
+
+    public boolean hasSubtasks() {
+        return !epicSubtasks.isEmpty();
     }
 
     public void addSubtask(Integer id) {
@@ -48,7 +65,9 @@ public class Epic extends Task {
     }
 
     public void removeSubtask(Integer id) {
-        epicSubtasks.remove(id);
+        if (id != null) {
+            epicSubtasks.remove(id);
+        }
     }
 
     @Override
@@ -0,0 +1,293 @@
+package util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+// Потоковое чтение CSV по RFC 4180: поле в кавычках может содержать запятые, удвоенные
+// кавычки и переводы строк; записи разделяются '\n', "\r\n" или '\r'.
+// Разбор идет по массиву символов без строк на запись и поле: значения полей копируются
+// в общий буфер, и строка создается, только когда её просят (get). Числа и сравнения
+// читаются прямо из буфера. Всё, что отдает читатель, действительно до следующего next().
+// Разбор снисходителен к файлам старого формата без кавычек: кавычка не в начале поля и
+// символы после закрывающей кавычки берутся как есть.
+public final class CsvReader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final int END = -1;
+
+    // null, если текст целиком дан при создании
+    private final Reader in;
+    private char[] buffer;
+    private int position;
+    private int limit;
+    private int recordStart;
+    private int recordEnd;
+
+    // Значения полей текущей записи подряд; поле i - [starts[i], ends[i])
+    private char[] values;
+    private int valuesLength;
+    private int[] starts;
+    private int[] ends;
+    private boolean[] quoted;
+    private int size;
+
+    public CsvReader(Reader in) {
+        this(in, new char[DEFAULT_BUFFER_SIZE], 0, 0);
+    }
+
+    // Разбор готового текста; массив CharBuffer читается без копирования
+    public CsvReader(CharBuffer text) {
+        this(null, text.hasArray() ? text.array() : text.toString().toCharArray(),
+                text.hasArray() ? text.arrayOffset() + text.position() : 0,
+                text.hasArray() ? text.arrayOffset() + text.limit() : text.remaining());
+    }
+
+    private CsvReader(Reader in, char[] buffer, int position, int limit) {
+        this.in = in;
+        this.buffer = buffer;
+        this.position = position;
+        this.limit = limit;
+        this.values = new char[256];
+        this.starts = new int[16];
+        this.ends = new int[16];
+        this.quoted = new boolean[16];
+    }
+
+    // Переходит к следующей записи; false, если текст кончился
+    public boolean next() throws IOException {
+        size = 0;
+        valuesLength = 0;
+        recordStart = position;
+        int c = read();
+        if (c == END) {
+            recordEnd = recordStart;
+            return false;
+        }
+        while (true) {
+            int fieldStart = valuesLength;
+            boolean inQuotes = c == '"';
+            boolean wasQuoted = inQuotes;
+            if (inQuotes) {
+                c = read();
+            }
+            // Символ, завершивший поле: ',', конец записи или конец текста
+            while (true) {
+                if (c == END) {
+                    break;
+                }
+                if (inQuotes) {
+                    if (c == '"') {
+                        c = read();
+                        if (c != '"') {
+                            inQuotes = false;
+                            continue;
+                        }
+                    }
+                } else if (c == ',' || c == '\n' || c == '\r') {
+                    break;
+                }
+                append((char) c);
+                c = read();
+            }
+            addField(fieldStart, wasQuoted);
+            if (c == ',') {
+                c = read();
+                continue;
+            }
+            recordEnd = c == END ? position : position - 1;
+            if (c == '\r') {
+                if (peek() == '\n') {
+                    position++;
+                }
+            }
+            return true;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String get(int field) {
+        checkField(field);
+        return new String(values, starts[field], ends[field] - starts[field]);
+    }
+
+    // Пустое поле без кавычек читается как null, пустое в кавычках - как ""
+    public String getOrNull(int field) {
+        checkField(field);
+        return starts[field] == ends[field] && !quoted[field] ? null : get(field);
+    }
+
+    public int length(int field) {
+        checkField(field);
+        return ends[field] - starts[field];
+    }
+
+    public char charAt(int field, int index) {
+        checkField(field);
+        if (index < 0 || index >= ends[field] - starts[field]) {
+            throw new IndexOutOfBoundsException("Нет символа " + index + " в поле " + field);
+        }
+        return values[starts[field] + index];
+    }
+
+    public boolean isBlank(int field) {
+        checkField(field);
+        for (int i = starts[field]; i < ends[field]; i++) {
+            if (!Character.isWhitespace(values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean fieldEquals(int field, String expected) {
+        checkField(field);
+        int length = ends[field] - starts[field];
+        if (length != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (values[starts[field] + i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Десятичное число; пробелы вокруг допускаются
+    public long getLong(int field) {
+        checkField(field);
+        int from = starts[field];
+        int to = ends[field];
+        while (from < to && values[from] == ' ') {
+            from++;
+        }
+        while (to > from && values[to - 1] == ' ') {
+            to--;
+        }
+        boolean negative = from < to && values[from] == '-';
+        int digits = negative || from < to && values[from] == '+' ? from + 1 : from;
+        if (digits == to || to - digits > 19) {
+            throw new NumberFormatException("Не число: \"" + get(field) + "\"");
+        }
+        long value = 0;
+        for (int i = digits; i < to; i++) {
+            int digit = values[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Не число: \"" + get(field) + "\"");
+            }
+            value = value * 10 - digit;
+            if (value > 0) {
+                throw new NumberFormatException("Число вне диапазона: \"" + get(field) + "\"");
+            }
+        }
+        if (!negative) {
+            if (value == Long.MIN_VALUE) {
+                throw new NumberFormatException("Число вне диапазона: \"" + get(field) + "\"");
+            }
+            value = -value;
+        }
+        return value;
+    }
+
+    public int getInt(int field) {
+        long value = getLong(field);
+        if (value != (int) value) {
+            throw new NumberFormatException("Число вне диапазона int: \"" + get(field) + "\"");
+        }
+        return (int) value;
+    }
+
+    // Исходный текст записи без разделителя записей
+    public CharSequence record() {
+        return CharBuffer.wrap(buffer, recordStart, recordEnd - recordStart);
+    }
+
+    public boolean recordEquals(String expected) {
+        int length = recordEnd - recordStart;
+        if (length != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[recordStart + i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isBlankRecord() {
+        for (int i = recordStart; i < recordEnd; i++) {
+            if (!Character.isWhitespace(buffer[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return END;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return END;
+        }
+        return buffer[position];
+    }
+
+    // Дочитывает текст, сохраняя в буфере начало текущей записи; false - текст кончился
+    private boolean fill() throws IOException {
+        if (in == null) {
+            return false;
+        }
+        if (recordStart > 0) {
+            System.arraycopy(buffer, recordStart, buffer, 0, limit - recordStart);
+            limit -= recordStart;
+            position -= recordStart;
+            recordEnd -= recordStart;
+            recordStart = 0;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read <= 0) {
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    private void append(char c) {
+        if (valuesLength == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[valuesLength++] = c;
+    }
+
+    private void addField(int start, boolean wasQuoted) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+            quoted = Arrays.copyOf(quoted, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = valuesLength;
+        quoted[size] = wasQuoted;
+        size++;
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= size) {
+            throw new IndexOutOfBoundsException("В записи " + size + " полей, запрошено поле " + field);
+        }
+    }
+}
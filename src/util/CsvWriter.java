@@ -0,0 +1,77 @@
+package util;
+
+// Запись CSV по RFC 4180 прямо в StringBuilder, без промежуточных строк на поле и запись.
+// Поле берется в кавычки, если в нем есть запятая, кавычка или перевод строки; кавычки внутри
+// удваиваются. null пишется пустым полем без кавычек, пустая строка - парой кавычек "",
+// поэтому CsvReader.getOrNull различает их при чтении.
+// Записи разделяются '\n', а не CRLF из RFC: так пишутся все файлы доски, CsvReader
+// принимает оба варианта.
+public final class CsvWriter {
+
+    private final StringBuilder out;
+    private boolean recordStarted;
+
+    public CsvWriter(StringBuilder out) {
+        this.out = out;
+    }
+
+    public CsvWriter field(CharSequence value) {
+        separate();
+        if (value == null) {
+            return this;
+        }
+        if (!needsQuotes(value)) {
+            out.append(value);
+            return this;
+        }
+        out.append('"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+        return this;
+    }
+
+    public CsvWriter field(long value) {
+        separate();
+        out.append(value);
+        return this;
+    }
+
+    // Начинает поле и отдает выход для содержимого, которому кавычки заведомо не нужны:
+    // цифр, имен констант
+    public StringBuilder plainField() {
+        separate();
+        return out;
+    }
+
+    public CsvWriter endRecord() {
+        out.append('\n');
+        recordStarted = false;
+        return this;
+    }
+
+    private void separate() {
+        if (recordStarted) {
+            out.append(',');
+        }
+        recordStarted = true;
+    }
+
+    private static boolean needsQuotes(CharSequence value) {
+        if (value.isEmpty()) {
+            return true;
+        }
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,204 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Отображение int -> V без упаковки ключей и без объекта-узла на запись: ключи и значения
+// лежат в двух параллельных массивах, коллизии разрешаются линейным пробированием,
+// удаление сдвигает хвост цепочки назад. Ключ 0 хранится отдельно.
+// Ключи перемешиваются хешем: последовательные id без него легли бы одним сплошным блоком,
+// и поиск отсутствующего ключа проходил бы его целиком. Порядок обхода не определен.
+public class IntHashMap<V> {
+
+    private static final int EMPTY = 0;
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private V[] values;
+    private int mask;
+    private int size;
+    private boolean hasZero;
+    private V zeroValue;
+
+    public IntHashMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    public IntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public V get(int key) {
+        if (key == EMPTY) {
+            return zeroValue;
+        }
+        int slot = indexOf(key);
+        return slot < 0 ? null : values[slot];
+    }
+
+    public boolean containsKey(int key) {
+        if (key == EMPTY) {
+            return hasZero;
+        }
+        return indexOf(key) >= 0;
+    }
+
+    // Возвращает предыдущее значение ключа или null
+    public V put(int key, V value) {
+        if (key == EMPTY) {
+            V previous = zeroValue;
+            if (!hasZero) {
+                hasZero = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                V previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return null;
+    }
+
+    // Возвращает удаленное значение или null
+    public V remove(int key) {
+        if (key == EMPTY) {
+            V previous = zeroValue;
+            if (hasZero) {
+                hasZero = false;
+                zeroValue = null;
+                size--;
+            }
+            return previous;
+        }
+        int gap = indexOf(key);
+        if (gap < 0) {
+            return null;
+        }
+        V previous = values[gap];
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int ideal = hash(keys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        values[gap] = null;
+        size--;
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, null);
+        size = 0;
+        hasZero = false;
+        zeroValue = null;
+    }
+
+    // Снимок ключей; по нему можно удалять записи во время обхода
+    public int[] keys() {
+        int[] snapshot = new int[size];
+        int i = 0;
+        if (hasZero) {
+            snapshot[i++] = EMPTY;
+        }
+        for (int key : keys) {
+            if (key != EMPTY) {
+                snapshot[i++] = key;
+            }
+        }
+        return snapshot;
+    }
+
+    public List<V> values() {
+        List<V> snapshot = new ArrayList<>(size);
+        forEachValue(snapshot::add);
+        return snapshot;
+    }
+
+    public void forEachValue(Consumer<? super V> action) {
+        if (hasZero) {
+            action.accept(zeroValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                action.accept(values[slot]);
+            }
+        }
+    }
+
+    private int indexOf(int key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        V[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = (V[]) new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    // Ближайшая степень двойки, при которой заполненность не превышает половины
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,195 @@
+package util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Множество int без упаковки в Integer: открытая адресация с линейным пробированием.
+// Добавление, поиск и удаление - O(1) в среднем, удаление сдвигает хвост цепочки назад,
+// поэтому "надгробий" в таблице не остается. Ноль служит маркером пустой ячейки и
+// хранится отдельным флагом.
+public class IntHashSet {
+
+    private static final int EMPTY = 0;
+    private static final int MIN_CAPACITY = 4;
+
+    private int[] keys;
+    private int mask;
+    private int size;
+    private boolean hasZero;
+
+    public IntHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntHashSet(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public IntHashSet(IntHashSet other) {
+        keys = other.keys.clone();
+        mask = other.mask;
+        size = other.size;
+        hasZero = other.hasZero;
+    }
+
+    public boolean add(int key) {
+        if (key == EMPTY) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        size++;
+        if (size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    public boolean contains(int key) {
+        if (key == EMPTY) {
+            return hasZero;
+        }
+        return indexOf(key) >= 0;
+    }
+
+    public boolean remove(int key) {
+        if (key == EMPTY) {
+            if (!hasZero) {
+                return false;
+            }
+            hasZero = false;
+            size--;
+            return true;
+        }
+        int gap = indexOf(key);
+        if (gap < 0) {
+            return false;
+        }
+        // Сдвигаем назад элементы цепочки, чей идеальный слот не лежит между gap и их позицией
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int ideal = hash(keys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        hasZero = false;
+    }
+
+    public void forEach(IntConsumer action) {
+        if (hasZero) {
+            action.accept(EMPTY);
+        }
+        for (int key : keys) {
+            if (key != EMPTY) {
+                action.accept(key);
+            }
+        }
+    }
+
+    public int[] toSortedArray() {
+        int[] values = new int[size];
+        int i = 0;
+        if (hasZero) {
+            values[i++] = EMPTY;
+        }
+        for (int key : keys) {
+            if (key != EMPTY) {
+                values[i++] = key;
+            }
+        }
+        Arrays.sort(values);
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IntHashSet other = (IntHashSet) o;
+        return Arrays.equals(toSortedArray(), other.toSortedArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toSortedArray());
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toSortedArray());
+    }
+
+    private int indexOf(int key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        allocate(capacity);
+        for (int key : oldKeys) {
+            if (key != EMPTY) {
+                int slot = hash(key) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    // Ближайшая степень двойки, при которой заполненность не превышает половины
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
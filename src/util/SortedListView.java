@@ -0,0 +1,160 @@
+package util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.Function;
+
+// Представления уже отсортированного списка в виде SortedSet и SortedMap.
+// Нужны ради быстрого пути TreeSet.addAll и TreeMap.putAll: пустое дерево, получив
+// отсортированную коллекцию с тем же компаратором, строится за один линейный проход
+// без поворотов и сравнений. Представления только для чтения и поддерживают ровно то,
+// что нужно деревьям: размер, обход по порядку и компаратор. Сортированность списка
+// и уникальность ключей не проверяются - за них отвечает вызывающий.
+public final class SortedListView {
+
+    private SortedListView() {
+    }
+
+    public static <E> SortedSet<E> asSortedSet(List<E> sorted, Comparator<? super E> comparator) {
+        return new SetView<>(sorted, comparator);
+    }
+
+    // comparator == null - естественный порядок ключей, как у TreeMap по умолчанию
+    public static <K, V> SortedMap<K, V> asSortedMap(List<V> sorted, Function<? super V, K> key,
+                                                     Comparator<? super K> comparator) {
+        return new MapView<>(sorted, key, comparator);
+    }
+
+    private static final class SetView<E> extends AbstractSet<E> implements SortedSet<E> {
+
+        private final List<E> sorted;
+        private final Comparator<? super E> comparator;
+
+        private SetView(List<E> sorted, Comparator<? super E> comparator) {
+            this.sorted = sorted;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return sorted.iterator();
+        }
+
+        @Override
+        public int size() {
+            return sorted.size();
+        }
+
+        @Override
+        public Comparator<? super E> comparator() {
+            return comparator;
+        }
+
+        @Override
+        public E first() {
+            return sorted.getFirst();
+        }
+
+        @Override
+        public E last() {
+            return sorted.getLast();
+        }
+
+        @Override
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedSet<E> headSet(E toElement) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedSet<E> tailSet(E fromElement) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class MapView<K, V> extends AbstractMap<K, V> implements SortedMap<K, V> {
+
+        private final List<V> sorted;
+        private final Function<? super V, K> key;
+        private final Comparator<? super K> comparator;
+
+        private MapView(List<V> sorted, Function<? super V, K> key, Comparator<? super K> comparator) {
+            this.sorted = sorted;
+            this.key = key;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public int size() {
+            return sorted.size();
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return comparator;
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    Iterator<V> values = sorted.iterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return values.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<K, V> next() {
+                            V value = values.next();
+                            return new SimpleImmutableEntry<>(key.apply(value), value);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return sorted.size();
+                }
+            };
+        }
+
+        @Override
+        public K firstKey() {
+            return key.apply(sorted.getFirst());
+        }
+
+        @Override
+        public K lastKey() {
+            return key.apply(sorted.getLast());
+        }
+
+        @Override
+        public SortedMap<K, V> subMap(K fromKey, K toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedMap<K, V> headMap(K toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedMap<K, V> tailMap(K fromKey) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tasks.TaskStatus.DONE;
+import static tasks.TaskStatus.IN_PROGRESS;
+import static tasks.TaskStatus.NEW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+
+class BTreeTaskManagerTest extends TaskManagerTest<BTreeTaskManager> {
+
+    // Кэши меньше любой доски из тестов: каждое обращение проходит через вытеснение
+    private static final int CACHED_RECORDS = 4;
+    private static final int CACHED_PAGES = 8;
+
+    File tempTestFile;
+
+    @BeforeEach
+    void createBTreeManager() throws IOException {
+        tempTestFile = File.createTempFile("btreeBoard", ".kbt");
+        taskManager = new BTreeTaskManager(tempTestFile, CACHED_RECORDS, CACHED_PAGES);
+    }
+
+    @AfterEach
+    void deleteBTreeFiles() throws IOException {
+        taskManager.close();
+        Files.deleteIfExists(tempTestFile.toPath());
+        Files.deleteIfExists(BTreeTaskStore.heapPathFor(tempTestFile.toPath()));
+        Files.deleteIfExists(DescriptionBlobs.pathFor(tempTestFile.toPath()));
+    }
+
+    @Test
+    void reopenedBoardReadsFromTrees() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 28, 10, 0);
+        taskManager.addTask(new Task(0, "TASK", "TASK DESCRIPTION", NEW, start, Duration.ofMinutes(30)));
+        Epic epic = new Epic("EPIC", "EPIC DESCRIPTION");
+        taskManager.addEpic(epic);
+        taskManager.addSubtask(new Subtask(0, "SUB1", "описание", DONE, epic.getId(),
+                start.plusHours(1), Duration.ofMinutes(15)));
+        taskManager.addSubtask(new Subtask(0, "SUB2", null, NEW, epic.getId()));
+        taskManager.updateTask(new Task(1, "T", "short", IN_PROGRESS, start, Duration.ofMinutes(30)));
+        taskManager.close();
+
+        taskManager = BTreeTaskManager.open(tempTestFile, CACHED_RECORDS, CACHED_PAGES);
+        assertEquals("T", taskManager.getTaskById(1).getTitle());
+        assertEquals("short", taskManager.getTaskById(1).getDescription());
+        assertEquals(List.of(3, 4), taskManager.getEpicById(epic.getId()).getSubtaskList());
+        assertEquals(IN_PROGRESS, taskManager.getEpicById(epic.getId()).getStatus());
+        assertEquals(null, taskManager.getSubtaskById(4).getDescription());
+        assertEquals(List.of(4, 1, 3), taskManager.getPrioritizedTasks().stream().map(Task::getId).toList());
+        assertThrows(TimeOverlapException.class, () -> taskManager.addTask(
+                new Task(0, "OVERLAP", "", NEW, start.plusMinutes(10), Duration.ofMinutes(5))));
+
+        taskManager.addTask(new Task("NEXT", "NEXT"));
+        assertEquals(6, taskManager.getAllTask().getLast().getId(), "Счетчик id хранится в файле");
+    }
+
+    @Test
+    void largeBoardKeepsOnlyWorkingSetInHeap() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+        List<Task> batch = new ArrayList<>();
+        for (int i = 0; i < 30_000; i++) {
+            batch.add(new Task(0, "TASK " + i, "DESCRIPTION " + i, NEW,
+                    start.plusMinutes(10L * (29_999 - i)), Duration.ofMinutes(5)));
+        }
+        taskManager.addAll(batch);
+
+        List<Task> window = taskManager.getTasksInWindow(start.plusMinutes(12), start.plusMinutes(40));
+        assertEquals(List.of(29_999, 29_998, 29_997), window.stream().map(Task::getId).toList());
+        assertEquals(start.plusMinutes(5), taskManager.findNextFreeSlot(Duration.ofMinutes(5), start));
+        assertEquals("DESCRIPTION 15000", taskManager.getTaskById(15_001).getDescription());
+        List<Task> prioritized = taskManager.getPrioritizedTasks();
+        assertEquals(30_000, prioritized.size());
+        assertEquals(30_000, prioritized.getFirst().getId());
+        assertEquals(1, prioritized.getLast().getId());
+        assertTrue(taskManager.cachedRecordCount() <= CACHED_RECORDS);
+        assertTrue(taskManager.cachedPageCount() <= CACHED_PAGES);
+
+        for (int id = 2; id <= 30_000; id += 2) {
+            taskManager.deleteTaskById(id);
+        }
+        assertEquals(15_000, taskManager.getPrioritizedTasks().size());
+        taskManager.deleteAllTask();
+        assertEquals(List.of(), taskManager.getPrioritizedTasks());
+        assertEquals(List.of(), taskManager.getAllTask());
+    }
+
+    @Test
+    void coldDescriptionsAreReadOnlyById() throws IOException {
+        taskManager.close();
+        taskManager = new BTreeTaskManager(tempTestFile, CACHED_RECORDS, CACHED_PAGES, DescriptionStorage.COLD);
+        LocalDateTime start = LocalDateTime.of(2025, 1, 28, 10, 0);
+        String longDescription = "длинное описание задачи ".repeat(2_000);
+        taskManager.addTask(new Task(0, "TASK", longDescription, NEW, start, Duration.ofMinutes(30)));
+        Epic epic = new Epic("EPIC", "EPIC DESCRIPTION");
+        taskManager.addEpic(epic);
+        taskManager.addSubtask(new Subtask(0, "SUB", null, NEW, epic.getId()));
+
+        assertNull(taskManager.getAllTask().getFirst().getDescription(), "Выборки списков описание не читают");
+        assertNull(taskManager.getAllEpic().getFirst().getDescription());
+        assertTrue(taskManager.getPrioritizedTasks().stream().allMatch(task -> task.getDescription() == null));
+        assertEquals(longDescription, taskManager.getTaskById(1).getDescription());
+        List<Task> exported = new ArrayList<>();
+        taskManager.exportAll(exported::add);
+        assertEquals(List.of(2, 1, 3), exported.stream().map(Task::getId).toList(), "Эпики выгружаются первыми");
+        assertEquals(longDescription, exported.get(1).getDescription(), "Выгрузка читает описания целиком");
+        assertTrue(Files.size(DescriptionBlobs.pathFor(tempTestFile.toPath())) < longDescription.length() / 10,
+                "Описание хранится сжатым");
+
+        taskManager.updateTask(new Task(1, "TASK", "short", NEW, start, Duration.ofMinutes(30)));
+        taskManager.close();
+        taskManager = BTreeTaskManager.open(tempTestFile, CACHED_RECORDS, CACHED_PAGES);
+        assertEquals("short", taskManager.getTaskById(1).getDescription());
+        assertEquals("EPIC DESCRIPTION", taskManager.getEpicById(epic.getId()).getDescription());
+        assertNull(taskManager.getSubtaskById(3).getDescription());
+    }
+}
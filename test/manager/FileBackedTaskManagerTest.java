@@ -9,11 +9,20 @@ import org.junit.jupiter.api.Test;
 import tasks.Epic;
 import tasks.Subtask;
 import tasks.Task;
+import tasks.TaskStatus;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskManager> {
 
@@ -130,8 +139,587 @@ public class FileBackedTaskManagerTest extends TaskManagerTest<FileBackedTaskMan
         assertDoesNotThrow(() -> FileBackedTaskManager.loadFromFile(tempTestFile));
     }
 
+    @Test
+    void saveAndLoadUnscheduledTasks() {
+        taskManager.addTask(new Task("UNSCHEDULED 1", "DESCRIPTION 1"));
+        taskManager.addTask(new Task("UNSCHEDULED 2", "DESCRIPTION 2"));
+
+        FileBackedTaskManager newManager = FileBackedTaskManager.loadFromFile(tempTestFile);
+        assertEquals(2, newManager.getAllTask().size(), "Задачи без времени старта должны восстанавливаться из файла");
+
+        newManager.scheduleUnscheduled(SchedulePolicy.CREATION_ORDER, start);
+        FileBackedTaskManager scheduledManager = FileBackedTaskManager.loadFromFile(tempTestFile);
+        assertEquals(newManager.getPrioritizedTasks(), scheduledManager.getPrioritizedTasks());
+        assertEquals(start.plusMinutes(1), scheduledManager.getTaskById(2).getStartTime());
+    }
+
+    @Test
+    void walModeAppendsRecordsAndReplaysThemOnLoad() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults().withMode(PersistenceMode.WAL);
+        FileBackedTaskManager walManager = new FileBackedTaskManager(tempTestFile, settings);
+        walManager.addTask(task1);
+        walManager.addTask(task2);
+        walManager.addEpic(epic1);
+        subtask1.setEpicTask(epic1.getId());
+        subtask2.setEpicTask(epic1.getId());
+        walManager.addSubtask(subtask1);
+        walManager.addSubtask(subtask2);
+        subtask1.setStatus(TaskStatus.DONE);
+        walManager.updateSubtask(subtask1);
+        walManager.deleteTaskById(task2.getId());
+
+        File walFile = WriteAheadLog.pathFor(tempTestFile.toPath()).toFile();
+        walFile.deleteOnExit();
+        assertEquals(1, Files.readAllLines(tempTestFile.toPath()).size(), "Снимок не должен переписываться");
+        assertEquals(7, Files.readAllLines(walFile.toPath()).size(), "Каждое изменение - одна запись журнала");
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempTestFile, settings);
+        assertEquals(List.of(task1), loaded.getAllTask());
+        assertEquals(2, loaded.getAllSubtask().size());
+        assertEquals(TaskStatus.DONE, loaded.getSubtaskById(subtask1.getId()).getStatus());
+        assertEquals(TaskStatus.IN_PROGRESS, loaded.getEpicById(epic1.getId()).getStatus());
+
+        Task task3 = new Task("TASK3", "TASK DESCRIPTION 3");
+        loaded.addTask(task3);
+        assertTrue(task3.getId() > subtask2.getId(), "id после загрузки не должны повторяться");
+    }
+
+    @Test
+    void walModeCompactsSnapshotInBackground() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults()
+                .withMode(PersistenceMode.WAL)
+                .withSnapshotEvery(3);
+        FileBackedTaskManager walManager = new FileBackedTaskManager(tempTestFile, settings);
+        File walFile = WriteAheadLog.pathFor(tempTestFile.toPath()).toFile();
+        walFile.deleteOnExit();
+
+        walManager.addTask(task1);
+        walManager.addTask(task2);
+        walManager.addEpic(epic1);
+        walManager.awaitCompaction();
+        assertEquals(4, Files.readAllLines(tempTestFile.toPath()).size());
+        assertEquals(0, walFile.length(), "После снимка журнал должен быть пуст");
+        assertFalse(WriteAheadLog.rotatedPathFor(tempTestFile.toPath()).toFile().exists(),
+                "Отложенная часть журнала удаляется после снимка");
+
+        CompactionStats stats = walManager.getCompactionStats();
+        assertEquals(1, stats.getCompactions());
+        assertEquals(tempTestFile.length(), stats.getLastBytesWritten());
+
+        walManager.deleteEpicById(epic1.getId());
+        assertEquals(1, Files.readAllLines(walFile.toPath()).size());
+        walManager.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempTestFile, settings);
+        assertEquals(2, loaded.getAllTask().size());
+        assertTrue(loaded.getAllEpic().isEmpty());
+    }
+
+    @Test
+    void failedBackgroundSnapshotIsReportedOnClose() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults()
+                .withMode(PersistenceMode.WAL)
+                .withSnapshotEvery(3);
+        FileBackedTaskManager walManager = new FileBackedTaskManager(tempTestFile, settings);
+        WriteAheadLog.pathFor(tempTestFile.toPath()).toFile().deleteOnExit();
+        WriteAheadLog.rotatedPathFor(tempTestFile.toPath()).toFile().deleteOnExit();
+        // Временный файл снимка занят непустым каталогом - фоновая запись снимка падает
+        File blocker = new File(tempTestFile.getPath() + ".tmp");
+        File blockerChild = new File(blocker, "busy");
+        try {
+            assertTrue(blocker.mkdir() && blockerChild.createNewFile());
+            walManager.addTask(task1);
+            walManager.addTask(task2);
+            walManager.addEpic(epic1);
+
+            assertThrows(ManagerSaveException.class, walManager::close,
+                    "Неудачный фоновый снимок не должен теряться молча");
+        } finally {
+            blockerChild.delete();
+            blocker.delete();
+        }
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempTestFile, settings);
+        assertEquals(2, loaded.getAllTask().size(), "Изменения восстанавливаются из журнала");
+        assertEquals(1, loaded.getAllEpic().size());
+    }
+
+    @Test
+    void loadReplaysLogRotatedBeforeUnfinishedCompaction() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults().withMode(PersistenceMode.WAL);
+        FileBackedTaskManager walManager = new FileBackedTaskManager(tempTestFile, settings);
+        walManager.addTask(task1);
+        walManager.addTask(task2);
+        walManager.close();
+
+        // Журнал отложен, а снимок так и не записан
+        File rotated = WriteAheadLog.rotatedPathFor(tempTestFile.toPath()).toFile();
+        rotated.deleteOnExit();
+        Files.move(WriteAheadLog.pathFor(tempTestFile.toPath()), rotated.toPath());
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempTestFile, settings);
+        assertEquals(List.of(task1, task2), loaded.getPrioritizedTasks());
+        loaded.close();
+    }
+
+    @Test
+    void groupCommitKeepsAllConcurrentWrites() throws InterruptedException {
+        PersistenceSettings settings = PersistenceSettings.defaults()
+                .withMode(PersistenceMode.WAL)
+                .withDurability(Durability.SYNC_BATCH);
+        WriteAheadLog.pathFor(tempTestFile.toPath()).toFile().deleteOnExit();
+        int threads = 8;
+        int tasksPerThread = 50;
+        try (FileBackedTaskManager walManager = new FileBackedTaskManager(tempTestFile, settings)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            for (int i = 0; i < threads; i++) {
+                executor.submit(() -> {
+                    for (int j = 0; j < tasksPerThread; j++) {
+                        walManager.addTask(new Task("TASK", "TASK DESCRIPTION"));
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempTestFile, settings);
+        assertEquals(threads * tasksPerThread, loaded.getAllTask().size());
+        loaded.close();
+    }
+
+    @Test
+    void binarySnapshotRoundTrip() {
+        PersistenceSettings settings = PersistenceSettings.defaults().withSnapshotFormat(SnapshotFormat.BINARY);
+        FileBackedTaskManager binaryManager = new FileBackedTaskManager(tempTestFile, settings);
+        binaryManager.addTask(task1);
+        binaryManager.addTask(new Task("UNSCHEDULED", null));
+        binaryManager.addEpic(epic1);
+        subtask1.setEpicTask(epic1.getId());
+        subtask1.setStatus(TaskStatus.DONE);
+        binaryManager.addSubtask(subtask1);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempTestFile);
+        assertEquals(binaryManager.getAllTask(), loaded.getAllTask());
+        assertEquals(binaryManager.getAllSubtask(), loaded.getAllSubtask());
+        assertEquals(binaryManager.getPrioritizedTasks(), loaded.getPrioritizedTasks());
+        assertNull(loaded.getTaskById(2).getDescription());
+        assertEquals(TaskStatus.DONE, loaded.getEpicById(epic1.getId()).getStatus());
+        assertEquals(List.of(subtask1.getId()), loaded.getEpicById(epic1.getId()).getSubtaskList());
+    }
+
+    @Test
+    void converterKeepsBoardAndBinaryIsSmaller() throws IOException {
+        for (int i = 0; i < 200; i++) {
+            taskManager.addTask(new Task(0, "TASK", "TASK DESCRIPTION", NEW,
+                    start.plusMinutes(30L * i), duration));
+        }
+        File binaryFile = File.createTempFile("tempTestFile", ".bin");
+        File csvFile = File.createTempFile("tempTestFile", ".cvs");
+        binaryFile.deleteOnExit();
+        csvFile.deleteOnExit();
+
+        SnapshotConverter.convert(tempTestFile, binaryFile, SnapshotFormat.BINARY);
+        SnapshotConverter.convert(binaryFile, csvFile, SnapshotFormat.CSV);
+
+        assertTrue(binaryFile.length() * 4 < tempTestFile.length(), "Двоичный снимок должен быть компактнее");
+        assertEquals(Set.copyOf(Files.readAllLines(tempTestFile.toPath())),
+                Set.copyOf(Files.readAllLines(csvFile.toPath())));
+        assertEquals(taskManager.getPrioritizedTasks(),
+                FileBackedTaskManager.loadFromFile(binaryFile).getPrioritizedTasks());
+        assertThrows(IllegalArgumentException.class,
+                () -> SnapshotConverter.convert(csvFile, csvFile, SnapshotFormat.BINARY));
+    }
+
+    @Test
+    void loadStreamsWindowsLineEndingsAndRejectsBrokenEncoding() throws IOException {
+        Files.writeString(tempTestFile.toPath(), "id,type,name,status,description,epic,start,duration\r\n"
+                + "1,TASK,TASK1,NEW,TASK DESCRIPTION 1,,202501281000, 1200\r\n"
+                + "2,EPIC,EPIC1,NEW,EPIC DESCRIPTION 1,,, 0\r\n"
+                + "3,SUBTASK,Subtask1,DONE,Subtask description 1,2,202501281300, 1200");
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempTestFile);
+        assertEquals(1, loaded.getAllTask().size());
+        assertEquals(TaskStatus.DONE, loaded.getEpicById(2).getStatus());
+        assertEquals(List.of(3), loaded.getEpicById(2).getSubtaskList());
+
+        Files.write(tempTestFile.toPath(), new byte[]{'i', 'd', (byte) 0xC3, '\n'});
+        assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(tempTestFile));
+    }
+
+    @Test
+    void parallelLoadMatchesSequentialLoad() throws IOException {
+        StringBuilder csv = new StringBuilder("id,type,name,status,description,epic,start,duration\n");
+        csv.append("1,EPIC,EPIC1,NEW,EPIC DESCRIPTION 1,,, 0\n");
+        for (int id = 2; id <= 150_000; id++) {
+            csv.append(id).append(id % 3 == 0 ? ",SUBTASK,Подзадача," : ",TASK,Задача,")
+                    .append("NEW,Описание ").append(id).append(id % 3 == 0 ? ",1" : ",").append(",, 0\n");
+        }
+        // Поздняя строка с тем же id должна победить и при параллельном разборе
+        csv.append("2,TASK,Задача,DONE,Последняя версия,,, 0\n");
+        Files.writeString(tempTestFile.toPath(), csv);
+
+        PersistenceSettings settings = PersistenceSettings.defaults();
+        FileBackedTaskManager sequential = FileBackedTaskManager.loadFromFile(tempTestFile,
+                settings.withLoadParallelism(1));
+        FileBackedTaskManager parallel = FileBackedTaskManager.loadFromFile(tempTestFile,
+                settings.withLoadParallelism(4));
+
+        assertEquals(99_999, parallel.getAllTask().size());
+        assertEquals(sequential.getAllTask(), parallel.getAllTask());
+        assertEquals(sequential.getAllSubtask(), parallel.getAllSubtask());
+        assertEquals(sequential.getEpicById(1).getSubtaskList(), parallel.getEpicById(1).getSubtaskList());
+        assertEquals("Последняя версия", parallel.getTaskById(2).getDescription());
+        assertThrows(IllegalArgumentException.class, () -> settings.withLoadParallelism(0));
+    }
+
+    @Test
+    void commasQuotesAndNewlinesSurviveSnapshotAndLog() throws IOException {
+        List<Task> tricky = List.of(
+                new Task(0, "Купить \"молоко\", хлеб", "строка 1\nстрока 2,\r\n\"итог\"", NEW,
+                        start, duration),
+                new Task(0, "\"", "", NEW, start.plusMinutes(30), duration),
+                new Task(0, "без описания", null, NEW, start.plusMinutes(60), duration));
+        taskManager.addAll(tricky);
+        assertEquals(6, Files.readAllLines(tempTestFile.toPath()).size(),
+                "Запись с переводами строк занимает несколько строк файла");
+        assertSameTexts(tricky, FileBackedTaskManager.loadFromFile(tempTestFile).getAllTask());
+
+        PersistenceSettings settings = PersistenceSettings.defaults().withMode(PersistenceMode.WAL);
+        File walFile = WriteAheadLog.pathFor(tempTestFile.toPath()).toFile();
+        walFile.deleteOnExit();
+        FileBackedTaskManager walManager = new FileBackedTaskManager(tempTestFile, settings);
+        walManager.addAll(tricky);
+        walManager.close();
+        assertSameTexts(tricky, FileBackedTaskManager.loadFromFile(tempTestFile, settings).getAllTask());
+
+        // Параллельный разбор не должен резать кусок внутри поля в кавычках
+        List<Task> many = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            many.add(new Task(0, "Задача, " + i, "Описание\n\"" + i + "\"\nв три строки", NEW));
+        }
+        FileBackedTaskManager large = new FileBackedTaskManager(tempTestFile);
+        large.addAll(many);
+        FileBackedTaskManager parallel = FileBackedTaskManager.loadFromFile(tempTestFile,
+                PersistenceSettings.defaults().withLoadParallelism(4));
+        assertSameTexts(many, parallel.getAllTask());
+    }
+
+    private static void assertSameTexts(List<Task> expected, List<Task> actual) {
+        assertEquals(expected.stream().map(task -> task.getTitle() + "|" + task.getDescription()).sorted().toList(),
+                actual.stream().map(task -> task.getTitle() + "|" + task.getDescription()).sorted().toList());
+    }
+
+    @Test
+    void loadRebuildsIndexesAndEpicsWithoutTouchingHistory() {
+        taskManager.addTask(task2);
+        taskManager.addTask(task1);
+        taskManager.addEpic(epic1);
+        subtask1.setEpicTask(epic1.getId());
+        subtask2.setEpicTask(epic1.getId());
+        taskManager.addSubtask(subtask2);
+        taskManager.addSubtask(subtask1);
+        subtask2.setStatus(TaskStatus.DONE);
+        taskManager.updateSubtask(subtask2);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempTestFile);
+        assertTrue(loaded.getHistory().isEmpty(), "Загрузка не должна попадать в историю");
+        assertEquals(List.of(task1, task2, subtask1, subtask2), loaded.getPrioritizedTasks());
+        Epic loadedEpic = loaded.getEpicById(epic1.getId());
+        assertEquals(TaskStatus.IN_PROGRESS, loadedEpic.getStatus());
+        assertEquals(subtask1.getStartTime(), loadedEpic.getStartTime());
+        assertEquals(subtask2.getEndTime(), loadedEpic.getEndTime());
+        assertThrows(TimeOverlapException.class, () -> loaded.addTask(new Task(0, "TASK3", "TASK DESCRIPTION 3",
+                NEW, start.plusMinutes(5), duration)), "Временной индекс должен быть восстановлен");
+        assertThrows(IllegalStateException.class, () -> loaded.bulkLoad(List.of(task1)));
+    }
+
+    @Test
+    void asyncModeCoalescesBurstIntoFewWrites() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults()
+                .withMode(PersistenceMode.ASYNC)
+                .withFlushInterval(Duration.ofMillis(50))
+                .withFlushThreshold(400);
+        FileBackedTaskManager asyncManager = new FileBackedTaskManager(tempTestFile, settings);
+        for (int i = 0; i < 1000; i++) {
+            asyncManager.addTask(new Task("TASK", "TASK DESCRIPTION"));
+        }
+        asyncManager.flush();
+
+        assertTrue(asyncManager.getSnapshotWriteCount() <= 10,
+                "1000 правок не должны переписывать файл 1000 раз: " + asyncManager.getSnapshotWriteCount());
+        assertEquals(1001, Files.readAllLines(tempTestFile.toPath()).size(), "flush() ждет записи всех правок");
+
+        asyncManager.deleteTaskById(1);
+        asyncManager.close();
+        assertEquals(999, FileBackedTaskManager.loadFromFile(tempTestFile).getAllTask().size(),
+                "close() дописывает последние изменения");
+        assertThrows(ManagerSaveException.class, () -> asyncManager.addTask(task1));
+        assertThrows(IllegalArgumentException.class, () -> settings.withFlushThreshold(0));
+    }
+
+    @Test
+    void asyncCloseReportsChangesItCouldNotWrite() {
+        PersistenceSettings settings = PersistenceSettings.defaults()
+                .withMode(PersistenceMode.ASYNC)
+                .withFlushInterval(Duration.ofHours(1));
+        Object lock = new Object();
+        AsyncSnapshotWriter writer = new AsyncSnapshotWriter("failing", lock, List::of, state -> {
+            throw new IOException("Нет места на диске");
+        }, settings);
+        synchronized (lock) {
+            writer.markDirty();
+        }
+
+        ManagerSaveException error = assertThrows(ManagerSaveException.class, writer::close,
+                "Последние изменения не записаны - close() не должен завершаться молча");
+        assertTrue(error.getMessage().contains("Нет места на диске"), error.getMessage());
+    }
+
+    @Test
+    void failedAsyncLoadLeavesNoWriterThread() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults().withMode(PersistenceMode.ASYNC);
+        File missing = new File(tempTestFile.getPath() + ".missing");
+        assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(missing, settings));
+
+        Files.writeString(tempTestFile.toPath(), "id,type,name,status,description,epic,start,duration\n"
+                + "1,TASK,Task1,NEW,Description,,202501281000,1800\n"
+                + "2,TASK,Task2,NEW,Description,,202501281010,1800\n");
+        assertThrows(TimeOverlapException.class, () -> FileBackedTaskManager.loadFromFile(tempTestFile, settings));
+
+        assertTrue(Thread.getAllStackTraces().keySet().stream()
+                        .noneMatch(thread -> thread.getName().equals("snapshot-writer-" + missing.getName())
+                                || thread.getName().equals("snapshot-writer-" + tempTestFile.getName())),
+                "Неудачная загрузка не должна оставлять поток записи снимков");
+        assertEquals(3, Files.readAllLines(tempTestFile.toPath()).size(), "Файл с ошибкой не перезаписывается");
+    }
+
+    @Test
+    void asyncSaveIsNotOverwrittenByOlderBackgroundWrite() {
+        PersistenceSettings settings = PersistenceSettings.defaults()
+                .withMode(PersistenceMode.ASYNC)
+                .withFlushInterval(Duration.ZERO);
+        try (FileBackedTaskManager asyncManager = new FileBackedTaskManager(tempTestFile, settings)) {
+            for (int i = 0; i < 200; i++) {
+                asyncManager.addTask(new Task("TASK", "TASK DESCRIPTION"));
+                if (i % 50 == 0) {
+                    asyncManager.save();
+                }
+            }
+            asyncManager.save();
+            asyncManager.flush();
+            assertEquals(200, FileBackedTaskManager.loadFromFile(tempTestFile).getAllTask().size());
+        }
+    }
+
+    @Test
+    void walRecoveryTruncatesTornTailAndKeepsAppending() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults().withMode(PersistenceMode.WAL);
+        FileBackedTaskManager walManager = new FileBackedTaskManager(tempTestFile, settings);
+        walManager.addTask(task1);
+        walManager.addTask(task2);
+        walManager.close();
+
+        // Сбой посреди дозаписи: обрывок записи без перевода строки
+        File walFile = WriteAheadLog.pathFor(tempTestFile.toPath()).toFile();
+        walFile.deleteOnExit();
+        long intact = walFile.length();
+        Files.writeString(walFile.toPath(), "0badc0de,P,3,TASK,TOR", StandardOpenOption.APPEND);
+
+        FileBackedTaskManager recovered = FileBackedTaskManager.loadFromFile(tempTestFile, settings);
+        assertEquals(intact, walFile.length(), "Оборванный хвост должен быть обрезан");
+        assertEquals(List.of(task1, task2), recovered.getPrioritizedTasks());
+        Task task3 = new Task("TASK3", "TASK DESCRIPTION 3");
+        recovered.addTask(task3);
+        recovered.close();
+
+        assertEquals(3, FileBackedTaskManager.loadFromFile(tempTestFile, settings).getAllTask().size(),
+                "Запись после восстановления не должна приклеиться к обрывку");
+
+        // Целые записи, которые не разбираются, - повреждение, а не обрывок
+        byte[] log = Files.readAllBytes(walFile.toPath());
+        for (String record : List.of("D,TASK3", RecordChecksum.seal("P,4,TASK,TASK4,UNKNOWN,,,,0"),
+                RecordChecksum.seal("X,4"))) {
+            Files.write(walFile.toPath(), log);
+            Files.writeString(walFile.toPath(), record + "\n", StandardOpenOption.APPEND);
+            assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(tempTestFile, settings),
+                    record);
+        }
+    }
+
+    @Test
+    void damagedRecordInTheMiddleOfLogIsReportedNotTruncated() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults().withMode(PersistenceMode.WAL);
+        FileBackedTaskManager walManager = new FileBackedTaskManager(tempTestFile, settings);
+        walManager.addTask(task1);
+        walManager.addTask(new Task(0, "TASK2", "строка 1\nстрока \"2\"", NEW, start.plusMinutes(30), duration));
+        walManager.addTask(new Task("TASK3", "TASK DESCRIPTION 3"));
+        walManager.close();
+
+        File walFile = WriteAheadLog.pathFor(tempTestFile.toPath()).toFile();
+        walFile.deleteOnExit();
+        byte[] intact = Files.readAllBytes(walFile.toPath());
+        String log = new String(intact, StandardCharsets.UTF_8);
+        for (String damage : List.of("TASK1", "строка 1", "\"2\"")) {
+            // Испорчена запись посередине, за ней идут целые записи
+            String replacement = damage.startsWith("\"") ? "2\"" : damage.replace('1', '9');
+            Files.writeString(walFile.toPath(), log.replace(damage, replacement));
+            long size = walFile.length();
+            assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(tempTestFile, settings),
+                    damage);
+            assertEquals(size, walFile.length(), "Журнал с поврежденной серединой не обрезается");
+        }
+
+        // Та же порча в последней записи - обычный оборванный хвост
+        Files.write(walFile.toPath(), intact);
+        Files.writeString(walFile.toPath(), log.replace("TASK3", "TASK9"));
+        assertEquals(2, FileBackedTaskManager.loadFromFile(tempTestFile, settings).getAllTask().size());
+        assertTrue(walFile.length() < intact.length);
+    }
+
+    @Test
+    void checksumMismatchInSnapshotIsReportedNotSkipped() throws IOException {
+        taskManager.addTask(task1);
+        taskManager.addTask(task2);
+        assertFalse(tempTestFile.toPath().resolveSibling(tempTestFile.getName() + ".tmp").toFile().exists(),
+                "Снимок пишется через временный файл, который затем переименовывается");
+
+        List<String> lines = Files.readAllLines(tempTestFile.toPath());
+        assertEquals("crc,id,type,name,status,description,epic,start,duration", lines.getFirst());
+        lines.set(1, lines.get(1).replace("TASK1", "TASKX"));
+        Files.write(tempTestFile.toPath(), lines);
+        assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(tempTestFile));
+
+        FileBackedTaskManager binaryManager = new FileBackedTaskManager(tempTestFile,
+                PersistenceSettings.defaults().withSnapshotFormat(SnapshotFormat.BINARY));
+        binaryManager.addTask(task1);
+        byte[] binary = Files.readAllBytes(tempTestFile.toPath());
+        binary[binary.length - 6] ^= 1;
+        Files.write(tempTestFile.toPath(), binary);
+        assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(tempTestFile));
+    }
+
+    @Test
+    void corruptCountsInBinarySnapshotAreReportedAsDamage() throws IOException {
+        byte[] header = {'K', 'B', 'N', 'S', 2};
+        List<byte[]> bodies = List.of(
+                // Число записей больше Integer.MAX_VALUE
+                new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F},
+                // Integer.MAX_VALUE записей при пустом продолжении файла
+                new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07},
+                // Одна задача с названием длиной Integer.MAX_VALUE байт
+                new byte[]{1, 0, 0, 1, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07},
+                // Статус за пределами TaskStatus
+                new byte[]{1, 0, 9, 1, 0, 0, 0, 0});
+        for (byte[] body : bodies) {
+            byte[] snapshot = new byte[header.length + body.length];
+            System.arraycopy(header, 0, snapshot, 0, header.length);
+            System.arraycopy(body, 0, snapshot, header.length, body.length);
+            Files.write(tempTestFile.toPath(), snapshot);
+            assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(tempTestFile));
+        }
+    }
+
+    @Test
+    void shardedModeRewritesOnlyTouchedShardsAndLoadsThemBack() throws IOException {
+        PersistenceSettings settings = PersistenceSettings.defaults()
+                .withMode(PersistenceMode.SHARDED)
+                .withShardSize(10)
+                .withLoadParallelism(2);
+        File shardDirectory = ShardedSnapshotStore.directoryFor(tempTestFile.toPath()).toFile();
+        try {
+            FileBackedTaskManager sharded = new FileBackedTaskManager(tempTestFile, settings);
+            for (int i = 0; i < 25; i++) {
+                sharded.addTask(new Task("TASK", "TASK DESCRIPTION"));
+            }
+            assertEquals(25, sharded.getShardWriteCount(), "Каждое добавление переписывает один шард");
+            assertEquals(3, shardDirectory.list().length);
+
+            long shard0 = Files.size(shardDirectory.toPath().resolve("shard-0"));
+            Task update = sharded.getTaskById(13);
+            sharded.updateTask(new Task(13, "TASK13 UPDATED", update.getDescription(), TaskStatus.DONE,
+                    update.getStartTime(), update.getDuration()));
+            assertEquals(26, sharded.getShardWriteCount(), "Обновление задачи переписывает только её шард");
+            assertEquals(shard0, Files.size(shardDirectory.toPath().resolve("shard-0")));
+
+            for (int id = 1; id < 10; id++) {
+                sharded.deleteTaskById(id);
+            }
+            assertFalse(shardDirectory.toPath().resolve("shard-0").toFile().exists(),
+                    "Опустевший шард удаляется");
+
+            Epic epic = new Epic("EPIC", "EPIC DESCRIPTION");
+            sharded.addEpic(epic);
+            Subtask subtask = new Subtask(0, "SUB", "SUB DESCRIPTION", NEW, epic.getId(),
+                    start, duration);
+            sharded.addSubtask(subtask);
+            sharded.addTask(new Task("TASK", "TASK DESCRIPTION"));
+            sharded.addTask(new Task("TASK", "TASK DESCRIPTION"));
+            Subtask farSubtask = new Subtask(0, "SUB FAR", "SUB DESCRIPTION", NEW, epic.getId(),
+                    start.plusHours(1), duration);
+            sharded.addSubtask(farSubtask);
+            assertEquals(30, farSubtask.getId(), "Подзадача лежит в другом шарде, чем её эпик");
+            sharded.close();
+
+            FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempTestFile,
+                    settings.withShardSize(1000));
+            assertEquals(18, loaded.getAllTask().size());
+            assertEquals("TASK13 UPDATED", loaded.getTaskById(13).getTitle());
+            assertEquals(List.of(27, 30), loaded.getEpicById(26).getSubtaskList());
+            loaded.addTask(new Task("TASK", "TASK DESCRIPTION"));
+            assertTrue(shardDirectory.toPath().resolve("shard-3").toFile().exists(),
+                    "Размер шарда берется из манифеста, а не из настроек");
+
+            // Сбой между записями шардов: эпик пропал, его подзадача в другом шарде осталась
+            Files.delete(shardDirectory.toPath().resolve("shard-2"));
+            FileBackedTaskManager recovered = FileBackedTaskManager.loadFromFile(tempTestFile, settings);
+            assertTrue(recovered.getAllSubtask().isEmpty(), "Подзадача без эпика отбрасывается");
+            assertEquals(11, recovered.getAllTask().size(), "Остальные шарды читаются как были");
+        } finally {
+            for (File shard : shardDirectory.listFiles()) {
+                shard.delete();
+            }
+            shardDirectory.delete();
+        }
+    }
+
+    @Test
+    void deleteAllIsSavedAsOneChange() {
+        PersistenceSettings settings = PersistenceSettings.defaults()
+                .withMode(PersistenceMode.SHARDED)
+                .withShardSize(1000);
+        File shardDirectory = ShardedSnapshotStore.directoryFor(tempTestFile.toPath()).toFile();
+        try {
+            FileBackedTaskManager sharded = new FileBackedTaskManager(tempTestFile, settings);
+            for (int i = 0; i < 5; i++) {
+                Epic epic = new Epic("EPIC", "EPIC DESCRIPTION");
+                sharded.addEpic(epic);
+                for (int j = 0; j < 4; j++) {
+                    sharded.addSubtask(new Subtask(0, "SUB", "SUB DESCRIPTION", NEW, epic.getId()));
+                }
+            }
+
+            long writes = sharded.getShardWriteCount();
+            sharded.deleteAllSubtask();
+            assertEquals(writes + 1, sharded.getShardWriteCount(), "Удаление всех подзадач - одна запись шарда");
+            sharded.addSubtask(new Subtask(0, "SUB", "SUB DESCRIPTION", NEW, 1));
+            writes = sharded.getShardWriteCount();
+            sharded.deleteAllEpic();
+            assertEquals(writes + 1, sharded.getShardWriteCount(), "Удаление всех эпиков - одна запись шарда");
+            sharded.close();
+
+            FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempTestFile, settings);
+            assertTrue(loaded.getAllEpic().isEmpty());
+            assertTrue(loaded.getAllSubtask().isEmpty());
+        } finally {
+            for (File shard : shardDirectory.listFiles()) {
+                shard.delete();
+            }
+            shardDirectory.delete();
+        }
+    }
+
     @AfterEach
     void deleteAllTempFiles() {
         tempTestFile.deleteOnExit();
     }
-}
\ No newline at end of file
+}
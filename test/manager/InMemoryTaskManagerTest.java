@@ -17,6 +17,7 @@ import tasks.Task;
 import tasks.TaskStatus;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
@@ -365,4 +366,82 @@ class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
         assertEquals(3, taskManager.getPrioritizedTasks().size(), "Ошибка удаления тасков в" +
                 " prioritizedTasks");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testTimeOverlapAgainstIndexNeighbours() {
+        LocalDateTime start = LocalDateTime.of(2025, 2, 1, 10, 0);
+        Duration hour = Duration.ofMinutes(60);
+
+        for (int i = 0; i < 100; i++) {
+            taskManager.addTask(new Task(0, "T" + i, "D" + i, NEW, start.plusHours(2L * i), hour));
+        }
+        assertEquals(100, taskManager.getAllTask().size());
+
+        Task insideGap = new Task(0, "GAP", "GAP", NEW, start.plusMinutes(60), hour);
+        taskManager.addTask(insideGap);
+
+        Task tailOfPrevious = new Task(0, "TAIL", "TAIL", NEW, start.plusHours(10).plusMinutes(59), hour);
+        assertThrows(TimeOverlapException.class, () -> taskManager.addTask(tailOfPrevious),
+                "Пересечение с хвостом предыдущей задачи должно обнаруживаться.");
+
+        Task headOfNext = new Task(0, "HEAD", "HEAD", NEW, start.plusHours(11).plusMinutes(1), hour);
+        assertThrows(TimeOverlapException.class, () -> taskManager.addTask(headOfNext),
+                "Пересечение с началом следующей задачи должно обнаруживаться.");
+
+        Task moved = taskManager.getTaskById(insideGap.getId());
+        moved.setStartTime(start.plusMinutes(70));
+        moved.setDuration(Duration.ofMinutes(50));
+        taskManager.updateTask(moved);
+        assertEquals(start.plusMinutes(70), taskManager.getTaskById(insideGap.getId()).getStartTime(),
+                "Обновляемая задача не должна пересекаться сама с собой.");
+
+        taskManager.deleteTaskById(moved.getId());
+        taskManager.addTask(new Task(0, "AFTER DELETE", "AFTER DELETE", NEW, start.plusMinutes(60), hour));
+        assertEquals(101, taskManager.getAllTask().size(), "Удаленная задача должна освобождать интервал.");
+    }
+
+    @Test
+    void testPrioritizedTasksKeepAllUnscheduled() {
+        for (int i = 0; i < 1000; i++) {
+            taskManager.addTask(new Task("UNSCHEDULED " + i, "DESCRIPTION " + i));
+        }
+        taskManager.addTask(task2);
+        taskManager.addTask(task1);
+
+        List<Task> prioritized = taskManager.getPrioritizedTasks();
+        assertEquals(1002, prioritized.size(), "Задачи без времени старта не должны схлопываться");
+        assertEquals(1, prioritized.getFirst().getId(), "Задачи без времени старта идут первыми в порядке добавления");
+        assertEquals(task1, prioritized.get(1000));
+        assertEquals(task2, prioritized.getLast());
+
+        taskManager.deleteTaskById(500);
+        Task scheduledLater = taskManager.getTaskById(501);
+        scheduledLater.setStartTime(start.plusDays(1));
+        taskManager.updateTask(scheduledLater);
+
+        prioritized = taskManager.getPrioritizedTasks();
+        assertEquals(1001, prioritized.size());
+        assertEquals(scheduledLater, prioritized.getLast());
+    }
+
+    @Test
+    void testValidateBatchReportsAllConflicts() {
+        taskManager.addTask(task1);
+        task2.setStartTime(start.plusMinutes(10));
+        task3.setStartTime(start.plusMinutes(60));
+        task4.setStartTime(start.plusMinutes(60));
+        task5.setStartTime(start.plusMinutes(70));
+        task5.setDuration(Duration.ofMinutes(5));
+
+        List<TimeConflict> conflicts = taskManager.validateBatch(List.of(task5, task4, task3, task2));
+        assertEquals(3, conflicts.size(), "Должны находиться все пересечения пакета: " + conflicts);
+        assertTrue(conflicts.contains(new TimeConflict(task2, taskManager.getAllTask().getFirst())),
+                "Пересечение с уже добавленной задачей");
+        assertTrue(conflicts.stream().anyMatch(conflict -> conflict.task().equals(task5)),
+                "Пересечение внутри пакета с задачей, начавшейся раньше");
+
+        subtask1.setEpicTask(12);
+        assertThrows(IllegalArgumentException.class, () -> taskManager.validateBatch(List.of(subtask1)),
+                "Подзадача пакета должна ссылаться на существующий эпик.");
+    }
+}
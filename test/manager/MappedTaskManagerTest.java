@@ -0,0 +1,129 @@
+package manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static tasks.TaskStatus.DONE;
+import static tasks.TaskStatus.IN_PROGRESS;
+import static tasks.TaskStatus.NEW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+
+class MappedTaskManagerTest extends TaskManagerTest<MappedTaskManager> {
+
+    File tempTestFile;
+
+    @BeforeEach
+    void createMappedManager() throws IOException {
+        tempTestFile = File.createTempFile("mappedBoard", ".kbm");
+        taskManager = new MappedTaskManager(tempTestFile);
+    }
+
+    @AfterEach
+    void deleteMappedFiles() throws IOException {
+        taskManager.close();
+        Files.deleteIfExists(tempTestFile.toPath());
+        Files.deleteIfExists(MappedTaskStore.heapPathFor(tempTestFile.toPath()));
+        Files.deleteIfExists(DescriptionBlobs.pathFor(tempTestFile.toPath()));
+    }
+
+    @Test
+    void reopenedBoardReadsStraightFromFile() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 28, 10, 0);
+        taskManager.addTask(new Task(0, "TASK", "TASK DESCRIPTION", NEW, start, Duration.ofMinutes(30)));
+        Epic epic = new Epic("EPIC", "EPIC DESCRIPTION");
+        taskManager.addEpic(epic);
+        taskManager.addSubtask(new Subtask(0, "SUB1", "описание", DONE, epic.getId(),
+                start.plusHours(1), Duration.ofMinutes(15)));
+        taskManager.addSubtask(new Subtask(0, "SUB2", null, NEW, epic.getId()));
+        taskManager.updateTask(new Task(1, "T", "short", IN_PROGRESS, start, Duration.ofMinutes(30)));
+        taskManager.close();
+
+        taskManager = MappedTaskManager.open(tempTestFile);
+        assertEquals("T", taskManager.getTaskById(1).getTitle());
+        assertEquals("short", taskManager.getTaskById(1).getDescription());
+        assertEquals(List.of(3, 4), taskManager.getEpicById(epic.getId()).getSubtaskList());
+        assertEquals(IN_PROGRESS, taskManager.getEpicById(epic.getId()).getStatus());
+        assertEquals(start.plusHours(1), taskManager.getEpicById(epic.getId()).getStartTime());
+        assertEquals(null, taskManager.getSubtaskById(4).getDescription());
+        assertEquals(List.of(4, 1, 3), taskManager.getPrioritizedTasks().stream().map(Task::getId).toList());
+        assertThrows(TimeOverlapException.class, () -> taskManager.addTask(
+                new Task(0, "OVERLAP", "", NEW, start.plusMinutes(10), Duration.ofMinutes(5))));
+
+        taskManager.addTask(new Task("NEXT", "NEXT"));
+        assertEquals(6, taskManager.getAllTask().getLast().getId(), "Счетчик id хранится в файле");
+        assertThrows(IllegalArgumentException.class, () -> taskManager.addTask(new Task(2, "EPIC ID", "")),
+                "id общий для всех типов записей");
+    }
+
+    @Test
+    void foreignFileIsRejectedWithoutTouchingIt() throws IOException {
+        File csv = File.createTempFile("csvBoard", ".csv");
+        try {
+            String board = "id,type,name,status,description,epic,start,duration\n1,TASK,T,NEW,D,,, 0\n";
+            Files.writeString(csv.toPath(), board);
+            assertThrows(ManagerSaveException.class, () -> MappedTaskManager.open(csv));
+            assertEquals(board, Files.readString(csv.toPath()), "Чужой файл не отображается и не растет");
+            assertTrue(Files.notExists(MappedTaskStore.heapPathFor(csv.toPath())));
+        } finally {
+            Files.deleteIfExists(csv.toPath());
+            Files.deleteIfExists(MappedTaskStore.heapPathFor(csv.toPath()));
+        }
+    }
+
+    @Test
+    void largeBatchSpansSeveralSegments() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+        List<Task> batch = new ArrayList<>();
+        for (int i = 0; i < 150_000; i++) {
+            batch.add(new Task(0, "TASK " + i, "DESCRIPTION " + i, NEW,
+                    start.plusMinutes(10L * (149_999 - i)), Duration.ofMinutes(5)));
+        }
+        taskManager.addAll(batch);
+
+        List<Task> window = taskManager.getTasksInWindow(start.plusMinutes(12), start.plusMinutes(40));
+        assertEquals(List.of(149_999, 149_998, 149_997), window.stream().map(Task::getId).toList());
+        assertEquals(start.plusMinutes(5), taskManager.findNextFreeSlot(Duration.ofMinutes(5), start));
+        assertEquals("DESCRIPTION 70000", taskManager.getTaskById(70_001).getDescription());
+        assertEquals(150_000, taskManager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void coldDescriptionsAreReadOnlyById() throws IOException {
+        taskManager.close();
+        taskManager = new MappedTaskManager(tempTestFile, DescriptionStorage.COLD);
+        LocalDateTime start = LocalDateTime.of(2025, 1, 28, 10, 0);
+        String longDescription = "длинное описание задачи ".repeat(2_000);
+        taskManager.addTask(new Task(0, "TASK", longDescription, NEW, start, Duration.ofMinutes(30)));
+        Epic epic = new Epic("EPIC", "EPIC DESCRIPTION");
+        taskManager.addEpic(epic);
+        taskManager.addSubtask(new Subtask(0, "SUB", null, NEW, epic.getId()));
+
+        assertNull(taskManager.getAllTask().getFirst().getDescription(), "Выборки списков описание не читают");
+        assertNull(taskManager.getAllEpic().getFirst().getDescription());
+        assertTrue(taskManager.getPrioritizedTasks().stream().allMatch(task -> task.getDescription() == null));
+        assertEquals(longDescription, taskManager.getTaskById(1).getDescription());
+        assertTrue(Files.size(DescriptionBlobs.pathFor(tempTestFile.toPath())) < longDescription.length() / 10,
+                "Описание хранится сжатым");
+
+        taskManager.updateTask(new Task(1, "TASK", "short", NEW, start, Duration.ofMinutes(30)));
+        taskManager.close();
+        taskManager = MappedTaskManager.open(tempTestFile);
+        assertEquals("short", taskManager.getTaskById(1).getDescription());
+        assertEquals("EPIC DESCRIPTION", taskManager.getEpicById(epic.getId()).getDescription());
+        assertNull(taskManager.getSubtaskById(3).getDescription());
+    }
+}
@@ -0,0 +1,49 @@
+package manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static tasks.TaskStatus.NEW;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import tasks.Task;
+
+class PrioritizedTaskIndexTest {
+
+    private final LocalDateTime start = LocalDateTime.of(2025, 1, 28, 10, 0);
+
+    @Test
+    void tasksWithSameStartTimeAreNotCollapsed() {
+        PrioritizedTaskIndex index = new PrioritizedTaskIndex();
+        Task second = new Task(2, "TASK2", "TASK DESCRIPTION 2", NEW, start, Duration.ZERO);
+        Task first = new Task(1, "TASK1", "TASK DESCRIPTION 1", NEW, start, Duration.ZERO);
+        Task earlier = new Task(3, "TASK3", "TASK DESCRIPTION 3", NEW, start.minusHours(1), Duration.ZERO);
+        index.add(second);
+        index.add(first);
+        index.add(earlier);
+
+        assertEquals(List.of(earlier, first, second), index.toList(), "Равные старты упорядочиваются по id");
+
+        index.remove(first);
+        assertEquals(List.of(earlier, second), index.toList());
+    }
+
+    @Test
+    void unscheduledTasksAreKeptInSeparateBucket() {
+        PrioritizedTaskIndex index = new PrioritizedTaskIndex();
+        Task scheduled = new Task(1, "TASK1", "TASK DESCRIPTION 1", NEW, start, Duration.ofMinutes(30));
+        Task unscheduledA = new Task(3, "TASK3", "TASK DESCRIPTION 3");
+        Task unscheduledB = new Task(2, "TASK2", "TASK DESCRIPTION 2");
+        index.add(scheduled);
+        index.add(unscheduledA);
+        index.add(unscheduledB);
+
+        assertEquals(List.of(unscheduledA, unscheduledB, scheduled), index.toList());
+        assertEquals(List.of(unscheduledA, unscheduledB), List.copyOf(index.getUnscheduled()));
+
+        index.remove(unscheduledA);
+        assertEquals(2, index.size());
+        assertEquals(List.of(unscheduledB), List.copyOf(index.getUnscheduled()));
+    }
+}
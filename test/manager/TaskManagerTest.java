@@ -11,6 +11,7 @@ import tasks.Task;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.junit.jupiter.api.Test;
@@ -273,4 +274,177 @@ abstract class TaskManagerTest<T extends TaskManager> {
         taskManager.deleteAllSubtask();
         assertEquals(0, taskManager.getEpicById(epic1.getId()).getSubtaskList().size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getTasksInWindow() {
+        taskManager.addTask(task1);
+        taskManager.addTask(task2);
+        taskManager.addEpic(epic1);
+        subtask3.setEpicTask(epic1.getId());
+        subtask4.setEpicTask(epic1.getId());
+        taskManager.addSubtask(subtask3);
+        taskManager.addSubtask(subtask4);
+
+        LocalDateTime start = task1.getStartTime();
+        assertEquals(List.of(task1, task2, subtask3, subtask4),
+                taskManager.getTasksInWindow(start.minusDays(1), start.plusDays(1)));
+        assertEquals(List.of(task1, task2), taskManager.getTasksInWindow(start.plusMinutes(15), start.plusMinutes(60)),
+                "Задача, начавшаяся до окна и заканчивающаяся в нем, должна попадать в выборку.");
+        assertEquals(List.of(task2), taskManager.getTasksInWindow(start.plusMinutes(30), start.plusMinutes(60)),
+                "Задача, закончившаяся на границе окна, не должна попадать в выборку.");
+        assertTrue(taskManager.getTasksInWindow(start.plusDays(1), start.plusDays(2)).isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> taskManager.getTasksInWindow(start.plusDays(1), start));
+    }
+
+    @Test
+    void findNextFreeSlot() {
+        taskManager.addTask(task1);
+        taskManager.addTask(task2);
+        taskManager.addEpic(epic1);
+        subtask4.setEpicTask(epic1.getId());
+        taskManager.addSubtask(subtask4);
+
+        LocalDateTime start = task1.getStartTime();
+        assertEquals(start.minusMinutes(30), taskManager.findNextFreeSlot(Duration.ofMinutes(30), start.minusMinutes(30)),
+                "Свободный интервал до первой задачи должен находиться сразу.");
+        assertEquals(start.plusMinutes(60), taskManager.findNextFreeSlot(Duration.ofMinutes(30), start.minusMinutes(10)),
+                "Интервал, не помещающийся перед задачей, должен сдвигаться в ближайший свободный промежуток.");
+        assertEquals(start.plusMinutes(120), taskManager.findNextFreeSlot(Duration.ofMinutes(31), start.plusMinutes(15)),
+                "Промежуток короче запрошенной длительности должен пропускаться.");
+
+        Task placed = new Task(0, "PLACED", "PLACED", NEW,
+                taskManager.findNextFreeSlot(Duration.ofMinutes(30), start), Duration.ofMinutes(30));
+        assertDoesNotThrow(() -> taskManager.addTask(placed), "Найденный интервал должен быть свободен.");
+        assertThrows(IllegalArgumentException.class, () -> taskManager.findNextFreeSlot(Duration.ofMinutes(-1), start));
+    }
+
+    @Test
+    void scheduleUnscheduled() {
+        taskManager.addTask(task1);
+        taskManager.addTask(task2);
+        taskManager.addEpic(epic1);
+        subtask4.setEpicTask(epic1.getId());
+        taskManager.addSubtask(subtask4);
+
+        Task longTask = new Task("LONG", "LONG");
+        longTask.setDuration(Duration.ofMinutes(40));
+        Task mediumTask = new Task("MEDIUM", "MEDIUM");
+        mediumTask.setDuration(Duration.ofMinutes(20));
+        Task shortTask = new Task("SHORT", "SHORT");
+        shortTask.setDuration(Duration.ofMinutes(10));
+        Subtask unscheduledSubtask = new Subtask(0, "UNSCHEDULED", "UNSCHEDULED", NEW, epic1.getId());
+        unscheduledSubtask.setDuration(Duration.ofMinutes(15));
+        taskManager.addTask(longTask);
+        taskManager.addTask(mediumTask);
+        taskManager.addTask(shortTask);
+        taskManager.addSubtask(unscheduledSubtask);
+
+        LocalDateTime start = task1.getStartTime();
+        List<Task> scheduled = taskManager.scheduleUnscheduled(SchedulePolicy.SHORTEST_FIRST, start.minusHours(1));
+
+        assertEquals(List.of(shortTask, unscheduledSubtask, mediumTask, longTask), scheduled);
+        assertEquals(start.minusMinutes(60), taskManager.getTaskById(shortTask.getId()).getStartTime());
+        assertEquals(start.minusMinutes(50), taskManager.getSubtaskById(unscheduledSubtask.getId()).getStartTime());
+        assertEquals(start.minusMinutes(35), taskManager.getTaskById(mediumTask.getId()).getStartTime());
+        assertEquals(start.plusMinutes(120), taskManager.getTaskById(longTask.getId()).getStartTime(),
+                "Задача, не помещающаяся в промежуток, должна переноситься в следующий подходящий.");
+        assertEquals(start.minusMinutes(50), taskManager.getEpicById(epic1.getId()).getStartTime(),
+                "Время эпика должно пересчитываться после планирования его подзадач.");
+        assertEquals(7, taskManager.getPrioritizedTasks().size());
+        assertTrue(taskManager.scheduleUnscheduled(SchedulePolicy.SHORTEST_FIRST, start).isEmpty());
+    }
+
+    @Test
+    void addAll() {
+        taskManager.addTask(task1);
+        Epic batchEpic = new Epic(100, "BATCH EPIC", "BATCH EPIC DESCRIPTION");
+        subtask3.setEpicTask(100);
+        subtask4.setEpicTask(100);
+        subtask4.setStatus(DONE);
+        Task overlapsExisting = new Task(0, "OVERLAP", "OVERLAP", NEW, task1.getStartTime(), Duration.ofMinutes(10));
+
+        assertThrows(TimeOverlapException.class,
+                () -> taskManager.addAll(List.of(task2, batchEpic, subtask3, subtask4, overlapsExisting)),
+                "Пакет с пересечением по времени не должен добавляться.");
+        assertEquals(1, taskManager.getAllTask().size(), "Пакет с ошибкой не должен добавляться частично.");
+        assertTrue(taskManager.getAllEpic().isEmpty());
+
+        taskManager.addAll(List.of(task2, subtask3, subtask4, batchEpic));
+        assertEquals(2, taskManager.getAllTask().size());
+        assertEquals(2, taskManager.getAllSubtask().size());
+        assertEquals(2, taskManager.getEpicById(100).getSubtaskList().size());
+        assertEquals(IN_PROGRESS, taskManager.getEpicById(100).getStatus());
+        assertEquals(4, taskManager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void epicTimeAndStatusFollowSubtasks() {
+        taskManager.addEpic(epic1);
+        subtask1.setEpicTask(epic1.getId());
+        subtask2.setEpicTask(epic1.getId());
+        subtask3.setEpicTask(epic1.getId());
+        taskManager.addSubtask(subtask1);
+        taskManager.addSubtask(subtask2);
+        taskManager.addSubtask(subtask3);
+
+        Epic epic = taskManager.getEpicById(epic1.getId());
+        assertEquals(subtask1.getStartTime(), epic.getStartTime());
+        assertEquals(subtask3.getEndTime(), epic.getEndTime());
+        assertEquals(Duration.ofMinutes(90), epic.getDuration());
+        assertEquals(NEW, epic.getStatus());
+
+        subtask3.setStatus(DONE);
+        subtask3.setStartTime(subtask3.getStartTime().plusHours(1));
+        taskManager.updateSubtask(subtask3);
+        epic = taskManager.getEpicById(epic1.getId());
+        assertEquals(subtask3.getEndTime(), epic.getEndTime());
+        assertEquals(IN_PROGRESS, epic.getStatus());
+
+        taskManager.deleteSubtaskById(subtask1.getId());
+        taskManager.deleteSubtaskById(subtask2.getId());
+        epic = taskManager.getEpicById(epic1.getId());
+        assertEquals(subtask3.getStartTime(), epic.getStartTime());
+        assertEquals(Duration.ofMinutes(30), epic.getDuration());
+        assertEquals(DONE, epic.getStatus());
+
+        taskManager.deleteSubtaskById(subtask3.getId());
+        epic = taskManager.getEpicById(epic1.getId());
+        assertEquals(LocalDateTime.MIN, epic.getStartTime());
+        assertEquals(Duration.ZERO, epic.getDuration());
+        assertEquals(NEW, epic.getStatus());
+    }
+
+    @Test
+    void lazyEpicRefreshRecomputesOnRead() {
+        taskManager.setEpicRefreshMode(EpicRefreshMode.LAZY);
+        taskManager.addEpic(epic1);
+        subtask1.setEpicTask(epic1.getId());
+        subtask2.setEpicTask(epic1.getId());
+        taskManager.addSubtask(subtask1);
+        taskManager.addSubtask(subtask2);
+        subtask1.setStatus(DONE);
+        taskManager.updateSubtask(subtask1);
+        subtask2.setStatus(DONE);
+        taskManager.updateSubtask(subtask2);
+
+        Epic epic = taskManager.getEpicById(epic1.getId());
+        assertEquals(subtask1.getStartTime(), epic.getStartTime());
+        assertEquals(subtask2.getEndTime(), epic.getEndTime());
+        assertEquals(Duration.ofMinutes(60), epic.getDuration());
+        assertEquals(DONE, epic.getStatus());
+
+        taskManager.deleteSubtaskById(subtask1.getId());
+        assertEquals(Duration.ofMinutes(30), taskManager.getAllEpic().getFirst().getDuration());
+
+        subtask2.setStatus(IN_PROGRESS);
+        taskManager.updateSubtask(subtask2);
+        taskManager.setEpicRefreshMode(EpicRefreshMode.EAGER);
+        subtask3.setEpicTask(epic1.getId());
+        taskManager.addSubtask(subtask3);
+        epic = taskManager.getEpicById(epic1.getId());
+        assertEquals(IN_PROGRESS, epic.getStatus());
+        assertEquals(subtask2.getStartTime(), epic.getStartTime());
+        assertEquals(Duration.ofMinutes(60), epic.getDuration());
+    }
+}
@@ -4,6 +4,8 @@ import static tasks.TaskStatus.NEW;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 import java.io.IOException;
 import java.lang.reflect.Type;
@@ -154,6 +156,38 @@ public class HttpEpicHandlerTest extends HttpBaseTest {
         assertEquals(taskManager.getEpicById(epicA.getId()).getSubtaskList().size(), subTasks.size());
     }
 
+    @Test
+    public void shouldSerializeEpicSubtasksAsIdArray() throws IOException, InterruptedException {
+        Epic epicA = new Epic("Epic A", "Epic A description");
+        taskManager.addEpic(epicA);
+        Subtask subA = new Subtask(0, "Sub A", "Sub A description", NEW,
+                epicA.getId(), LocalDateTime.of(2025, 2, 11, 10, 0), Duration.ofMinutes(30));
+        Subtask subB = new Subtask(0, "Sub B", "Sub B description", NEW,
+                epicA.getId(), LocalDateTime.of(2025, 2, 11, 11, 0), Duration.ofMinutes(30));
+        taskManager.addSubtask(subA);
+        taskManager.addSubtask(subB);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/epics/" + epicA.getId()))
+                .GET()
+                .build();
+
+        HttpResponse<String> response = taskClient.send(
+                request,
+                HttpResponse.BodyHandlers.ofString()
+        );
+
+        assertEquals(200, response.statusCode());
+        JsonArray ids = JsonParser.parseString(response.body()).getAsJsonObject()
+                .getAsJsonArray("epicSubtasks");
+        assertEquals(2, ids.size());
+        assertEquals(subA.getId(), ids.get(0).getAsInt());
+        assertEquals(subB.getId(), ids.get(1).getAsInt());
+
+        Epic recievedEpic = gson.fromJson(response.body(), Epic.class);
+        assertEquals(List.of(subA.getId(), subB.getId()), recievedEpic.getSubtaskList());
+    }
+
     @Test
     public void testUpdateEpic() throws IOException, InterruptedException {
         Epic epicA = new Epic("Epic A", "Epic A description");
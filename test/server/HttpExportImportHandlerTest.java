@@ -0,0 +1,131 @@
+package server;
+
+import static tasks.TaskStatus.DONE;
+import static tasks.TaskStatus.NEW;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+import tasks.TaskStatus;
+import org.junit.jupiter.api.Test;
+
+public class HttpExportImportHandlerTest extends HttpBaseTest {
+
+    private final LocalDateTime start = LocalDateTime.of(2025, 2, 7, 10, 0);
+
+    @Test
+    public void exportedBoardImportsBackWithNewIds() throws IOException, InterruptedException {
+        taskManager.addTask(new Task(0, "Task A", "строка 1\nстрока 2, \"кавычки\"", NEW,
+                start, Duration.ofMinutes(30)));
+        taskManager.addTask(new Task("Task B", null));
+        Epic epic = new Epic("Epic A", "Epic A description");
+        taskManager.addEpic(epic);
+        taskManager.addSubtask(new Subtask(0, "Sub A", "Sub A description", DONE, epic.getId(),
+                start.plusMinutes(60), Duration.ofMinutes(15)));
+
+        HttpResponse<String> exported = export();
+        assertEquals(200, exported.statusCode());
+        assertEquals("application/x-ndjson;charset=utf-8",
+                exported.headers().firstValue("Content-Type").orElse(""));
+        List<String> lines = exported.body().lines().toList();
+        assertEquals(4, lines.size(), "Одна строка на запись");
+        assertEquals(List.of("EPIC", "TASK", "TASK", "SUBTASK"), lines.stream()
+                .map(line -> JsonParser.parseString(line).getAsJsonObject().get("type").getAsString()).toList());
+
+        taskManager.deleteAllTask();
+        taskManager.deleteAllEpic();
+        taskManager.addTask(new Task("Existing", "Existing description"));
+
+        HttpResponse<String> imported = post(exported.body());
+        assertEquals(201, imported.statusCode());
+        assertEquals("Импортировано записей: 4.", imported.body());
+
+        assertEquals(3, taskManager.getAllTask().size());
+        Epic importedEpic = taskManager.getAllEpic().getFirst();
+        assertNotEquals(epic.getId(), importedEpic.getId(), "id назначает менеджер, в который идет импорт");
+        Subtask importedSubtask = taskManager.getAllSubtask().getFirst();
+        assertEquals(importedEpic.getId(), importedSubtask.getEpicTask());
+        assertEquals(List.of(importedSubtask.getId()), importedEpic.getSubtaskList());
+        assertEquals(TaskStatus.DONE, importedEpic.getStatus(), "Эпик пересчитан по подзадачам");
+        assertTrue(taskManager.getAllTask().stream()
+                .anyMatch(task -> "строка 1\nстрока 2, \"кавычки\"".equals(task.getDescription())));
+        assertEquals(List.of("Task A", "Sub A"), taskManager.getTasksInWindow(start, start.plusHours(2)).stream()
+                .map(Task::getTitle).toList());
+    }
+
+    @Test
+    public void largeImportIsSplitIntoBatches() throws IOException, InterruptedException {
+        List<Task> batch = new ArrayList<>();
+        Epic epic = new Epic("Epic", "Epic description");
+        batch.add(epic);
+        taskManager.addAll(batch);
+        batch.clear();
+        for (int i = 0; i < 25_000; i++) {
+            batch.add(i % 2 == 0
+                    ? new Task(0, "Task " + i, "Description " + i, NEW, start.plusMinutes(i), Duration.ofMinutes(1))
+                    : new Subtask(0, "Sub " + i, null, NEW, epic.getId(), start.plusMinutes(i), Duration.ofMinutes(1)));
+        }
+        taskManager.addAll(batch);
+        String body = export().body();
+
+        taskManager.deleteAllTask();
+        taskManager.deleteAllEpic();
+        HttpResponse<String> imported = post(body);
+        assertEquals(201, imported.statusCode());
+        assertEquals("Импортировано записей: 25001.", imported.body());
+        assertEquals(12_500, taskManager.getAllTask().size());
+        assertEquals(12_500, taskManager.getAllEpic().getFirst().getSubtaskList().size());
+        assertEquals(25_000, taskManager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    public void brokenImportReportsAcceptedRecords() throws IOException, InterruptedException {
+        JsonObject task = new JsonObject();
+        task.addProperty("type", "TASK");
+        task.add("item", gson.toJsonTree(new Task(7, "Task", "Description", NEW,
+                start, Duration.ofMinutes(30))));
+
+        HttpResponse<String> overlapping = post(task + "\n" + task + "\n");
+        assertEquals(400, overlapping.statusCode());
+        assertTrue(overlapping.body().startsWith("Импортировано записей: 0."), overlapping.body());
+        assertEquals(0, taskManager.getAllTask().size(), "Пакет с пересечением не принимается целиком");
+
+        HttpResponse<String> orphan = post("{\"type\":\"SUBTASK\",\"item\":{\"id\":3,\"title\":\"Sub\",\"epicId\":1}}");
+        assertEquals(400, orphan.statusCode());
+
+        assertEquals(400, post(task + "\n{\"type\":").statusCode());
+        assertEquals(400, post("[1, 2]").statusCode());
+        assertEquals(400, taskClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/export/1")).GET().build(),
+                HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private HttpResponse<String> export() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/export"))
+                .GET()
+                .build();
+        return taskClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/import"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return taskClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
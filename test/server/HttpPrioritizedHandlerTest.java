@@ -115,4 +115,50 @@ public class HttpPrioritizedHandlerTest extends HttpBaseTest {
         );
         assertEquals(400, responseB.statusCode());
     }
+
+    @Test
+    public void shouldReturnTasksInRequestedWindow() throws IOException, InterruptedException {
+        LocalDateTime start = LocalDateTime.of(2025, 2, 7, 10, 0);
+        Duration duration = Duration.ofMinutes(30);
+
+        Task taskA = new Task(0, "Task A", "Task A description", NEW, start, duration);
+        Task taskB = new Task(0, "Task B", "Task B description", NEW, start.plusDays(3), duration);
+        Task taskC = new Task(0, "Task C", "Task C description", NEW, start.plusDays(8), duration);
+        taskManager.addTask(taskA);
+        taskManager.addTask(taskB);
+        taskManager.addTask(taskC);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/prioritized?from=2025-02-07T00:00:00&to=2025-02-14T00:00:00"))
+                .GET()
+                .build();
+
+        HttpResponse<String> response = taskClient.send(
+                request,
+                HttpResponse.BodyHandlers.ofString()
+        );
+        assertEquals(200, response.statusCode());
+
+        Task[] returned = gson.fromJson(response.body(), Task[].class);
+        assertEquals(2, returned.length);
+        assertEquals(taskA, returned[0]);
+        assertEquals(taskB, returned[1]);
+    }
+
+    @Test
+    public void shouldReturn400OnInvalidWindow() throws IOException, InterruptedException {
+        for (String query : List.of("from=2025-02-07T00:00:00",
+                "from=yesterday&to=2025-02-14T00:00:00",
+                "from=2025-02-14T00:00:00&to=2025-02-07T00:00:00")) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/prioritized?" + query))
+                    .GET()
+                    .build();
+            HttpResponse<String> response = taskClient.send(
+                    request,
+                    HttpResponse.BodyHandlers.ofString()
+            );
+            assertEquals(400, response.statusCode(), query);
+        }
+    }
 }
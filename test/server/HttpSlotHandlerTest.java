@@ -0,0 +1,58 @@
+package server;
+
+import static tasks.TaskStatus.NEW;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import tasks.Task;
+import org.junit.jupiter.api.Test;
+
+public class HttpSlotHandlerTest extends HttpBaseTest {
+
+    @Test
+    public void shouldReturnEarliestFreeSlot() throws IOException, InterruptedException {
+        LocalDateTime start = LocalDateTime.of(2025, 2, 7, 10, 0);
+        Duration duration = Duration.ofMinutes(30);
+        taskManager.addTask(new Task(0, "Task A", "Task A description", NEW, start, duration));
+        taskManager.addTask(new Task(0, "Task B", "Task B description", NEW, start.plusMinutes(45), duration));
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/slots?duration=PT20M&notBefore=2025-02-07T10:00:00"))
+                .GET()
+                .build();
+
+        HttpResponse<String> response = taskClient.send(
+                request,
+                HttpResponse.BodyHandlers.ofString()
+        );
+        assertEquals(200, response.statusCode());
+
+        JsonObject slot = gson.fromJson(response.body(), JsonObject.class);
+        assertEquals("2025-02-07T11:15:00", slot.get("startTime").getAsString());
+        assertEquals("2025-02-07T11:35:00", slot.get("endTime").getAsString());
+    }
+
+    @Test
+    public void shouldReturn400OnInvalidParameters() throws IOException, InterruptedException {
+        for (String query : List.of("duration=PT20M",
+                "duration=20&notBefore=2025-02-07T10:00:00",
+                "duration=-PT20M&notBefore=2025-02-07T10:00:00")) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/slots?" + query))
+                    .GET()
+                    .build();
+            HttpResponse<String> response = taskClient.send(
+                    request,
+                    HttpResponse.BodyHandlers.ofString()
+            );
+            assertEquals(400, response.statusCode(), query);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package util;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+// Ручной замер, не тест: запись и разбор 1 000 000 строк снимка доски старым способом
+// (String.format и split(",")) и через CsvWriter/CsvReader. Поля те же, что в
+// FileBackedTaskManager: id,type,name,status,description,epic,start,duration.
+// Запуск: java -Xms2g -Xmx2g -cp <classes> util.CsvBenchmark
+public class CsvBenchmark {
+
+    private static final int RECORDS = 1_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        String[] titles = new String[RECORDS];
+        String[] descriptions = new String[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            titles[i] = "Задача " + i;
+            descriptions[i] = "Описание задачи номер " + i + " для замера";
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            StringBuilder formatted = new StringBuilder();
+            for (int i = 0; i < RECORDS; i++) {
+                formatted.append(String.format("%d,%s,%s,%s,%s,%s,%s, %s", i + 1, "TASK", titles[i], "NEW",
+                        descriptions[i], "", "202501281000", String.valueOf(1_200L))).append('\n');
+            }
+            long formatNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            StringBuilder written = new StringBuilder();
+            CsvWriter writer = new CsvWriter(written);
+            for (int i = 0; i < RECORDS; i++) {
+                writer.field(i + 1);
+                writer.plainField().append("TASK");
+                writer.field(titles[i]);
+                writer.plainField().append("NEW");
+                writer.field(descriptions[i]);
+                writer.plainField();
+                writer.plainField().append("202501281000");
+                writer.field(1_200L);
+                writer.endRecord();
+            }
+            long writerNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long checksum = 0;
+            String text = formatted.toString();
+            for (int lineStart = 0; lineStart < text.length(); ) {
+                int lineEnd = text.indexOf('\n', lineStart);
+                String[] fields = text.substring(lineStart, lineEnd).split(",", -1);
+                checksum += Integer.parseInt(fields[0]) + fields[1].length() + fields[2].length()
+                        + fields[3].length() + fields[4].length() + fields[6].trim().length()
+                        + Long.parseLong(fields[7].trim());
+                lineStart = lineEnd + 1;
+            }
+            long splitNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            CsvReader reader = new CsvReader(CharBuffer.wrap(written.toString().toCharArray()));
+            while (reader.next()) {
+                checksum -= reader.getInt(0) + (reader.fieldEquals(1, "TASK") ? 4 : 0) + reader.get(2).length()
+                        + (reader.fieldEquals(3, "NEW") ? 3 : 0) + reader.get(4).length() + reader.length(6)
+                        + reader.getLong(7);
+            }
+            long readerNanos = System.nanoTime() - start;
+
+            System.out.printf("round %d: write format %d ms, CsvWriter %d ms; read split %d ms, CsvReader %d ms (%d)%n",
+                    round, formatNanos / 1_000_000, writerNanos / 1_000_000, splitNanos / 1_000_000,
+                    readerNanos / 1_000_000, checksum);
+        }
+    }
+}
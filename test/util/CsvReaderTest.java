@@ -0,0 +1,116 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CsvReaderTest {
+
+    @Test
+    void writerOutputReadsBackFieldByField() throws IOException {
+        List<String[]> records = List.of(
+                new String[]{"1", "простое поле", "запятая, внутри", "кавычки \"внутри\""},
+                new String[]{"2", "строка 1\nстрока 2", "\r\n", "\""},
+                new String[]{"3", "", null, " пробелы "});
+        StringBuilder out = new StringBuilder();
+        CsvWriter writer = new CsvWriter(out);
+        for (String[] record : records) {
+            for (String field : record) {
+                writer.field(field);
+            }
+            writer.endRecord();
+        }
+
+        CsvReader reader = new CsvReader(CharBuffer.wrap(out));
+        for (String[] record : records) {
+            assertTrue(reader.next());
+            assertEquals(record.length, reader.size());
+            for (int i = 0; i < record.length; i++) {
+                assertEquals(record[i], reader.getOrNull(i), Arrays.toString(record));
+            }
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void emptyFieldWithoutQuotesIsNull() throws IOException {
+        CsvReader reader = new CsvReader(CharBuffer.wrap("a,,\"\","));
+        assertTrue(reader.next());
+        assertEquals(4, reader.size());
+        assertNull(reader.getOrNull(1));
+        assertEquals("", reader.getOrNull(2));
+        assertEquals("", reader.get(3));
+        assertNull(reader.getOrNull(3));
+    }
+
+    @Test
+    void acceptsAllLineEndingsAndKeepsRawRecord() throws IOException {
+        CsvReader reader = new CsvReader(CharBuffer.wrap("a,b\r\n\"c\r\nd\",e\rf\n\n"));
+        assertTrue(reader.next());
+        assertEquals("a,b", reader.record().toString());
+        assertTrue(reader.next());
+        assertEquals("c\r\nd", reader.get(0));
+        assertTrue(reader.recordEquals("\"c\r\nd\",e"));
+        assertTrue(reader.next());
+        assertEquals("f", reader.get(0));
+        assertTrue(reader.next());
+        assertTrue(reader.isBlankRecord());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void legacyUnquotedFieldsAreReadAsIs() throws IOException {
+        CsvReader reader = new CsvReader(CharBuffer.wrap("1,TASK,say \"hi\",NEW,null,,202501281000, 1200"));
+        assertTrue(reader.next());
+        assertEquals(8, reader.size());
+        assertEquals("say \"hi\"", reader.get(2));
+        assertEquals("null", reader.getOrNull(4));
+        assertTrue(reader.isBlank(5));
+        assertTrue(reader.fieldEquals(1, "TASK"));
+        assertFalse(reader.fieldEquals(1, "TAS"));
+        assertEquals(1200, reader.getInt(7), "Пробел перед числом старого формата допускается");
+    }
+
+    @Test
+    void numbersAreParsedWithoutStrings() throws IOException {
+        CsvReader reader = new CsvReader(CharBuffer.wrap("-42,9223372036854775807,2147483648,x,"));
+        assertTrue(reader.next());
+        assertEquals(-42, reader.getInt(0));
+        assertEquals(Long.MAX_VALUE, reader.getLong(1));
+        assertThrows(NumberFormatException.class, () -> reader.getInt(2));
+        assertThrows(NumberFormatException.class, () -> reader.getLong(3));
+        assertThrows(NumberFormatException.class, () -> reader.getLong(4));
+        assertThrows(IndexOutOfBoundsException.class, () -> reader.get(5));
+    }
+
+    @Test
+    void streamingReaderHandlesRecordsLongerThanBuffer() throws IOException {
+        String longField = "поле, с \"кавычками\"\n".repeat(10_000);
+        StringBuilder out = new StringBuilder();
+        CsvWriter writer = new CsvWriter(out);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            String value = i == 500 ? longField : "значение " + i;
+            expected.add(value);
+            writer.field(i).field(value).endRecord();
+        }
+
+        CsvReader reader = new CsvReader(new StringReader(out.toString()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue(reader.next());
+            assertEquals(i, reader.getInt(0));
+            assertEquals(expected.get(i), reader.get(1));
+        }
+        assertFalse(reader.next());
+    }
+}
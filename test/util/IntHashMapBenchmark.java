@@ -0,0 +1,71 @@
+package util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// Ручной замер, не тест: занимаемая куча и скорость поиска HashMap<Integer, V> и IntHashMap<V>
+// на 1 000 000 записей с последовательными id, как у менеджера задач.
+// Запуск: java -Xms2g -Xmx2g -cp <classes> util.IntHashMapBenchmark
+public class IntHashMapBenchmark {
+
+    private static final int ENTRIES = 1_000_000;
+    private static final int LOOKUPS = 20_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        Object value = new Object();
+        int[] probes = new int[LOOKUPS];
+        Random random = new Random(1);
+        for (int i = 0; i < LOOKUPS; i++) {
+            probes[i] = 1 + random.nextInt(ENTRIES);
+        }
+
+        long before = usedHeap();
+        Map<Integer, Object> boxed = new HashMap<>();
+        for (int id = 1; id <= ENTRIES; id++) {
+            boxed.put(id, value);
+        }
+        long boxedHeap = usedHeap() - before;
+
+        before = usedHeap();
+        IntHashMap<Object> primitive = new IntHashMap<>();
+        for (int id = 1; id <= ENTRIES; id++) {
+            primitive.put(id, value);
+        }
+        long primitiveHeap = usedHeap() - before;
+
+        System.out.printf("heap: HashMap %.1f MB, IntHashMap %.1f MB%n",
+                boxedHeap / 1e6, primitiveHeap / 1e6);
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            int hits = 0;
+            for (int key : probes) {
+                if (boxed.get(key) != null) {
+                    hits++;
+                }
+            }
+            long boxedNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int key : probes) {
+                if (primitive.get(key) != null) {
+                    hits++;
+                }
+            }
+            long primitiveNanos = System.nanoTime() - start;
+
+            System.out.printf("round %d: HashMap %.1f M lookups/s, IntHashMap %.1f M lookups/s (%d)%n", round,
+                    LOOKUPS * 1e3 / boxedNanos, LOOKUPS * 1e3 / primitiveNanos, hits);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,72 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class IntHashMapTest {
+
+    @Test
+    void putGetRemove() {
+        IntHashMap<String> map = new IntHashMap<>();
+        assertNull(map.put(1, "one"));
+        assertNull(map.put(0, "zero"));
+        assertEquals("one", map.put(1, "uno"), "put возвращает предыдущее значение");
+
+        assertEquals(2, map.size());
+        assertEquals("uno", map.get(1));
+        assertEquals("zero", map.get(0));
+        assertTrue(map.containsKey(0));
+        assertNull(map.get(2));
+
+        assertEquals("zero", map.remove(0));
+        assertNull(map.remove(0));
+        assertFalse(map.containsKey(0));
+        assertEquals(List.of("uno"), map.values());
+    }
+
+    @Test
+    void keysSnapshotAllowsRemovalDuringIteration() {
+        IntHashMap<Integer> map = new IntHashMap<>();
+        for (int i = 1; i <= 100; i++) {
+            map.put(i, i);
+        }
+        for (int key : map.keys()) {
+            map.remove(key);
+        }
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void matchesHashMapUnderRandomOperations() {
+        Random random = new Random(7);
+        IntHashMap<Integer> map = new IntHashMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5_000) - 100;
+            int operation = random.nextInt(3);
+            if (operation == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int key = -100; key < 4_900; key++) {
+            assertEquals(expected.get(key), map.get(key), "Ключ " + key);
+        }
+        List<Integer> values = new ArrayList<>(map.values());
+        values.sort(null);
+        List<Integer> expectedValues = new ArrayList<>(expected.values());
+        expectedValues.sort(null);
+        assertEquals(expectedValues, values);
+    }
+}
@@ -0,0 +1,65 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class IntHashSetTest {
+
+    @Test
+    void addContainsRemove() {
+        IntHashSet set = new IntHashSet();
+        assertTrue(set.add(5));
+        assertTrue(set.add(0));
+        assertTrue(set.add(-3));
+        assertFalse(set.add(5), "Повторное добавление не меняет множество");
+
+        assertEquals(3, set.size());
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(-3));
+        assertArrayEquals(new int[]{-3, 0, 5}, set.toSortedArray());
+
+        assertTrue(set.remove(0));
+        assertFalse(set.remove(0));
+        assertFalse(set.contains(0));
+        assertEquals("[-3, 5]", set.toString());
+    }
+
+    @Test
+    void copyIsIndependent() {
+        IntHashSet set = new IntHashSet();
+        set.add(1);
+        IntHashSet copy = new IntHashSet(set);
+        copy.add(2);
+        set.remove(1);
+
+        assertTrue(set.isEmpty());
+        assertArrayEquals(new int[]{1, 2}, copy.toSortedArray());
+    }
+
+    @Test
+    void matchesHashSetUnderRandomOperations() {
+        Random random = new Random(42);
+        IntHashSet set = new IntHashSet();
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), set.remove(key));
+            } else {
+                assertEquals(expected.add(key), set.add(key));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        for (int key = 0; key < 2_000; key++) {
+            assertEquals(expected.contains(key), set.contains(key), "Ключ " + key);
+        }
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).sorted().toArray(), set.toSortedArray());
+    }
+}
@@ -0,0 +1,39 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+class SortedListViewTest {
+
+    @Test
+    void treeSetBuiltFromViewKeepsOrderAndStaysMutable() {
+        Comparator<String> byLength = Comparator.comparing(String::length).thenComparing(Comparator.naturalOrder());
+        List<String> sorted = List.of("a", "bb", "cc", "ddd");
+        TreeSet<String> set = new TreeSet<>(byLength);
+        set.addAll(SortedListView.asSortedSet(sorted, byLength));
+
+        assertEquals(sorted, List.copyOf(set));
+        set.add("e");
+        set.remove("cc");
+        assertEquals(List.of("a", "e", "bb", "ddd"), List.copyOf(set));
+    }
+
+    @Test
+    void treeMapBuiltFromViewUsesExtractedKeys() {
+        List<String> sorted = List.of("a", "bb", "ccc");
+        TreeMap<Integer, String> map = new TreeMap<>();
+        map.putAll(SortedListView.asSortedMap(sorted, String::length, null));
+
+        assertEquals(List.of(1, 2, 3), List.copyOf(map.keySet()));
+        assertEquals("bb", map.get(2));
+        assertEquals("ccc", map.floorEntry(10).getValue());
+        assertThrows(UnsupportedOperationException.class,
+                () -> SortedListView.asSortedMap(sorted, String::length, null).headMap(2));
+    }
+}